@@ -0,0 +1,136 @@
+package com.carbontracker.benchmark;
+
+import com.carbontracker.model.BatchingSubscriber;
+import com.carbontracker.model.ConcurrentEmissionCalculator;
+import com.carbontracker.model.EmissionCalculator;
+import com.carbontracker.model.EmissionEvent;
+import com.carbontracker.model.EmissionSource;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of recording activities, single-threaded on the plain
+ * calculator and multi-threaded on the concurrent one (in its default
+ * totals-only mode, and with retained history, whose appends take the
+ * ledger lock), and with an event subscriber attached that never drains,
+ * to show that a stalled consumer only costs dropped events, not a slower
+ * or growing producer.
+ * Run with {@code -prof gc} (the default in the benchmark profile) to see
+ * bytes allocated per add.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 2, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class AddEmissionBenchmark {
+    
+    /** Adds between resets, so retained history stays bounded during a run. */
+    private static final int RESET_INTERVAL = 1 << 20;
+    
+    private static final EmissionSource[] SOURCES = EmissionSource.values();
+    
+    @State(Scope.Thread)
+    public static class SingleThreaded {
+        EmissionCalculator calculator;
+        int ops;
+        
+        @Setup(Level.Iteration)
+        public void setUp() {
+            calculator = new EmissionCalculator();
+            ops = 0;
+        }
+    }
+    
+    @State(Scope.Thread)
+    public static class Published {
+        ConcurrentEmissionCalculator calculator;
+        BatchingSubscriber<EmissionEvent> stalled;
+        
+        @Setup(Level.Iteration)
+        public void setUp() {
+            calculator = new ConcurrentEmissionCalculator();
+            stalled = new BatchingSubscriber<>(256);
+            calculator.getEventPublisher().subscribe(stalled);
+        }
+        
+        @TearDown(Level.Iteration)
+        public void tearDown() {
+            calculator.getEventPublisher().close();
+        }
+    }
+    
+    @State(Scope.Benchmark)
+    public static class Shared {
+        ConcurrentEmissionCalculator calculator;
+        
+        @Setup(Level.Iteration)
+        public void setUp() {
+            calculator = new ConcurrentEmissionCalculator();
+        }
+    }
+    
+    @State(Scope.Benchmark)
+    public static class SharedWithHistory {
+        ConcurrentEmissionCalculator calculator;
+        
+        @Setup(Level.Iteration)
+        public void setUp() {
+            calculator = new ConcurrentEmissionCalculator(true);
+        }
+    }
+    
+    @State(Scope.Thread)
+    public static class ThreadCursor {
+        int ops;
+    }
+    
+    @Benchmark
+    public void addCarEmission(SingleThreaded state) {
+        state.calculator.addCarEmission(12.5);
+        if (++state.ops == RESET_INTERVAL) {
+            state.calculator.reset();
+            state.ops = 0;
+        }
+    }
+    
+    @Benchmark
+    public void addMixedSources(SingleThreaded state) {
+        int ops = state.ops;
+        state.calculator.addEmission(SOURCES[ops % SOURCES.length], 3.0, ops);
+        if (++state.ops == RESET_INTERVAL) {
+            state.calculator.reset();
+            state.ops = 0;
+        }
+    }
+    
+    @Benchmark
+    public void addWithStalledSubscriber(Published state) {
+        state.calculator.addCarEmission(12.5);
+    }
+    
+    @Benchmark
+    @Threads(1)
+    public void concurrentAdd1Thread(Shared shared, ThreadCursor cursor) {
+        shared.calculator.addEmission(SOURCES[cursor.ops++ % SOURCES.length], 3.0, 0L);
+    }
+    
+    @Benchmark
+    @Threads(4)
+    public void concurrentAdd4Threads(Shared shared, ThreadCursor cursor) {
+        shared.calculator.addEmission(SOURCES[cursor.ops++ % SOURCES.length], 3.0, 0L);
+    }
+    
+    @Benchmark
+    @Threads(Threads.MAX)
+    public void concurrentAddMaxThreads(Shared shared, ThreadCursor cursor) {
+        shared.calculator.addEmission(SOURCES[cursor.ops++ % SOURCES.length], 3.0, 0L);
+    }
+    
+    @Benchmark
+    @Threads(4)
+    public void concurrentAddWithHistory4Threads(SharedWithHistory shared, ThreadCursor cursor) {
+        shared.calculator.addEmission(SOURCES[cursor.ops++ % SOURCES.length], 3.0, 0L);
+    }
+}
@@ -0,0 +1,70 @@
+package com.carbontracker.benchmark;
+
+import com.carbontracker.model.EmissionCalculator;
+import com.carbontracker.model.EmissionSource;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of totals, breakdowns and time-window queries as the recorded
+ * history grows.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+@State(Scope.Benchmark)
+public class AggregationBenchmark {
+    
+    @Param({"1000", "100000", "1000000"})
+    public int historySize;
+    
+    private EmissionCalculator calculator;
+    private long windowFrom;
+    private long windowTo;
+    
+    @Setup(Level.Trial)
+    public void setUp() {
+        calculator = new EmissionCalculator();
+        EmissionSource[] sources = EmissionSource.values();
+        for (int i = 0; i < historySize; i++) {
+            calculator.addEmission(sources[i % sources.length], 1.0 + (i % 17), i * 60_000L);
+        }
+        // Last 1000 records
+        windowFrom = Math.max(0, historySize - 1000) * 60_000L;
+        windowTo = historySize * 60_000L;
+    }
+    
+    @Benchmark
+    public double getTotalEmissions() {
+        return calculator.getTotalEmissions();
+    }
+    
+    @Benchmark
+    public double getTransportTotal() {
+        return calculator.getTransportTotal();
+    }
+    
+    @Benchmark
+    public Map<String, Double> getTransportBreakdown() {
+        return calculator.getTransportBreakdown();
+    }
+    
+    @Benchmark
+    public Map<String, Double> getEnergyBreakdown() {
+        return calculator.getEnergyBreakdown();
+    }
+    
+    @Benchmark
+    public double recentWindowTotal() {
+        return calculator.getTotalEmissions(windowFrom, windowTo);
+    }
+    
+    @Benchmark
+    public double recentWindowSourceTotal() {
+        return calculator.getSourceTotal(EmissionSource.CAR, windowFrom, windowTo);
+    }
+}
@@ -0,0 +1,75 @@
+package com.carbontracker.benchmark;
+
+import com.carbontracker.model.BudgetAlertEngine;
+import com.carbontracker.model.EmissionBudget;
+import com.carbontracker.model.EmissionCalculator;
+import com.carbontracker.model.EmissionCategory;
+import com.carbontracker.model.EmissionRollup;
+import com.carbontracker.model.EmissionSource;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of recording an activity while a budget engine with thousands of
+ * budgets is attached. Activities advance one minute each, so hourly and
+ * daily windows keep rolling over and limits keep being crossed.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 2, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+@State(Scope.Thread)
+public class BudgetAlertBenchmark {
+    
+    private static final int RESET_INTERVAL = 1 << 20;
+    private static final EmissionSource[] SOURCES = EmissionSource.values();
+    private static final EmissionRollup.Granularity[] GRANULARITIES = EmissionRollup.Granularity.values();
+    
+    @Param({"0", "100", "5000"})
+    int budgetCount;
+    
+    EmissionCalculator calculator;
+    long alerts;
+    int ops;
+    
+    @Setup(Level.Iteration)
+    public void setUp() {
+        calculator = new EmissionCalculator();
+        ops = 0;
+        if (budgetCount == 0) {
+            return;
+        }
+        BudgetAlertEngine engine = BudgetAlertEngine.attach(calculator);
+        engine.addListener(alert -> alerts++);
+        Random random = new Random(42);
+        for (int i = 0; i < budgetCount; i++) {
+            EmissionRollup.Granularity window = random.nextInt(4) == 0 ? null : GRANULARITIES[random.nextInt(3)];
+            double limit = random.nextDouble() * 1000;
+            String id = "budget-" + i;
+            switch (random.nextInt(3)) {
+                case 0:
+                    engine.addBudget(EmissionBudget.forSource(id, SOURCES[random.nextInt(SOURCES.length)], window, limit));
+                    break;
+                case 1:
+                    engine.addBudget(EmissionBudget.forCategory(id,
+                        EmissionCategory.byOrdinal(random.nextInt(EmissionCategory.COUNT)), window, limit));
+                    break;
+                default:
+                    engine.addBudget(EmissionBudget.forTotal(id, window, limit));
+            }
+        }
+    }
+    
+    @Benchmark
+    public void addEmission() {
+        int op = ops;
+        calculator.addEmission(SOURCES[op % SOURCES.length], 3.0, 1_700_000_000_000L + op * 60_000L);
+        if (++ops == RESET_INTERVAL) {
+            calculator.reset();
+            ops = 0;
+        }
+    }
+}
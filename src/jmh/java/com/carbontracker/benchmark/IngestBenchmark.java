@@ -0,0 +1,74 @@
+package com.carbontracker.benchmark;
+
+import com.carbontracker.model.ConcurrentEmissionCalculator;
+import com.carbontracker.server.EmissionIngestServer;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Round trips against the embedded ingestion endpoint over loopback from 16
+ * concurrent clients: one activity per request and a 100-line NDJSON batch.
+ * Throughput gives requests per second; sample time gives the latency
+ * distribution including p99.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+@Threads(16)
+@State(Scope.Benchmark)
+public class IngestBenchmark {
+    
+    private static final int BATCH_SIZE = 100;
+    
+    EmissionIngestServer server;
+    HttpClient client;
+    HttpRequest single;
+    HttpRequest batch;
+    
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        // Totals only, so the ledger does not grow for the whole run
+        server = EmissionIngestServer.start(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0),
+            new ConcurrentEmissionCalculator());
+        client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        URI uri = URI.create("http://127.0.0.1:" + server.getPort() + "/emissions");
+        
+        single = HttpRequest.newBuilder(uri)
+            .POST(HttpRequest.BodyPublishers.ofString("{\"source\":\"car\",\"quantity\":12.5}"))
+            .build();
+        StringBuilder lines = new StringBuilder();
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            lines.append("{\"source\":\"electricity\",\"quantity\":").append(i % 40 + 0.5)
+                .append(",\"timestamp\":").append(1_700_000_000_000L + i * 60_000L).append("}\n");
+        }
+        batch = HttpRequest.newBuilder(uri)
+            .POST(HttpRequest.BodyPublishers.ofByteArray(lines.toString().getBytes(StandardCharsets.UTF_8)))
+            .build();
+    }
+    
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        server.close();
+    }
+    
+    @Benchmark
+    public int postSingle() throws Exception {
+        return client.send(single, HttpResponse.BodyHandlers.discarding()).statusCode();
+    }
+    
+    @Benchmark
+    public int postBatch() throws Exception {
+        return client.send(batch, HttpResponse.BodyHandlers.discarding()).statusCode();
+    }
+}
@@ -0,0 +1,63 @@
+package com.carbontracker.benchmark;
+
+import com.carbontracker.model.EmissionSnapshot;
+import com.carbontracker.model.EmissionSource;
+import com.carbontracker.model.ProfileRegistry;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Recording into and aggregating across a fleet-sized profile registry.
+ * Run with {@code -prof gc} to confirm that recording by index does not
+ * allocate.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 2, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+@State(Scope.Thread)
+public class ProfileRegistryBenchmark {
+    
+    private static final EmissionSource[] SOURCES = EmissionSource.values();
+    
+    @Param({"1000", "100000"})
+    int profiles;
+    
+    ProfileRegistry registry;
+    int cursor;
+    
+    @Setup(Level.Trial)
+    public void setUp() {
+        registry = new ProfileRegistry();
+        for (int i = 0; i < profiles; i++) {
+            int index = registry.profileIndex("vehicle-" + i);
+            registry.addEmission(index, SOURCES[i % SOURCES.length], 10.0, 0L);
+        }
+    }
+    
+    @Benchmark
+    public void addByIndex() {
+        int ops = cursor++;
+        registry.addEmission((ops * 7919) % profiles, SOURCES[ops % SOURCES.length], 3.0, 0L);
+    }
+    
+    @Benchmark
+    public void addById() {
+        int ops = cursor++;
+        registry.addEmission("vehicle-" + (ops % profiles), SOURCES[ops % SOURCES.length], 3.0, 0L);
+    }
+    
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public EmissionSnapshot aggregateAll() {
+        return registry.aggregate();
+    }
+    
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public int[] top10() {
+        return registry.topProfiles(null, 10);
+    }
+}
@@ -0,0 +1,99 @@
+package com.carbontracker.benchmark;
+
+import com.carbontracker.model.EmissionCalculator;
+import com.carbontracker.model.EmissionSource;
+import com.carbontracker.storage.AccumulatorSnapshot;
+import com.carbontracker.storage.EmissionRecovery;
+import com.carbontracker.storage.WriteAheadLog;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Startup recovery time for large histories: replaying the full write-ahead
+ * log versus restoring the latest snapshot and replaying a 1% log tail.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms6g", "-Xmx6g"})
+@State(Scope.Benchmark)
+public class RecoveryBenchmark {
+    
+    private static final EmissionSource[] SOURCES = EmissionSource.values();
+    private static final long BASE_TIME = 1_700_000_000_000L;
+    
+    @Param({"1000000", "10000000"})
+    int events;
+    
+    Path logOnly;
+    Path snapshotted;
+    
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        int tail = events / 100;
+        logOnly = Files.createTempDirectory("recovery-log");
+        snapshotted = Files.createTempDirectory("recovery-snapshot");
+        
+        EmissionCalculator calculator = new EmissionCalculator();
+        EmissionRecovery recovery = EmissionRecovery.open(logOnly, calculator, Long.MAX_VALUE);
+        writeEvents(calculator, 0, events);
+        recovery.sync();
+        // Abandon without closing, as after a crash: no snapshot is written
+        
+        calculator = new EmissionCalculator();
+        recovery = EmissionRecovery.open(snapshotted, calculator, Long.MAX_VALUE);
+        writeEvents(calculator, 0, events - tail);
+        recovery.close();
+        try (WriteAheadLog log = WriteAheadLog.open(snapshotted, events - tail)) {
+            for (int i = events - tail; i < events; i++) {
+                log.record(BASE_TIME + i * 1000L, SOURCES[i % SOURCES.length], 1.0, 0.5, 0.5);
+            }
+        }
+    }
+    
+    private static void writeEvents(EmissionCalculator calculator, int from, int to) {
+        for (int i = from; i < to; i++) {
+            calculator.addEmission(SOURCES[i % SOURCES.length], 1.0, BASE_TIME + i * 1000L);
+            if (i % 1_000_000 == 999_999) {
+                calculator.getLedger().clear(); // bound memory during setup
+            }
+        }
+    }
+    
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        delete(logOnly);
+        delete(snapshotted);
+    }
+    
+    private static void delete(Path directory) throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(file);
+            }
+        }
+    }
+    
+    @Benchmark
+    public EmissionCalculator fullLogReplay() throws IOException {
+        EmissionCalculator calculator = new EmissionCalculator();
+        WriteAheadLog.replay(logOnly, 0, calculator::replay);
+        return calculator;
+    }
+    
+    @Benchmark
+    public EmissionCalculator snapshotAndTail() throws IOException {
+        EmissionCalculator calculator = new EmissionCalculator();
+        AccumulatorSnapshot snapshot = AccumulatorSnapshot.readLatest(snapshotted);
+        snapshot.restoreInto(calculator);
+        WriteAheadLog.replay(snapshotted, snapshot.getSequence(), calculator::replay);
+        return calculator;
+    }
+}
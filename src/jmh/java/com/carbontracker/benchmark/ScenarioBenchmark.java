@@ -0,0 +1,62 @@
+package com.carbontracker.benchmark;
+
+import com.carbontracker.model.EmissionCalculator;
+import com.carbontracker.model.EmissionSource;
+import com.carbontracker.model.Scenario;
+import com.carbontracker.model.ScenarioSimulator;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to project the suggested scenarios, and four times as many, over a
+ * history of one million activities. The scenarios share a single pass over
+ * the ledger, so the second case should cost far less than four times the
+ * first.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 2, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+@State(Scope.Benchmark)
+public class ScenarioBenchmark {
+    
+    private static final EmissionSource[] SOURCES = EmissionSource.values();
+    
+    ScenarioSimulator simulator;
+    List<Scenario> suggestions;
+    List<Scenario> many;
+    
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42);
+        EmissionCalculator calculator = new EmissionCalculator();
+        long start = 1_600_000_000_000L;
+        for (int i = 0; i < 1_000_000; i++) {
+            double quantity = 1 + random.nextDouble() * 50;
+            calculator.replay(start + i * 60_000L, SOURCES[random.nextInt(SOURCES.length)], quantity, 0.2,
+                quantity * 0.2);
+        }
+        simulator = new ScenarioSimulator(calculator);
+        suggestions = Scenario.suggestions();
+        many = new ArrayList<>(suggestions);
+        while (many.size() < 4 * suggestions.size()) {
+            int percent = many.size();
+            many.add(Scenario.named("Drive " + percent + "% less").reduce(EmissionSource.CAR, percent / 100.0));
+        }
+    }
+    
+    @Benchmark
+    public List<ScenarioSimulator.Result> suggestions() {
+        return simulator.simulate(suggestions);
+    }
+    
+    @Benchmark
+    public List<ScenarioSimulator.Result> manyScenarios() {
+        return simulator.simulate(many);
+    }
+}
@@ -0,0 +1,65 @@
+package com.carbontracker.benchmark;
+
+import com.carbontracker.model.EmissionSource;
+import com.carbontracker.model.EmissionStatistics;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of updating the per-source sketches on each activity, of reading a
+ * summary with four quantiles, and of merging two instances, e.g. per-thread
+ * partials. None of these depends on how many activities were recorded.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+@State(Scope.Thread)
+public class StatisticsBenchmark {
+    
+    private static final EmissionSource[] SOURCES = EmissionSource.values();
+    
+    EmissionStatistics statistics;
+    EmissionStatistics partial;
+    double[] quantities;
+    int ops;
+    
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42);
+        quantities = new double[1 << 16];
+        for (int i = 0; i < quantities.length; i++) {
+            quantities[i] = Math.exp(random.nextGaussian() + 2);
+        }
+        statistics = new EmissionStatistics();
+        partial = new EmissionStatistics();
+        for (int i = 0; i < 1_000_000; i++) {
+            double quantity = quantities[i & (quantities.length - 1)];
+            statistics.record(i, SOURCES[i % SOURCES.length], quantity, 0.2, quantity * 0.2);
+            partial.record(i, SOURCES[i % SOURCES.length], quantity, 0.2, quantity * 0.2);
+        }
+    }
+    
+    @Benchmark
+    public void record() {
+        int op = ops++;
+        double quantity = quantities[op & (quantities.length - 1)];
+        statistics.record(op, SOURCES[op % SOURCES.length], quantity, 0.2, quantity * 0.2);
+    }
+    
+    @Benchmark
+    public EmissionStatistics.Summary summarize() {
+        return statistics.summarize(EmissionSource.CAR, EmissionStatistics.Metric.QUANTITY);
+    }
+    
+    @Benchmark
+    public EmissionStatistics merge() {
+        EmissionStatistics merged = new EmissionStatistics();
+        merged.merge(statistics);
+        merged.merge(partial);
+        return merged;
+    }
+}
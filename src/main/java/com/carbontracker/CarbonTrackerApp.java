@@ -1,8 +1,10 @@
 package com.carbontracker;
 
 import javafx.application.Application;
+import javafx.application.Platform;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
+import javafx.scene.Node;
 import javafx.scene.Scene;
 import javafx.scene.control.*;
 import javafx.scene.layout.*;
@@ -10,65 +12,255 @@ import javafx.scene.paint.Color;
 import javafx.scene.text.Font;
 import javafx.scene.text.FontWeight;
 import javafx.stage.Stage;
+import java.io.IOException;
+import java.io.Reader;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import com.carbontracker.model.BudgetAlertEngine;
+import com.carbontracker.model.EmissionBudget;
 import com.carbontracker.model.EmissionCalculator;
+import com.carbontracker.model.EmissionCategory;
+import com.carbontracker.model.EmissionFactorRegistry;
+import com.carbontracker.model.EmissionStatistics;
+import com.carbontracker.storage.EmissionStore;
+import com.carbontracker.ui.CssTiming;
 import com.carbontracker.ui.DashboardPane;
+import com.carbontracker.ui.EmissionUpdateBus;
+import com.carbontracker.ui.HistoryPane;
 import com.carbontracker.ui.TransportPane;
+import com.carbontracker.ui.ViewCache;
 import com.carbontracker.ui.EnergyPane;
+import com.carbontracker.ui.FoodPane;
 
 /**
  * Main JavaFX Application for Carbon Emission Tracker
  */
 public class CarbonTrackerApp extends Application {
     
+    private static final String HISTORY_VIEW = "history";
+    private static final boolean TIMING = Boolean.getBoolean("carbontracker.timing");
+    
     private EmissionCalculator calculator;
+    private EmissionStore store;
+    private EmissionFactorRegistry factorRegistry;
+    private EmissionUpdateBus updateBus;
+    private BudgetAlertEngine budgets;
+    private final EmissionStatistics statistics = new EmissionStatistics();
     private Label totalEmissionsLabel;
     private DashboardPane dashboardPane;
-    private TransportPane transportPane;
-    private EnergyPane energyPane;
+    private final ViewCache<String> views = new ViewCache<>();
+    private HistoryPane historyPane;
+    private Thread historyLoader;
+    private boolean customFactors;
+    // Set on the FX thread when factors are reloaded before the dashboard is ready
+    private boolean recomputePending;
     
     @Override
     public void start(Stage primaryStage) {
         calculator = new EmissionCalculator();
+        calculator.addSink(statistics);
+        loadFactors();
+        updateBus = new EmissionUpdateBus(calculator);
         
         primaryStage.setTitle("🌍 Carbon Footprint");
         
         // Create main layout
         BorderPane root = new BorderPane();
-        root.setStyle("-fx-background-color: #0f172a;");
-        
         // Top header
         VBox header = createHeader();
         root.setTop(header);
         
-        // Left navigation
+        // Left navigation, enabled once the dashboard is ready
         VBox navigation = createNavigation(root);
+        navigation.setDisable(true);
         root.setLeft(navigation);
         
-        // Center content - start with dashboard
-        dashboardPane = new DashboardPane(calculator);
-        root.setCenter(dashboardPane.getPane());
+        // Center content - a placeholder until the saved history is loaded
+        root.setCenter(createLoadingPlaceholder());
         
         // Create scene
         Scene scene = new Scene(root, 1200, 700);
         scene.getStylesheets().add(getClass().getResource("/styles.css").toExternalForm());
+        if (TIMING) {
+            logFirstFrame(scene);
+        }
         
         primaryStage.setScene(scene);
         primaryStage.show();
+        
+        // Replay the history off the FX thread so the shell paints immediately
+        historyLoader = new Thread(() -> {
+            openStore();
+            loadBudgets();
+            Platform.runLater(() -> finishStartup(root, navigation));
+        }, "history-loader");
+        historyLoader.setDaemon(true);
+        historyLoader.start();
+    }
+    
+    /**
+     * Builds the dashboard once the history is loaded, then enables
+     * navigation and starts following the calculator.
+     */
+    private void finishStartup(BorderPane root, VBox navigation) {
+        // Center content - start with dashboard, other views are built once and reused
+        dashboardPane = new DashboardPane(calculator, budgets, statistics);
+        root.setCenter(dashboardPane.getPane());
+        registerViews();
+        navigation.setDisable(false);
+        
+        // Header and dashboard follow the calculator at most once per frame
+        updateBus.addListener(this::updateTotalEmissions);
+        updateBus.addListener(() -> dashboardPane.refresh());
+        updateBus.addListener(() -> {
+            if (historyPane != null && historyPane.getPane().getScene() != null) {
+                historyPane.refresh();
+            }
+        });
+        updateBus.start();
+        if (recomputePending) {
+            recomputeEmissions();
+        }
+        
+        if (TIMING) {
+            System.out.printf("Dashboard ready %d ms after JVM start%n",
+                ManagementFactory.getRuntimeMXBean().getUptime());
+            Platform.runLater(() -> CssTiming.report(root, 20));
+        }
+        
+        // Build the remaining views in the background of the next frames
+        Runnable afterPrewarm = Boolean.getBoolean("carbontracker.exitAfterStartup") ? Platform::exit : null;
+        if (!"false".equals(System.getProperty("carbontracker.prewarm"))) {
+            views.prewarm(afterPrewarm);
+        } else if (afterPrewarm != null) {
+            Platform.runLater(afterPrewarm);
+        }
+    }
+    
+    private Label createLoadingPlaceholder() {
+        Label loading = new Label("Loading your emission history…");
+        loading.setFont(Font.font("Segoe UI", FontWeight.NORMAL, 17));
+        loading.setTextFill(Color.web("#94a3b8"));
+        return loading;
+    }
+    
+    /** Prints the time from JVM start to the first laid-out frame. */
+    private void logFirstFrame(Scene scene) {
+        Runnable[] listener = new Runnable[1];
+        listener[0] = () -> {
+            scene.removePostLayoutPulseListener(listener[0]);
+            System.out.printf("First frame %d ms after JVM start%n",
+                ManagementFactory.getRuntimeMXBean().getUptime());
+        };
+        scene.addPostLayoutPulseListener(listener[0]);
+    }
+    
+    /**
+     * Uses {@code ~/.carbontracker/factors.csv}, if present, for emission
+     * factors and reloads it whenever it is edited. The region comes from
+     * the {@code carbontracker.region} system property.
+     */
+    private void loadFactors() {
+        factorRegistry = new EmissionFactorRegistry();
+        calculator.setFactorRegistry(factorRegistry);
+        calculator.setRegion(System.getProperty("carbontracker.region", calculator.getRegion()));
+        Path path = Paths.get(System.getProperty("user.home"), ".carbontracker", "factors.csv");
+        if (Files.exists(path)) {
+            try {
+                factorRegistry.watch(path);
+                customFactors = true;
+                factorRegistry.addReloadListener(() -> Platform.runLater(this::recomputeEmissions));
+            } catch (IOException e) {
+                System.err.println("Could not load emission factors from " + path + ": " + e.getMessage());
+            }
+        }
+    }
+    
+    /**
+     * Recalculates the recorded activities after the factor file changed.
+     * Runs on the FX thread, which is where activities are added; until the
+     * history is loaded it is left to {@link #finishStartup}.
+     */
+    private void recomputeEmissions() {
+        if (dashboardPane == null) {
+            recomputePending = true;
+            return;
+        }
+        recomputePending = false;
+        calculator.recomputeEmissions();
+        updateBus.requestRefresh();
+    }
+    
+    /**
+     * Reopens the emission history saved by previous runs and keeps
+     * recording into it. Falls back to in-memory tracking if the store
+     * cannot be opened.
+     */
+    private void openStore() {
+        Path path = Paths.get(System.getProperty("user.home"), ".carbontracker", "emissions.dat");
+        try {
+            store = EmissionStore.open(path);
+            store.forEach((timestamp, source, quantity, factor, kgCO2) -> {
+                calculator.replay(timestamp, source, quantity, factor, kgCO2);
+                statistics.record(timestamp, source, quantity, factor, kgCO2);
+            });
+            // The store keeps the factors activities were recorded with
+            if (customFactors) {
+                calculator.recomputeEmissions();
+            }
+            calculator.addSink(store);
+        } catch (IOException e) {
+            System.err.println("Could not open emission history at " + path + ": " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Starts evaluating the budgets in {@code ~/.carbontracker/budgets.csv},
+     * or a 500 kg all-time footprint budget if there is no such file. Runs
+     * after the history is replayed, so budgets start from the saved totals.
+     */
+    private void loadBudgets() {
+        budgets = BudgetAlertEngine.attach(calculator);
+        Path path = Paths.get(System.getProperty("user.home"), ".carbontracker", "budgets.csv");
+        if (Files.exists(path)) {
+            try (Reader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+                budgets.addBudgets(EmissionBudget.parseAll(reader));
+                return;
+            } catch (IOException e) {
+                System.err.println("Could not load budgets from " + path + ": " + e.getMessage());
+            }
+        }
+        budgets.addBudget(EmissionBudget.forTotal("footprint", null, 500));
+    }
+    
+    @Override
+    public void stop() throws IOException {
+        updateBus.stop();
+        try {
+            // Let a replay still in progress finish before the store is closed
+            historyLoader.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        factorRegistry.close();
+        if (store != null) {
+            store.close();
+        }
     }
     
     private VBox createHeader() {
         VBox header = new VBox(15);
         header.setPadding(new Insets(35, 30, 35, 30));
         header.setAlignment(Pos.CENTER);
-        header.setStyle("-fx-background-color: #0f172a; " +
-                       "-fx-border-color: #10b981; " +
-                       "-fx-border-width: 0 0 3 0; " +
-                       "-fx-effect: dropshadow(gaussian, rgba(16, 185, 129, 0.3), 20, 0, 0, 8);");
+        header.getStyleClass().add("app-header");
         
         Label title = new Label("🌍 CarbonSense ");
         title.setFont(Font.font("Segoe UI", FontWeight.BOLD, 44));
         title.setTextFill(Color.web("#10b981"));
-        title.setStyle("-fx-effect: dropshadow(gaussian, rgba(16, 185, 129, 0.6), 8, 0, 0, 3);");
+        title.getStyleClass().add("app-title");
         
         Label subtitle = new Label("Track, Analyze & Reduce Your Carbon Footprint");
         subtitle.setFont(Font.font("Segoe UI", FontWeight.LIGHT, 17));
@@ -77,7 +269,7 @@ public class CarbonTrackerApp extends Application {
         totalEmissionsLabel = new Label("Total Emissions: 0.00 kg CO₂");
         totalEmissionsLabel.setFont(Font.font("Segoe UI", FontWeight.BOLD, 26));
         totalEmissionsLabel.setTextFill(Color.web("#10b981"));
-        totalEmissionsLabel.setStyle("-fx-effect: dropshadow(gaussian, rgba(16, 185, 129, 0.5), 5, 0, 0, 2);");
+        totalEmissionsLabel.getStyleClass().add("total-label");
         
         header.getChildren().addAll(title, subtitle, totalEmissionsLabel);
         return header;
@@ -87,126 +279,77 @@ public class CarbonTrackerApp extends Application {
         VBox navigation = new VBox(22);
         navigation.setPadding(new Insets(30));
         navigation.setPrefWidth(250);
-        navigation.setStyle("-fx-background-color: #1e293b; " +
-                           "-fx-border-color: #334155; " +
-                           "-fx-border-width: 0 1 0 0; " +
-                           "-fx-effect: dropshadow(gaussian, rgba(0,0,0,0.3), 15, 0, 5, 0);");
+        navigation.getStyleClass().add("nav-bar");
         
         Label navTitle = new Label("MENU");
         navTitle.setFont(Font.font("Segoe UI", FontWeight.BOLD, 16));
         navTitle.setTextFill(Color.web("#10b981"));
-        navTitle.setStyle("-fx-letter-spacing: 3px;");
+        navTitle.getStyleClass().add("nav-title");
         
-        Button dashboardBtn = createNavButton("📊 Dashboard", "#10b981");
-        dashboardBtn.setOnAction(e -> {
-            dashboardPane.refresh();
-            root.setCenter(dashboardPane.getPane());
-            updateTotalEmissions();
-        });
+        Button dashboardBtn = createNavButton("📊 Dashboard", true);
+        // The update bus keeps the dashboard current, so switching back needs no refresh
+        dashboardBtn.setOnAction(e -> root.setCenter(dashboardPane.getPane()));
         
-        Button transportBtn = createNavButton("🚗 Transport", "#64748b");
-        transportBtn.setOnAction(e -> {
-            if (transportPane == null) {
-                transportPane = new TransportPane(calculator, this::updateTotalEmissions);
-            }
-            root.setCenter(transportPane.getPane());
-        });
+        VBox categoryButtons = new VBox(22);
+        for (EmissionCategory category : EmissionCategory.values()) {
+            Button categoryBtn = createNavButton(category.getDisplayName(), false);
+            categoryBtn.setOnAction(e -> root.setCenter(views.get(category.name())));
+            categoryButtons.getChildren().add(categoryBtn);
+        }
         
-        Button energyBtn = createNavButton("⚡ Energy", "#64748b");
-        energyBtn.setOnAction(e -> {
-            if (energyPane == null) {
-                energyPane = new EnergyPane(calculator, this::updateTotalEmissions);
+        Button historyBtn = createNavButton("📉 History", false);
+        historyBtn.setOnAction(e -> {
+            if (views.isBuilt(HISTORY_VIEW)) {
+                historyPane.refresh();
             }
-            root.setCenter(energyPane.getPane());
+            root.setCenter(views.get(HISTORY_VIEW));
         });
         
         Separator separator = new Separator();
         
-        Button resetBtn = createNavButton("🔄 Reset Data", "#64748b");
+        Button resetBtn = createNavButton("🔄 Reset Data", false);
         resetBtn.setOnAction(e -> resetAllData(root));
         
         navigation.getChildren().addAll(navTitle, new Separator(), 
-            dashboardBtn, transportBtn, energyBtn, separator, resetBtn);
+            dashboardBtn, categoryButtons, historyBtn, separator, resetBtn);
         
         return navigation;
     }
     
-    private Button createNavButton(String text, String color) {
+    /** Registers the category input panes and the history view with the view cache. */
+    private void registerViews() {
+        for (EmissionCategory category : EmissionCategory.values()) {
+            views.register(category.name(), () -> createCategoryPane(category));
+        }
+        views.register(HISTORY_VIEW, () -> {
+            historyPane = new HistoryPane(calculator);
+            return historyPane.getPane();
+        });
+    }
+    
+    private Node createCategoryPane(EmissionCategory category) {
+        switch (category) {
+            case TRANSPORT:
+                return new TransportPane(calculator).getPane();
+            case ENERGY:
+                return new EnergyPane(calculator).getPane();
+            case FOOD:
+                return new FoodPane(calculator).getPane();
+            default:
+                throw new IllegalArgumentException("No input pane for " + category);
+        }
+    }
+    
+    /** A navigation button; the primary one is highlighted. */
+    private Button createNavButton(String text, boolean primary) {
         Button button = new Button(text);
         button.setPrefWidth(210);
         button.setPrefHeight(52);
         
-        // Determine if this is the primary green button
-        boolean isGreen = color.equals("#10b981") || color.equals("#27ae60");
-        
-        if (isGreen) {
-            button.setStyle("-fx-background-color: #10b981; " +
-                           "-fx-text-fill: #0f172a; " +
-                           "-fx-font-size: 15px; " +
-                           "-fx-font-family: 'Segoe UI'; " +
-                           "-fx-font-weight: 700; " +
-                           "-fx-background-radius: 12; " +
-                           "-fx-cursor: hand; " +
-                           "-fx-effect: dropshadow(gaussian, rgba(16, 185, 129, 0.4), 10, 0, 0, 4);");
-            
-            button.setOnMouseEntered(e -> 
-                button.setStyle("-fx-background-color: #059669; " +
-                              "-fx-text-fill: #0f172a; " +
-                              "-fx-font-size: 15px; " +
-                              "-fx-font-family: 'Segoe UI'; " +
-                              "-fx-font-weight: 700; " +
-                              "-fx-background-radius: 12; " +
-                              "-fx-cursor: hand; " +
-                              "-fx-effect: dropshadow(gaussian, rgba(16, 185, 129, 0.6), 15, 0, 0, 6); " +
-                              "-fx-scale-x: 1.03; " +
-                              "-fx-scale-y: 1.03;"));
-            
-            button.setOnMouseExited(e -> 
-                button.setStyle("-fx-background-color: #10b981; " +
-                              "-fx-text-fill: #0f172a; " +
-                              "-fx-font-size: 15px; " +
-                              "-fx-font-family: 'Segoe UI'; " +
-                              "-fx-font-weight: 700; " +
-                              "-fx-background-radius: 12; " +
-                              "-fx-cursor: hand; " +
-                              "-fx-effect: dropshadow(gaussian, rgba(16, 185, 129, 0.4), 10, 0, 0, 4);"));
-        } else {
-            button.setStyle("-fx-background-color: transparent; " +
-                           "-fx-text-fill: #94a3b8; " +
-                           "-fx-font-size: 15px; " +
-                           "-fx-font-family: 'Segoe UI'; " +
-                           "-fx-font-weight: 600; " +
-                           "-fx-background-radius: 12; " +
-                           "-fx-border-color: #334155; " +
-                           "-fx-border-width: 1.5; " +
-                           "-fx-border-radius: 12; " +
-                           "-fx-cursor: hand;");
-            
-            button.setOnMouseEntered(e -> 
-                button.setStyle("-fx-background-color: #334155; " +
-                              "-fx-text-fill: #f1f5f9; " +
-                              "-fx-font-size: 15px; " +
-                              "-fx-font-family: 'Segoe UI'; " +
-                              "-fx-font-weight: 600; " +
-                              "-fx-background-radius: 12; " +
-                              "-fx-border-color: #10b981; " +
-                              "-fx-border-width: 1.5; " +
-                              "-fx-border-radius: 12; " +
-                              "-fx-cursor: hand; " +
-                              "-fx-scale-x: 1.03; " +
-                              "-fx-scale-y: 1.03;"));
-            
-            button.setOnMouseExited(e -> 
-                button.setStyle("-fx-background-color: transparent; " +
-                              "-fx-text-fill: #94a3b8; " +
-                              "-fx-font-size: 15px; " +
-                              "-fx-font-family: 'Segoe UI'; " +
-                              "-fx-font-weight: 600; " +
-                              "-fx-background-radius: 12; " +
-                              "-fx-border-color: #334155; " +
-                              "-fx-border-width: 1.5; " +
-                              "-fx-border-radius: 12; " +
-                              "-fx-cursor: hand;"));
+        // Hover styling is a :hover pseudo-class in styles.css
+        button.getStyleClass().add("nav-button");
+        if (primary) {
+            button.getStyleClass().add("primary");
         }
         
         return button;
@@ -228,12 +371,13 @@ public class CarbonTrackerApp extends Application {
         
         alert.showAndWait().ifPresent(response -> {
             if (response == ButtonType.OK) {
+                // Cached views stay bound to the calculator and just show the cleared data
                 calculator.reset();
-                transportPane = null;
-                energyPane = null;
-                dashboardPane = new DashboardPane(calculator);
+                if (historyPane != null) {
+                    historyPane.fitToData();
+                }
                 root.setCenter(dashboardPane.getPane());
-                updateTotalEmissions();
+                updateBus.requestRefresh();
             }
         });
     }
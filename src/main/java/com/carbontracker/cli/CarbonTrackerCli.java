@@ -0,0 +1,315 @@
+package com.carbontracker.cli;
+
+import com.carbontracker.io.CsvActivityImporter;
+import com.carbontracker.io.EmissionExporter;
+import com.carbontracker.io.ImportResult;
+import com.carbontracker.model.BudgetAlertEngine;
+import com.carbontracker.model.ConcurrentEmissionCalculator;
+import com.carbontracker.model.EmissionBudget;
+import com.carbontracker.model.EmissionCalculator;
+import com.carbontracker.model.EmissionCategory;
+import com.carbontracker.model.EmissionRollup;
+import com.carbontracker.model.EmissionSnapshot;
+import com.carbontracker.model.EmissionSource;
+import com.carbontracker.model.EmissionStatistics;
+import com.carbontracker.model.Scenario;
+import com.carbontracker.model.ScenarioSimulator;
+import com.carbontracker.server.EmissionIngestServer;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Headless batch entry point: imports activity CSV files, computes totals and
+ * breakdowns and prints or writes a report. Uses only the model, I/O and
+ * server packages, so it starts without the JavaFX toolkit. With
+ * {@code --serve} it keeps running as a local ingestion endpoint (see
+ * {@link EmissionIngestServer}) and prints the report when it is stopped.
+ * <p>
+ * Usage: {@code carbon-cli [--parallel N] [--factors FILE] [--region R] [--output FILE]
+ * [--export FILE [--export-rollup hour|day|month]] [--budgets FILE] [--stats] [--scenarios] [--serve PORT] FILE...}
+ */
+public class CarbonTrackerCli {
+    
+    private static final String USAGE =
+        "Usage: carbon-cli [--parallel N] [--factors FILE] [--region R] [--output FILE]\n" +
+        "                  [--export FILE [--export-rollup hour|day|month]] [--budgets FILE]\n" +
+        "                  [--stats] [--scenarios] [--serve PORT] FILE...\n" +
+        "  Imports timestamp,source,quantity CSV files and prints an emission report.\n" +
+        "  --parallel N   parse each file with N threads\n" +
+        "  --factors FILE use emission factors from a region,source,effectiveFrom,factor CSV\n" +
+        "  --region R     region of the factor table to apply (default: default)\n" +
+        "  --output FILE  write the report to FILE instead of standard output\n" +
+        "  --export FILE  also write every imported activity to FILE as .csv, .jsonl\n" +
+        "                 or, for any other extension, the columnar binary format\n" +
+        "  --export-rollup G  export hour, day or month totals per source instead\n" +
+        "  --budgets FILE report activities that exceed the id,scope,window,limitKg budgets\n" +
+        "  --stats        add median, p95 and mean quantity per source to the report\n" +
+        "  --scenarios    add projected savings of common changes to the report\n" +
+        "  --serve PORT   after importing, accept JSON activities on\n" +
+        "                 http://127.0.0.1:PORT/emissions until stopped; FILE is optional";
+    
+    public static void main(String[] args) {
+        System.exit(run(args, System.out, System.err));
+    }
+    
+    /**
+     * Runs the CLI and returns the process exit code.
+     */
+    public static int run(String[] args, PrintStream out, PrintStream err) {
+        int threads = 1;
+        Path output = null;
+        Path factors = null;
+        String region = null;
+        Path export = null;
+        Path budgetFile = null;
+        boolean stats = false;
+        boolean scenarios = false;
+        EmissionRollup.Granularity exportGranularity = null;
+        int servePort = -1;
+        List<Path> inputs = new ArrayList<>();
+        
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (arg.equals("-h") || arg.equals("--help")) {
+                out.println(USAGE);
+                return 0;
+            } else if (arg.equals("--parallel") && i + 1 < args.length) {
+                try {
+                    threads = Integer.parseInt(args[++i]);
+                } catch (NumberFormatException e) {
+                    threads = 0;
+                }
+                if (threads < 1) {
+                    err.println("--parallel needs a positive thread count");
+                    return 2;
+                }
+            } else if (arg.equals("--factors") && i + 1 < args.length) {
+                factors = Paths.get(args[++i]);
+            } else if (arg.equals("--region") && i + 1 < args.length) {
+                region = args[++i];
+            } else if (arg.equals("--output") && i + 1 < args.length) {
+                output = Paths.get(args[++i]);
+            } else if (arg.equals("--export") && i + 1 < args.length) {
+                export = Paths.get(args[++i]);
+            } else if (arg.equals("--export-rollup") && i + 1 < args.length) {
+                try {
+                    exportGranularity = EmissionRollup.Granularity.valueOf(args[++i].toUpperCase(Locale.ROOT));
+                } catch (IllegalArgumentException e) {
+                    err.println("--export-rollup needs hour, day or month");
+                    return 2;
+                }
+            } else if (arg.equals("--budgets") && i + 1 < args.length) {
+                budgetFile = Paths.get(args[++i]);
+            } else if (arg.equals("--stats")) {
+                stats = true;
+            } else if (arg.equals("--scenarios")) {
+                scenarios = true;
+            } else if (arg.equals("--serve") && i + 1 < args.length) {
+                try {
+                    servePort = Integer.parseInt(args[++i]);
+                } catch (NumberFormatException e) {
+                    servePort = -1;
+                }
+                if (servePort < 0 || servePort > 65535) {
+                    err.println("--serve needs a port number");
+                    return 2;
+                }
+            } else if (arg.startsWith("-")) {
+                err.println("Unknown option: " + arg);
+                err.println(USAGE);
+                return 2;
+            } else {
+                inputs.add(Paths.get(arg));
+            }
+        }
+        if (inputs.isEmpty() && servePort < 0) {
+            err.println(USAGE);
+            return 2;
+        }
+        
+        // Requests are handled concurrently, so serving needs the thread-safe calculator;
+        // it keeps history for exporting the imported files and, while serving, only for scenarios
+        EmissionCalculator calculator = servePort >= 0
+            ? new ConcurrentEmissionCalculator(scenarios || export != null) : new EmissionCalculator();
+        if (region != null) {
+            calculator.setRegion(region);
+        }
+        EmissionStatistics statistics = null;
+        if (stats) {
+            statistics = new EmissionStatistics();
+            calculator.addSink(statistics);
+        }
+        CsvActivityImporter importer = new CsvActivityImporter(calculator);
+        long rejected = 0;
+        try {
+            if (factors != null) {
+                calculator.getFactorRegistry().load(factors);
+            }
+            if (budgetFile != null) {
+                BudgetAlertEngine budgets = BudgetAlertEngine.attach(calculator);
+                budgets.addListener(alert -> err.println("Budget alert: " + alert
+                    + (alert.getWindowStart() != Long.MIN_VALUE
+                        ? " in window from " + Instant.ofEpochMilli(alert.getWindowStart()) : "")
+                    + " (" + alert.getBudget().getId() + ")"));
+                try (Reader reader = Files.newBufferedReader(budgetFile, StandardCharsets.UTF_8)) {
+                    budgets.addBudgets(EmissionBudget.parseAll(reader));
+                }
+            }
+            for (Path input : inputs) {
+                ImportResult result = threads > 1
+                    ? importer.importFileParallel(input, threads)
+                    : importer.importFile(input);
+                err.println(input + ": " + result);
+                for (String error : result.getErrors()) {
+                    err.println("  " + error);
+                }
+                rejected += result.getRejectedRecords();
+            }
+            
+            if (export != null) {
+                EmissionExporter exporter = new EmissionExporter(calculator);
+                EmissionExporter.Format format = EmissionExporter.Format.forPath(export);
+                long rows = exportGranularity == null
+                    ? exporter.exportEntries(export, format)
+                    : exporter.exportRollup(export, format, exportGranularity, Long.MIN_VALUE, Long.MAX_VALUE);
+                err.println("Exported " + rows + " rows to " + export);
+            }
+            
+            if (servePort >= 0) {
+                if (!scenarios) {
+                    ((ConcurrentEmissionCalculator) calculator).discardHistory();
+                }
+                serve((ConcurrentEmissionCalculator) calculator, statistics, scenarios, servePort, rejected,
+                    output, out, err);
+            } else {
+                writeReport(formatReport(calculator.snapshot(), rejected, statistics,
+                    scenarios ? project(calculator) : null), output, out);
+            }
+        } catch (IOException e) {
+            err.println("Error: " + e.getMessage());
+            return 1;
+        }
+        return 0;
+    }
+    
+    /**
+     * Serves the ingestion endpoint on the loopback interface until the
+     * process is stopped, then writes the report of everything imported.
+     */
+    private static void serve(ConcurrentEmissionCalculator calculator, EmissionStatistics statistics,
+                              boolean scenarios, int port, long rejected, Path output,
+                              PrintStream out, PrintStream err) throws IOException {
+        EmissionIngestServer server = EmissionIngestServer.start(
+            new InetSocketAddress(InetAddress.getLoopbackAddress(), port), calculator);
+        err.println("Listening on http://127.0.0.1:" + server.getPort() + "/emissions"
+            + (server.usesVirtualThreads() ? " (virtual threads)" : "") + "; press Ctrl+C to stop");
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.close();
+            try {
+                writeReport(formatReport(calculator.snapshot(), rejected + server.getRejectedRecords(), statistics,
+                    scenarios ? project(calculator) : null), output, out);
+            } catch (IOException e) {
+                err.println("Error: " + e.getMessage());
+            }
+            out.flush();
+        }, "ingest-shutdown"));
+        try {
+            new CountDownLatch(1).await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    private static void writeReport(String report, Path output, PrintStream out) throws IOException {
+        if (output == null) {
+            out.print(report);
+        } else {
+            try (Writer writer = Files.newBufferedWriter(output, StandardCharsets.UTF_8)) {
+                writer.write(report);
+            }
+        }
+    }
+    
+    /** Replays the imported activities under the suggested scenarios. */
+    private static List<ScenarioSimulator.Result> project(EmissionCalculator calculator) {
+        // Requests may still be recording when a served run shuts down
+        synchronized (calculator.getLedger()) {
+            return new ScenarioSimulator(calculator).simulate(Scenario.suggestions());
+        }
+    }
+    
+    /**
+     * Report with a per-source section on the distribution of activity
+     * quantities appended if {@code statistics} is not null, and one on
+     * projected savings if {@code projections} is not null.
+     */
+    public static String formatReport(EmissionSnapshot snapshot, long rejectedRecords, EmissionStatistics statistics,
+                                      List<ScenarioSimulator.Result> projections) {
+        StringBuilder section = new StringBuilder(formatReport(snapshot, rejectedRecords));
+        if (statistics != null) {
+            appendStatistics(section, statistics);
+        }
+        if (projections != null) {
+            section.append(String.format(Locale.ROOT, "%nProjected Savings%n-----------------%n"));
+            for (ScenarioSimulator.Result result : projections) {
+                section.append(String.format(Locale.ROOT, "%-46s %12.2f kg CO2 (%5.1f%%)%n",
+                    result.getScenario().getName(), result.getSavingsKg(), result.getSavingsFraction() * 100));
+            }
+        }
+        return section.toString();
+    }
+    
+    private static void appendStatistics(StringBuilder section, EmissionStatistics statistics) {
+        section.append(String.format(Locale.ROOT, "%nActivity Distribution%n---------------------%n"));
+        section.append(String.format(Locale.ROOT, "%-14s %10s %10s %10s %10s %10s%n",
+            "Source", "Median", "P95", "Mean", "Std dev", "Unit"));
+        for (EmissionSource source : EmissionSource.values()) {
+            EmissionStatistics.Summary summary = statistics.summarize(source, EmissionStatistics.Metric.QUANTITY);
+            if (summary.getCount() > 0) {
+                section.append(String.format(Locale.ROOT, "%-14s %10.2f %10.2f %10.2f %10.2f %10s%n",
+                    source.getKey(), summary.getMedian(), summary.getP95(), summary.getMean(),
+                    summary.getStandardDeviation(), source.getUnit()));
+            }
+        }
+    }
+    
+    /**
+     * Plain-text report with category totals and per-source breakdowns.
+     */
+    public static String formatReport(EmissionSnapshot snapshot, long rejectedRecords) {
+        StringBuilder report = new StringBuilder();
+        report.append("Carbon Emission Report\n");
+        report.append("======================\n");
+        report.append(String.format(Locale.ROOT, "Activities: %d (rejected: %d)%n%n",
+            snapshot.getCount(), rejectedRecords));
+        
+        for (EmissionCategory category : EmissionCategory.values()) {
+            report.append(String.format(Locale.ROOT, "%-16s %14.2f kg CO2%n",
+                category.getLabel(),
+                snapshot.getCategoryTotal(category)));
+            for (EmissionSource source : EmissionSource.values()) {
+                long count = snapshot.getSourceCount(source);
+                if (source.getCategory() == category && count > 0) {
+                    report.append(String.format(Locale.ROOT, "  %-14s %14.2f kg CO2  (%d activities)%n",
+                        source.getKey(), snapshot.getSourceTotal(source), count));
+                }
+            }
+        }
+        report.append(String.format(Locale.ROOT, "%n%-16s %14.2f kg CO2%n", "Total", snapshot.getTotal()));
+        return report.toString();
+    }
+}
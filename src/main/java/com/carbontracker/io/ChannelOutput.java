@@ -0,0 +1,166 @@
+package com.carbontracker.io;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Buffered writer of ASCII text and big-endian binary values to a file.
+ * One direct buffer is reused for the whole file and handed to the channel
+ * whenever it fills, so writing allocates nothing per value except for
+ * doubles in text form that need more than a few fraction digits.
+ */
+final class ChannelOutput implements Closeable {
+    
+    private static final int BUFFER_SIZE = 1 << 20;
+    private static final int MAX_FRACTION_DIGITS = 9;
+    private static final double[] POWERS_OF_TEN = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9
+    };
+    
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private final byte[] digits = new byte[24];
+    
+    ChannelOutput(Path file) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.CREATE,
+            StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+    }
+    
+    private void ensure(int bytes) throws IOException {
+        if (buffer.remaining() < bytes) {
+            flush();
+        }
+    }
+    
+    void putByte(int value) throws IOException {
+        ensure(1);
+        buffer.put((byte) value);
+    }
+    
+    /** Writes the characters of {@code text}, which must be ASCII. */
+    void putAscii(String text) throws IOException {
+        int length = text.length();
+        for (int start = 0; start < length; start += BUFFER_SIZE) {
+            int end = Math.min(length, start + BUFFER_SIZE);
+            ensure(end - start);
+            for (int i = start; i < end; i++) {
+                buffer.put((byte) text.charAt(i));
+            }
+        }
+    }
+    
+    /** Writes {@code value} in decimal. */
+    void putDecimal(long value) throws IOException {
+        if (value == Long.MIN_VALUE) {
+            putAscii(Long.toString(value));
+            return;
+        }
+        ensure(digits.length + 1);
+        if (value < 0) {
+            buffer.put((byte) '-');
+            value = -value;
+        }
+        int count = 0;
+        do {
+            digits[count++] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while (value != 0);
+        while (count > 0) {
+            buffer.put(digits[--count]);
+        }
+    }
+    
+    /**
+     * Writes {@code value} in decimal so that parsing the text gives back the
+     * same double. Values with up to {@value #MAX_FRACTION_DIGITS} fraction
+     * digits, such as typical quantities and factors, are written directly;
+     * others fall back to {@link Double#toString}.
+     */
+    void putDecimal(double value) throws IOException {
+        for (int scale = 0; scale <= MAX_FRACTION_DIGITS; scale++) {
+            double scaled = value * POWERS_OF_TEN[scale];
+            if (Math.abs(scaled) >= 1e15) {
+                break;
+            }
+            long unscaled = (long) scaled;
+            // Dividing exact integers is correctly rounded, like parsing the decimal text
+            if (unscaled == scaled && unscaled / POWERS_OF_TEN[scale] == value) {
+                putFixed(unscaled, scale);
+                return;
+            }
+        }
+        putAscii(Double.toString(value));
+    }
+    
+    /** Writes {@code unscaled / 10^scale} with exactly {@code scale} fraction digits. */
+    private void putFixed(long unscaled, int scale) throws IOException {
+        if (scale == 0) {
+            putDecimal(unscaled);
+            return;
+        }
+        ensure(digits.length + 1);
+        if (unscaled < 0) {
+            buffer.put((byte) '-');
+            unscaled = -unscaled;
+        }
+        int count = 0;
+        for (int i = 0; i < scale; i++) {
+            digits[count++] = (byte) ('0' + unscaled % 10);
+            unscaled /= 10;
+        }
+        digits[count++] = '.';
+        do {
+            digits[count++] = (byte) ('0' + unscaled % 10);
+            unscaled /= 10;
+        } while (unscaled != 0);
+        while (count > 0) {
+            buffer.put(digits[--count]);
+        }
+    }
+    
+    void putInt(int value) throws IOException {
+        ensure(Integer.BYTES);
+        buffer.putInt(value);
+    }
+    
+    void putLong(long value) throws IOException {
+        ensure(Long.BYTES);
+        buffer.putLong(value);
+    }
+    
+    void putDouble(double value) throws IOException {
+        ensure(Double.BYTES);
+        buffer.putDouble(value);
+    }
+    
+    /** Writes {@code value} as an unsigned LEB128 varint of 1 to 10 bytes. */
+    void putVarLong(long value) throws IOException {
+        ensure(10);
+        while ((value & ~0x7FL) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+    
+    void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+    
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,523 @@
+package com.carbontracker.io;
+
+import com.carbontracker.model.EmissionCalculator;
+import com.carbontracker.model.EmissionSource;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Streams activity records from CSV files into an {@link EmissionCalculator}.
+ * <p>
+ * Each line is {@code timestamp,source,quantity}; further columns are ignored.
+ * The timestamp is epoch millis or an ISO date ({@code 2025-03-01}) or date-time
+ * ({@code 2025-03-01T08:30:00Z}, taken as UTC). The source is an
+ * {@link EmissionSource} key such as {@code car} or {@code naturalGas}, and the
+ * quantity is in the source's unit. Blank lines and lines starting with
+ * {@code #} are skipped, as is a header line. Quoted fields are not supported.
+ * <p>
+ * Files are read through fixed-size buffers and lines are parsed directly from
+ * the bytes, so memory use does not depend on file size. In parallel mode the
+ * file is split into line-aligned byte ranges that are parsed concurrently; the
+ * parsed records are handed to the calling thread in recycled batches, which
+ * adds them to the calculator, so any calculator can be used.
+ */
+public class CsvActivityImporter {
+    
+    private static final int BUFFER_SIZE = 1 << 20;
+    private static final int BATCH_SIZE = 8192;
+    private static final int MAX_REPORTED_ERRORS = 20;
+    
+    private static final byte[][] SOURCE_KEYS = new byte[EmissionSource.COUNT][];
+    private static final double[] POWERS_OF_TEN = new double[23];
+    
+    static {
+        for (EmissionSource source : EmissionSource.values()) {
+            SOURCE_KEYS[source.ordinal()] = source.getKey().getBytes(StandardCharsets.US_ASCII);
+        }
+        double power = 1;
+        for (int i = 0; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = power;
+            power *= 10;
+        }
+    }
+    
+    private final EmissionCalculator calculator;
+    
+    public CsvActivityImporter(EmissionCalculator calculator) {
+        this.calculator = calculator;
+    }
+    
+    /**
+     * Imports a file on the calling thread.
+     */
+    public ImportResult importFile(Path file) throws IOException {
+        long started = System.nanoTime();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            RangeParser parser = new RangeParser(channel, 0, size,
+                (timestamp, source, quantity) -> calculator.addEmission(source, quantity, timestamp));
+            try {
+                parser.run();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Import interrupted", e);
+            }
+            return new ImportResult(parser.accepted, parser.rejected, size,
+                System.nanoTime() - started, parser.errors);
+        }
+    }
+    
+    /**
+     * Imports a file by parsing {@code threads} byte ranges concurrently.
+     * Records from different ranges interleave, so the calculator's ledger
+     * will see them out of timestamp order.
+     */
+    public ImportResult importFileParallel(Path file, int threads) throws IOException {
+        if (threads < 1) {
+            throw new IllegalArgumentException("threads must be at least 1");
+        }
+        long started = System.nanoTime();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            BlockingQueue<RecordBatch> free = new ArrayBlockingQueue<>(threads * 3);
+            BlockingQueue<RecordBatch> filled = new ArrayBlockingQueue<>(threads * 3 + threads);
+            for (int i = 0; i < threads * 3; i++) {
+                free.add(new RecordBatch());
+            }
+            
+            ExecutorService workers = Executors.newFixedThreadPool(threads, runnable -> {
+                Thread thread = new Thread(runnable, "csv-import");
+                thread.setDaemon(true);
+                return thread;
+            });
+            List<RangeParser> parsers = new ArrayList<>();
+            List<Future<?>> futures = new ArrayList<>();
+            try {
+                long rangeSize = Math.max(1, (size + threads - 1) / threads);
+                for (long start = 0; start < size; start += rangeSize) {
+                    BatchingHandler handler = new BatchingHandler(free, filled);
+                    RangeParser parser = new RangeParser(channel, start, Math.min(size, start + rangeSize), handler);
+                    parsers.add(parser);
+                    futures.add(workers.submit(() -> {
+                        try {
+                            parser.run();
+                            handler.flush();
+                        } finally {
+                            filled.add(RecordBatch.END);
+                        }
+                        return null;
+                    }));
+                }
+                
+                int running = futures.size();
+                while (running > 0) {
+                    RecordBatch batch = filled.take();
+                    if (batch == RecordBatch.END) {
+                        running--;
+                        continue;
+                    }
+                    for (int i = 0; i < batch.size; i++) {
+                        calculator.addEmission(EmissionSource.byOrdinal(batch.sources[i]),
+                            batch.quantities[i], batch.timestamps[i]);
+                    }
+                    batch.size = 0;
+                    free.add(batch);
+                }
+                for (Future<?> future : futures) {
+                    future.get();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Import interrupted", e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof IOException) {
+                    throw (IOException) e.getCause();
+                }
+                throw new IOException("Import failed", e.getCause());
+            } finally {
+                workers.shutdownNow();
+            }
+            
+            long accepted = 0;
+            long rejected = 0;
+            List<String> errors = new ArrayList<>();
+            for (RangeParser parser : parsers) {
+                accepted += parser.accepted;
+                rejected += parser.rejected;
+                for (String error : parser.errors) {
+                    if (errors.size() < MAX_REPORTED_ERRORS) {
+                        errors.add(error);
+                    }
+                }
+            }
+            return new ImportResult(accepted, rejected, size, System.nanoTime() - started, errors);
+        }
+    }
+    
+    @FunctionalInterface
+    private interface RecordHandler {
+        void accept(long timestamp, EmissionSource source, double quantity) throws InterruptedException;
+    }
+    
+    /** Reusable block of parsed records passed from a worker to the importing thread. */
+    private static final class RecordBatch {
+        static final RecordBatch END = new RecordBatch();
+        
+        final long[] timestamps = new long[BATCH_SIZE];
+        final byte[] sources = new byte[BATCH_SIZE];
+        final double[] quantities = new double[BATCH_SIZE];
+        int size;
+    }
+    
+    private static final class BatchingHandler implements RecordHandler {
+        private final BlockingQueue<RecordBatch> free;
+        private final BlockingQueue<RecordBatch> filled;
+        private RecordBatch current;
+        
+        BatchingHandler(BlockingQueue<RecordBatch> free, BlockingQueue<RecordBatch> filled) {
+            this.free = free;
+            this.filled = filled;
+        }
+        
+        @Override
+        public void accept(long timestamp, EmissionSource source, double quantity) throws InterruptedException {
+            if (current == null) {
+                current = free.take();
+            }
+            int i = current.size++;
+            current.timestamps[i] = timestamp;
+            current.sources[i] = (byte) source.ordinal();
+            current.quantities[i] = quantity;
+            if (current.size == BATCH_SIZE) {
+                filled.put(current);
+                current = null;
+            }
+        }
+        
+        void flush() throws InterruptedException {
+            if (current != null) {
+                filled.put(current);
+                current = null;
+            }
+        }
+    }
+    
+    /**
+     * Parses the lines that start within {@code [start, end)} of a file.
+     */
+    private static final class RangeParser {
+        private final FileChannel channel;
+        private final long start;
+        private final long end;
+        private final RecordHandler handler;
+        
+        long accepted;
+        long rejected;
+        final List<String> errors = new ArrayList<>();
+        
+        RangeParser(FileChannel channel, long start, long end, RecordHandler handler) {
+            this.channel = channel;
+            this.start = start;
+            this.end = end;
+            this.handler = handler;
+        }
+        
+        void run() throws IOException, InterruptedException {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            ByteBuffer wrapper = ByteBuffer.wrap(buffer);
+            // A range owns the lines starting inside it; begin one byte early so a
+            // line starting exactly at 'start' is not mistaken for a partial one
+            long bufferOffset = start == 0 ? 0 : start - 1;
+            boolean skipPartialLine = start != 0;
+            int length = 0;
+            boolean eof = false;
+            
+            while (!eof) {
+                wrapper.limit(buffer.length).position(length);
+                int read = channel.read(wrapper, bufferOffset + length);
+                if (read <= 0) {
+                    eof = true;
+                } else {
+                    length += read;
+                }
+                
+                int lineStart = 0;
+                for (int i = 0; i < length; i++) {
+                    if (buffer[i] != '\n') {
+                        continue;
+                    }
+                    if (skipPartialLine) {
+                        skipPartialLine = false;
+                    } else {
+                        if (bufferOffset + lineStart >= end) {
+                            return;
+                        }
+                        parseLine(buffer, lineStart, i, bufferOffset + lineStart);
+                    }
+                    lineStart = i + 1;
+                }
+                
+                if (eof) {
+                    if (lineStart < length && !skipPartialLine && bufferOffset + lineStart < end) {
+                        parseLine(buffer, lineStart, length, bufferOffset + lineStart);
+                    }
+                } else if (lineStart == 0 && length == buffer.length) {
+                    // A single line longer than the buffer: reject it and resync at the next newline
+                    if (!skipPartialLine) {
+                        reject(bufferOffset, "line longer than " + BUFFER_SIZE + " bytes");
+                    }
+                    skipPartialLine = true;
+                    bufferOffset += length;
+                    length = 0;
+                } else {
+                    System.arraycopy(buffer, lineStart, buffer, 0, length - lineStart);
+                    bufferOffset += lineStart;
+                    length -= lineStart;
+                }
+            }
+        }
+        
+        private void parseLine(byte[] b, int from, int to, long fileOffset) throws InterruptedException {
+            if (to > from && b[to - 1] == '\r') {
+                to--;
+            }
+            if (from == to || b[from] == '#') {
+                return;
+            }
+            int firstComma = indexOf(b, from, to, (byte) ',');
+            int secondComma = firstComma < 0 ? -1 : indexOf(b, firstComma + 1, to, (byte) ',');
+            if (secondComma < 0) {
+                reject(fileOffset, "expected timestamp,source,quantity");
+                return;
+            }
+            int thirdComma = indexOf(b, secondComma + 1, to, (byte) ',');
+            int quantityEnd = thirdComma < 0 ? to : thirdComma;
+            
+            long timestamp = parseTimestamp(b, trimStart(b, from, firstComma), trimEnd(b, from, firstComma));
+            if (timestamp == Long.MIN_VALUE) {
+                if (fileOffset == 0) {
+                    return; // header line
+                }
+                reject(fileOffset, "invalid timestamp");
+                return;
+            }
+            EmissionSource source = parseSource(b, trimStart(b, firstComma + 1, secondComma),
+                trimEnd(b, firstComma + 1, secondComma));
+            if (source == null) {
+                reject(fileOffset, "unknown source");
+                return;
+            }
+            double quantity = parseDouble(b, trimStart(b, secondComma + 1, quantityEnd),
+                trimEnd(b, secondComma + 1, quantityEnd));
+            if (!(quantity >= 0) || Double.isInfinite(quantity)) {
+                reject(fileOffset, "quantity must be a non-negative number");
+                return;
+            }
+            handler.accept(timestamp, source, quantity);
+            accepted++;
+        }
+        
+        private void reject(long fileOffset, String reason) {
+            rejected++;
+            if (errors.size() < MAX_REPORTED_ERRORS) {
+                errors.add("byte " + fileOffset + ": " + reason);
+            }
+        }
+    }
+    
+    private static int indexOf(byte[] b, int from, int to, byte value) {
+        for (int i = from; i < to; i++) {
+            if (b[i] == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+    
+    private static int trimStart(byte[] b, int from, int to) {
+        while (from < to && b[from] == ' ') {
+            from++;
+        }
+        return from;
+    }
+    
+    private static int trimEnd(byte[] b, int from, int to) {
+        while (to > from && b[to - 1] == ' ') {
+            to--;
+        }
+        return to;
+    }
+    
+    /** Matches a source key, ignoring ASCII case; returns null if unknown. */
+    static EmissionSource parseSource(byte[] b, int from, int to) {
+        int length = to - from;
+        for (int s = 0; s < SOURCE_KEYS.length; s++) {
+            byte[] key = SOURCE_KEYS[s];
+            if (key.length != length) {
+                continue;
+            }
+            int i = 0;
+            while (i < length && (b[from + i] | 0x20) == (key[i] | 0x20)) {
+                i++;
+            }
+            if (i == length) {
+                return EmissionSource.byOrdinal(s);
+            }
+        }
+        return null;
+    }
+    
+    /**
+     * Parses epoch millis, {@code yyyy-MM-dd} or {@code yyyy-MM-ddTHH:mm[:ss][Z]}
+     * (UTC). Returns {@link Long#MIN_VALUE} if the field is not a timestamp.
+     */
+    static long parseTimestamp(byte[] b, int from, int to) {
+        int length = to - from;
+        if (length == 0) {
+            return Long.MIN_VALUE;
+        }
+        if (length >= 10 && b[from + 4] == '-' && b[from + 7] == '-') {
+            int year = digits(b, from, 4);
+            int month = digits(b, from + 5, 2);
+            int day = digits(b, from + 8, 2);
+            if (year < 0 || month < 1 || month > 12 || day < 1 || day > daysInMonth(year, month)) {
+                return Long.MIN_VALUE;
+            }
+            long millis = daysFromCivil(year, month, day) * 86_400_000L;
+            if (length == 10) {
+                return millis;
+            }
+            if (length < 16 || (b[from + 10] != 'T' && b[from + 10] != ' ') || b[from + 13] != ':') {
+                return Long.MIN_VALUE;
+            }
+            int hour = digits(b, from + 11, 2);
+            int minute = digits(b, from + 14, 2);
+            int second = 0;
+            int pos = from + 16;
+            if (pos < to && b[pos] == ':') {
+                second = digits(b, pos + 1, 2);
+                pos += 3;
+            }
+            if (pos < to && b[pos] == 'Z') {
+                pos++;
+            }
+            if (pos != to || hour < 0 || hour > 23 || minute < 0 || minute > 59 || second < 0 || second > 59) {
+                return Long.MIN_VALUE;
+            }
+            return millis + hour * 3_600_000L + minute * 60_000L + second * 1000L;
+        }
+        if (length > 18) {
+            return Long.MIN_VALUE;
+        }
+        long value = 0;
+        for (int i = from; i < to; i++) {
+            int digit = b[i] - '0';
+            if (digit < 0 || digit > 9) {
+                return Long.MIN_VALUE;
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+    
+    private static int digits(byte[] b, int from, int count) {
+        int value = 0;
+        for (int i = from; i < from + count; i++) {
+            int digit = b[i] - '0';
+            if (digit < 0 || digit > 9) {
+                return -1;
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+    
+    /** Number of days in a month of the proleptic Gregorian calendar. */
+    private static int daysInMonth(int year, int month) {
+        if (month == 2) {
+            boolean leap = year % 4 == 0 && (year % 100 != 0 || year % 400 == 0);
+            return leap ? 29 : 28;
+        }
+        return month == 4 || month == 6 || month == 9 || month == 11 ? 30 : 31;
+    }
+    
+    /** Days since 1970-01-01 for a proleptic Gregorian date. */
+    private static long daysFromCivil(int year, int month, int day) {
+        year -= month <= 2 ? 1 : 0;
+        long era = Math.floorDiv(year, 400);
+        long yearOfEra = year - era * 400;
+        long dayOfYear = (153L * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146_097 + dayOfEra - 719_468;
+    }
+    
+    /**
+     * Parses a decimal number. Plain {@code [-]digits[.digits]} values with up
+     * to 15 significant digits are converted exactly without allocating;
+     * anything else goes through {@link Double#parseDouble}. Returns NaN if the
+     * field is not a number.
+     */
+    static double parseDouble(byte[] b, int from, int to) {
+        if (from == to) {
+            return Double.NaN;
+        }
+        int i = from;
+        boolean negative = b[i] == '-';
+        if (negative || b[i] == '+') {
+            i++;
+        }
+        long mantissa = 0;
+        int digitCount = 0;
+        int fractionDigits = 0;
+        boolean seenDot = false;
+        boolean seenDigit = false;
+        boolean simple = i < to;
+        for (; i < to; i++) {
+            byte c = b[i];
+            if (c >= '0' && c <= '9') {
+                seenDigit = true;
+                if (digitCount < 18) {
+                    mantissa = mantissa * 10 + (c - '0');
+                    if (mantissa != 0) {
+                        digitCount++;
+                    }
+                } else {
+                    simple = false;
+                }
+                if (seenDot) {
+                    fractionDigits++;
+                }
+            } else if (c == '.' && !seenDot) {
+                seenDot = true;
+            } else {
+                simple = false;
+                break;
+            }
+        }
+        if (simple && !seenDigit) {
+            return Double.NaN;
+        }
+        if (simple && digitCount <= 15 && fractionDigits < POWERS_OF_TEN.length) {
+            double value = mantissa / POWERS_OF_TEN[fractionDigits];
+            return negative ? -value : value;
+        }
+        try {
+            return Double.parseDouble(new String(b, from, to - from, StandardCharsets.US_ASCII));
+        } catch (NumberFormatException e) {
+            return Double.NaN;
+        }
+    }
+}
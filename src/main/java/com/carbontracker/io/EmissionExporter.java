@@ -0,0 +1,418 @@
+package com.carbontracker.io;
+
+import com.carbontracker.model.EmissionCalculator;
+import com.carbontracker.model.EmissionLedger;
+import com.carbontracker.model.EmissionRollup;
+import com.carbontracker.model.EmissionSource;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+
+/**
+ * Streams the recorded history and rollups of an {@link EmissionCalculator}
+ * to CSV, JSON Lines or a compact columnar binary file.
+ * <p>
+ * Rows are formatted directly into one reusable buffer that is written to a
+ * file channel whenever it fills, so memory use does not depend on the size
+ * of the history and no objects are created per row. Entries are written
+ * with epoch-millisecond timestamps and source keys, so a CSV export can be
+ * imported again with {@link CsvActivityImporter}.
+ * <p>
+ * The columnar format groups rows into blocks of up to {@value #BLOCK_ROWS}
+ * rows stored column by column: timestamps as zig-zag varint deltas, sources
+ * as one byte each, counts as varints and doubles as raw 8-byte values. A
+ * header names the columns; {@link #readEntries} reads an entry export back.
+ * <p>
+ * The calculator's ledger is locked while an export runs, so a
+ * {@link com.carbontracker.model.ConcurrentEmissionCalculator} keeps
+ * recording consistently but its writers wait for the export to finish.
+ */
+public class EmissionExporter {
+    
+    /** Output file formats. */
+    public enum Format {
+        CSV,
+        JSON_LINES,
+        COLUMNAR;
+        
+        /**
+         * Format implied by a file name: {@code .csv}, {@code .jsonl} or
+         * {@code .ndjson}, and columnar for anything else.
+         */
+        public static Format forPath(Path path) {
+            String name = path.getFileName().toString().toLowerCase(Locale.ROOT);
+            if (name.endsWith(".csv")) {
+                return CSV;
+            } else if (name.endsWith(".jsonl") || name.endsWith(".ndjson")) {
+                return JSON_LINES;
+            }
+            return COLUMNAR;
+        }
+    }
+    
+    static final int BLOCK_ROWS = 1 << 16;
+    
+    private static final int MAGIC = 0x43544346; // "CTCF"
+    private static final int VERSION = 1;
+    private static final byte KIND_ENTRIES = 0;
+    private static final byte KIND_ROLLUP = 1;
+    private static final byte TYPE_TIME = 'T';
+    private static final byte TYPE_SOURCE = 'S';
+    private static final byte TYPE_VARINT = 'V';
+    private static final byte TYPE_DOUBLE = 'D';
+    
+    private final EmissionCalculator calculator;
+    
+    public EmissionExporter(EmissionCalculator calculator) {
+        this.calculator = calculator;
+    }
+    
+    /**
+     * Writes every ledger entry.
+     *
+     * @return the number of rows written
+     */
+    public long exportEntries(Path file, Format format) throws IOException {
+        return exportEntries(file, format, Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+    
+    /**
+     * Writes the ledger entries with {@code from <= timestamp < to}, in the
+     * order they were recorded, as {@code timestamp, source, quantity,
+     * factor, kgCO2} rows.
+     *
+     * @return the number of rows written
+     */
+    public long exportEntries(Path file, Format format, long from, long to) throws IOException {
+        EmissionLedger ledger = calculator.getLedger();
+        try (ChannelOutput out = new ChannelOutput(file)) {
+            synchronized (ledger) {
+                switch (format) {
+                    case CSV:
+                        out.putAscii("timestamp,source,quantity,factor,kgCO2\n");
+                        return forEachEntry(ledger, from, to, (timestamp, source, quantity, factor, kgCO2) -> {
+                            out.putDecimal(timestamp);
+                            out.putByte(',');
+                            out.putAscii(source.getKey());
+                            out.putByte(',');
+                            out.putDecimal(quantity);
+                            out.putByte(',');
+                            out.putDecimal(factor);
+                            out.putByte(',');
+                            out.putDecimal(kgCO2);
+                            out.putByte('\n');
+                        });
+                    case JSON_LINES:
+                        return forEachEntry(ledger, from, to, (timestamp, source, quantity, factor, kgCO2) -> {
+                            out.putAscii("{\"timestamp\":");
+                            out.putDecimal(timestamp);
+                            out.putAscii(",\"source\":\"");
+                            out.putAscii(source.getKey());
+                            out.putAscii("\",\"quantity\":");
+                            out.putDecimal(quantity);
+                            out.putAscii(",\"factor\":");
+                            out.putDecimal(factor);
+                            out.putAscii(",\"kgCO2\":");
+                            out.putDecimal(kgCO2);
+                            out.putAscii("}\n");
+                        });
+                    default:
+                        ColumnarWriter writer = new ColumnarWriter(out, KIND_ENTRIES,
+                            new String[] {"timestamp", "source", "quantity", "factor", "kgCO2"},
+                            new byte[] {TYPE_TIME, TYPE_SOURCE, TYPE_DOUBLE, TYPE_DOUBLE, TYPE_DOUBLE});
+                        forEachEntry(ledger, from, to, writer::entry);
+                        return writer.finish();
+                }
+            }
+        }
+    }
+    
+    /**
+     * Writes the rollup buckets of one granularity that start in
+     * {@code [from, to)} as {@code bucketStart, source, count, kgCO2} rows,
+     * one per source with activity in the bucket, in time order.
+     *
+     * @return the number of rows written
+     */
+    public long exportRollup(Path file, Format format, EmissionRollup.Granularity granularity, long from, long to)
+            throws IOException {
+        EmissionRollup rollup = calculator.getRollup();
+        try (ChannelOutput out = new ChannelOutput(file)) {
+            synchronized (calculator.getLedger()) {
+                switch (format) {
+                    case CSV:
+                        out.putAscii("bucketStart,source,count,kgCO2\n");
+                        return forEachBucket(rollup, granularity, from, to, (bucketStart, source, count, kgCO2) -> {
+                            out.putDecimal(bucketStart);
+                            out.putByte(',');
+                            out.putAscii(source.getKey());
+                            out.putByte(',');
+                            out.putDecimal(count);
+                            out.putByte(',');
+                            out.putDecimal(kgCO2);
+                            out.putByte('\n');
+                        });
+                    case JSON_LINES:
+                        return forEachBucket(rollup, granularity, from, to, (bucketStart, source, count, kgCO2) -> {
+                            out.putAscii("{\"bucketStart\":");
+                            out.putDecimal(bucketStart);
+                            out.putAscii(",\"source\":\"");
+                            out.putAscii(source.getKey());
+                            out.putAscii("\",\"count\":");
+                            out.putDecimal(count);
+                            out.putAscii(",\"kgCO2\":");
+                            out.putDecimal(kgCO2);
+                            out.putAscii("}\n");
+                        });
+                    default:
+                        ColumnarWriter writer = new ColumnarWriter(out, KIND_ROLLUP,
+                            new String[] {"bucketStart", "source", "count", "kgCO2"},
+                            new byte[] {TYPE_TIME, TYPE_SOURCE, TYPE_VARINT, TYPE_DOUBLE});
+                        forEachBucket(rollup, granularity, from, to, writer::bucket);
+                        return writer.finish();
+                }
+            }
+        }
+    }
+    
+    /**
+     * Reads a columnar entry export and passes every row to {@code visitor}
+     * in file order.
+     *
+     * @return the number of rows read
+     * @throws IOException if the file is not a complete columnar entry export
+     */
+    public static long readEntries(Path file, EmissionLedger.EntryVisitor visitor) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException(file + " is not a columnar emission export");
+            }
+            if (in.readByte() != KIND_ENTRIES) {
+                throw new IOException(file + " does not contain ledger entries");
+            }
+            int columns = in.readUnsignedByte();
+            for (int c = 0; c < columns; c++) {
+                in.readUTF();
+                in.readByte();
+            }
+            
+            long[] timestamps = new long[BLOCK_ROWS];
+            byte[] sources = new byte[BLOCK_ROWS];
+            double[] quantities = new double[BLOCK_ROWS];
+            double[] factors = new double[BLOCK_ROWS];
+            double[] emissions = new double[BLOCK_ROWS];
+            long total = 0;
+            int rows;
+            while ((rows = in.readInt()) > 0) {
+                if (rows > BLOCK_ROWS) {
+                    throw new IOException(file + " has a corrupt block header");
+                }
+                long timestamp = 0;
+                for (int i = 0; i < rows; i++) {
+                    timestamp += zigZagDecode(readVarLong(in));
+                    timestamps[i] = timestamp;
+                }
+                in.readFully(sources, 0, rows);
+                readDoubles(in, quantities, rows);
+                readDoubles(in, factors, rows);
+                readDoubles(in, emissions, rows);
+                for (int i = 0; i < rows; i++) {
+                    visitor.visit(timestamps[i], EmissionSource.byOrdinal(sources[i]),
+                        quantities[i], factors[i], emissions[i]);
+                }
+                total += rows;
+            }
+            if (in.readLong() != total) {
+                throw new IOException(file + " has an inconsistent row count");
+            }
+            return total;
+        } catch (EOFException e) {
+            throw new IOException(file + " is truncated", e);
+        }
+    }
+    
+    private static void readDoubles(DataInputStream in, double[] values, int rows) throws IOException {
+        for (int i = 0; i < rows; i++) {
+            values[i] = in.readDouble();
+        }
+    }
+    
+    private static long readVarLong(DataInputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+    
+    private static long zigZagEncode(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+    
+    private static long zigZagDecode(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+    
+    @FunctionalInterface
+    private interface EntryWriter {
+        void write(long timestamp, EmissionSource source, double quantity, double factor, double kgCO2)
+            throws IOException;
+    }
+    
+    @FunctionalInterface
+    private interface BucketWriter {
+        void write(long bucketStart, EmissionSource source, long count, double kgCO2) throws IOException;
+    }
+    
+    private static long forEachEntry(EmissionLedger ledger, long from, long to, EntryWriter writer)
+            throws IOException {
+        long[] rows = new long[1];
+        try {
+            ledger.forEach(from, to, (timestamp, source, quantity, factor, kgCO2) -> {
+                try {
+                    writer.write(timestamp, source, quantity, factor, kgCO2);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                rows[0]++;
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return rows[0];
+    }
+    
+    private static long forEachBucket(EmissionRollup rollup, EmissionRollup.Granularity granularity,
+                                      long from, long to, BucketWriter writer) throws IOException {
+        long[] rows = new long[1];
+        try {
+            rollup.forEachBucket(granularity, (bucketStart, totals, counts) -> {
+                if (bucketStart < from || bucketStart >= to) {
+                    return;
+                }
+                for (int i = 0; i < EmissionSource.COUNT; i++) {
+                    if (counts[i] == 0) {
+                        continue;
+                    }
+                    try {
+                        writer.write(bucketStart, EmissionSource.byOrdinal(i), counts[i], totals[i]);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    rows[0]++;
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return rows[0];
+    }
+    
+    /**
+     * Collects rows into one block of column arrays and writes each full
+     * block column by column. The first column is the time column and the
+     * second the source column; the rest are varint or double columns.
+     */
+    private static final class ColumnarWriter {
+        
+        private final ChannelOutput out;
+        private final long[] times = new long[BLOCK_ROWS];
+        private final byte[] sources = new byte[BLOCK_ROWS];
+        private final long[][] varints;
+        private final double[][] doubles;
+        private int rows;
+        private long total;
+        
+        ColumnarWriter(ChannelOutput out, byte kind, String[] names, byte[] types) throws IOException {
+            this.out = out;
+            int varintColumns = 0;
+            int doubleColumns = 0;
+            out.putInt(MAGIC);
+            out.putInt(VERSION);
+            out.putByte(kind);
+            out.putByte(names.length);
+            for (int c = 0; c < names.length; c++) {
+                // Same encoding as DataOutput.writeUTF for ASCII names
+                out.putByte(names[c].length() >>> 8);
+                out.putByte(names[c].length());
+                out.putAscii(names[c]);
+                out.putByte(types[c]);
+                if (types[c] == TYPE_VARINT) {
+                    varintColumns++;
+                } else if (types[c] == TYPE_DOUBLE) {
+                    doubleColumns++;
+                }
+            }
+            varints = new long[varintColumns][BLOCK_ROWS];
+            doubles = new double[doubleColumns][BLOCK_ROWS];
+        }
+        
+        void entry(long timestamp, EmissionSource source, double quantity, double factor, double kgCO2)
+                throws IOException {
+            times[rows] = timestamp;
+            sources[rows] = (byte) source.ordinal();
+            doubles[0][rows] = quantity;
+            doubles[1][rows] = factor;
+            doubles[2][rows] = kgCO2;
+            endRow();
+        }
+        
+        void bucket(long bucketStart, EmissionSource source, long count, double kgCO2) throws IOException {
+            times[rows] = bucketStart;
+            sources[rows] = (byte) source.ordinal();
+            varints[0][rows] = count;
+            doubles[0][rows] = kgCO2;
+            endRow();
+        }
+        
+        private void endRow() throws IOException {
+            if (++rows == BLOCK_ROWS) {
+                writeBlock();
+            }
+        }
+        
+        private void writeBlock() throws IOException {
+            out.putInt(rows);
+            long previous = 0;
+            for (int i = 0; i < rows; i++) {
+                out.putVarLong(zigZagEncode(times[i] - previous));
+                previous = times[i];
+            }
+            for (int i = 0; i < rows; i++) {
+                out.putByte(sources[i]);
+            }
+            for (long[] column : varints) {
+                for (int i = 0; i < rows; i++) {
+                    out.putVarLong(column[i]);
+                }
+            }
+            for (double[] column : doubles) {
+                for (int i = 0; i < rows; i++) {
+                    out.putDouble(column[i]);
+                }
+            }
+            total += rows;
+            rows = 0;
+        }
+        
+        /** Writes the last partial block and the trailer; returns the row count. */
+        long finish() throws IOException {
+            if (rows > 0) {
+                writeBlock();
+            }
+            out.putInt(0);
+            out.putLong(total);
+            return total;
+        }
+    }
+}
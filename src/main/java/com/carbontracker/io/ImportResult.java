@@ -0,0 +1,61 @@
+package com.carbontracker.io;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Summary of a bulk import run
+ */
+public class ImportResult {
+    
+    private final long acceptedRecords;
+    private final long rejectedRecords;
+    private final long bytesRead;
+    private final long elapsedNanos;
+    private final List<String> errors;
+    
+    ImportResult(long acceptedRecords, long rejectedRecords, long bytesRead,
+                 long elapsedNanos, List<String> errors) {
+        this.acceptedRecords = acceptedRecords;
+        this.rejectedRecords = rejectedRecords;
+        this.bytesRead = bytesRead;
+        this.elapsedNanos = elapsedNanos;
+        this.errors = Collections.unmodifiableList(errors);
+    }
+    
+    public long getAcceptedRecords() {
+        return acceptedRecords;
+    }
+    
+    public long getRejectedRecords() {
+        return rejectedRecords;
+    }
+    
+    public long getBytesRead() {
+        return bytesRead;
+    }
+    
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+    
+    /** Throughput in megabytes per second. */
+    public double getMegabytesPerSecond() {
+        if (elapsedNanos == 0) {
+            return 0;
+        }
+        return (bytesRead / 1_000_000.0) / (elapsedNanos / 1_000_000_000.0);
+    }
+    
+    /** The first few rejected lines with the reason they were rejected. */
+    public List<String> getErrors() {
+        return errors;
+    }
+    
+    @Override
+    public String toString() {
+        return String.format("%d records imported, %d rejected, %.1f MB in %.2f s (%.1f MB/s)",
+            acceptedRecords, rejectedRecords, bytesRead / 1_000_000.0,
+            elapsedNanos / 1_000_000_000.0, getMegabytesPerSecond());
+    }
+}
@@ -0,0 +1,279 @@
+package com.carbontracker.io;
+
+import com.carbontracker.model.EmissionCalculator;
+import com.carbontracker.model.EmissionSource;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Parses activity records sent as JSON and adds them to an
+ * {@link EmissionCalculator}.
+ * <p>
+ * A body is a single object, a JSON array of objects, or objects separated by
+ * whitespace such as newline-delimited JSON. Each object has a
+ * {@code "source"} key such as {@code "car"}, a numeric {@code "quantity"} in
+ * the source's unit and an optional {@code "timestamp"}, either epoch millis
+ * or an ISO date or date-time string as accepted by
+ * {@link CsvActivityImporter}; without one the time of the request is used.
+ * Other members are ignored.
+ * <p>
+ * Records are parsed straight from the bytes, like the CSV importer. Invalid
+ * records are rejected individually; a syntax error rejects the rest of the
+ * body.
+ */
+public class JsonActivityImporter {
+    
+    private static final int MAX_REPORTED_ERRORS = 20;
+    private static final int MAX_DEPTH = 32;
+    
+    private final EmissionCalculator calculator;
+    
+    public JsonActivityImporter(EmissionCalculator calculator) {
+        this.calculator = calculator;
+    }
+    
+    /**
+     * Imports the records in {@code body[0, length)}. Safe to call from
+     * several threads if the calculator is.
+     */
+    public ImportResult importBytes(byte[] body, int length) {
+        long started = System.nanoTime();
+        Parser parser = new Parser(body, length, System.currentTimeMillis());
+        parser.parseBody();
+        return new ImportResult(parser.accepted, parser.rejected, length, System.nanoTime() - started, parser.errors);
+    }
+    
+    /** Signals malformed JSON; carries no stack trace. */
+    private static final class SyntaxError extends Exception {
+        private static final long serialVersionUID = 1L;
+        
+        SyntaxError(String message) {
+            super(message, null, false, false);
+        }
+    }
+    
+    private final class Parser {
+        private final byte[] b;
+        private final int end;
+        private final long defaultTimestamp;
+        private final List<String> errors = new ArrayList<>();
+        private int pos;
+        private long accepted;
+        private long rejected;
+        private int record;
+        
+        Parser(byte[] b, int end, long defaultTimestamp) {
+            this.b = b;
+            this.end = end;
+            this.defaultTimestamp = defaultTimestamp;
+        }
+        
+        void parseBody() {
+            try {
+                skipWhitespace();
+                if (pos < end && b[pos] == '[') {
+                    pos++;
+                    skipWhitespace();
+                    if (peek() == ']') {
+                        pos++;
+                    } else {
+                        while (true) {
+                            parseRecord();
+                            skipWhitespace();
+                            byte c = next();
+                            if (c == ']') {
+                                break;
+                            } else if (c != ',') {
+                                throw new SyntaxError("expected ',' or ']'");
+                            }
+                            skipWhitespace();
+                        }
+                    }
+                    skipWhitespace();
+                    if (pos < end) {
+                        throw new SyntaxError("unexpected data after array");
+                    }
+                } else {
+                    while (pos < end) {
+                        parseRecord();
+                        skipWhitespace();
+                    }
+                }
+            } catch (SyntaxError e) {
+                rejected++;
+                report("byte " + pos + ": " + e.getMessage());
+            }
+        }
+        
+        private void parseRecord() throws SyntaxError {
+            record++;
+            if (next() != '{') {
+                throw new SyntaxError("expected '{'");
+            }
+            EmissionSource source = null;
+            double quantity = Double.NaN;
+            long timestamp = defaultTimestamp;
+            boolean validTimestamp = true;
+            boolean sawSource = false;
+            
+            skipWhitespace();
+            if (peek() == '}') {
+                pos++;
+            } else {
+                while (true) {
+                    skipWhitespace();
+                    int keyStart = pos + 1;
+                    skipString();
+                    int keyEnd = pos - 1;
+                    skipWhitespace();
+                    if (next() != ':') {
+                        throw new SyntaxError("expected ':'");
+                    }
+                    skipWhitespace();
+                    
+                    int valueStart = pos;
+                    boolean string = peek() == '"';
+                    skipValue(0);
+                    int from = string ? valueStart + 1 : valueStart;
+                    int to = string ? pos - 1 : pos;
+                    if (keyIs(keyStart, keyEnd, "source")) {
+                        sawSource = true;
+                        source = string ? CsvActivityImporter.parseSource(b, from, to) : null;
+                    } else if (keyIs(keyStart, keyEnd, "quantity")) {
+                        quantity = string ? Double.NaN : CsvActivityImporter.parseDouble(b, from, to);
+                    } else if (keyIs(keyStart, keyEnd, "timestamp")) {
+                        timestamp = CsvActivityImporter.parseTimestamp(b, from, to);
+                        validTimestamp = timestamp != Long.MIN_VALUE;
+                    }
+                    
+                    skipWhitespace();
+                    byte c = next();
+                    if (c == '}') {
+                        break;
+                    } else if (c != ',') {
+                        throw new SyntaxError("expected ',' or '}'");
+                    }
+                }
+            }
+            
+            if (source == null) {
+                reject(sawSource ? "unknown source" : "missing source");
+            } else if (!(quantity >= 0) || Double.isInfinite(quantity)) {
+                reject("quantity must be a non-negative number");
+            } else if (!validTimestamp) {
+                reject("invalid timestamp");
+            } else {
+                calculator.addEmission(source, quantity, timestamp);
+                accepted++;
+            }
+        }
+        
+        private boolean keyIs(int from, int to, String key) {
+            if (to - from != key.length()) {
+                return false;
+            }
+            for (int i = 0; i < key.length(); i++) {
+                if (b[from + i] != key.charAt(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        
+        private void skipValue(int depth) throws SyntaxError {
+            if (depth > MAX_DEPTH) {
+                throw new SyntaxError("nested too deeply");
+            }
+            byte c = peek();
+            if (c == '"') {
+                skipString();
+            } else if (c == '{' || c == '[') {
+                byte close = c == '{' ? (byte) '}' : (byte) ']';
+                pos++;
+                skipWhitespace();
+                if (peek() == close) {
+                    pos++;
+                    return;
+                }
+                while (true) {
+                    skipWhitespace();
+                    if (c == '{') {
+                        skipString();
+                        skipWhitespace();
+                        if (next() != ':') {
+                            throw new SyntaxError("expected ':'");
+                        }
+                        skipWhitespace();
+                    }
+                    skipValue(depth + 1);
+                    skipWhitespace();
+                    byte separator = next();
+                    if (separator == close) {
+                        return;
+                    } else if (separator != ',') {
+                        throw new SyntaxError("expected ',' or '" + (char) close + "'");
+                    }
+                }
+            } else {
+                // Number or literal: the validity of numbers is checked where they are used
+                int start = pos;
+                while (pos < end && isScalarByte(b[pos])) {
+                    pos++;
+                }
+                if (pos == start) {
+                    throw new SyntaxError("expected a value");
+                }
+            }
+        }
+        
+        private void skipString() throws SyntaxError {
+            if (next() != '"') {
+                throw new SyntaxError("expected a string");
+            }
+            while (pos < end) {
+                byte c = b[pos++];
+                if (c == '"') {
+                    return;
+                } else if (c == '\\') {
+                    pos++;
+                }
+            }
+            throw new SyntaxError("unterminated string");
+        }
+        
+        private boolean isScalarByte(byte c) {
+            return (c >= '0' && c <= '9') || (c >= 'a' && c <= 'z') || c == '-' || c == '+' || c == '.' || c == 'E';
+        }
+        
+        private void skipWhitespace() {
+            while (pos < end && (b[pos] == ' ' || b[pos] == '\n' || b[pos] == '\r' || b[pos] == '\t')) {
+                pos++;
+            }
+        }
+        
+        private byte peek() throws SyntaxError {
+            if (pos >= end) {
+                throw new SyntaxError("unexpected end of input");
+            }
+            return b[pos];
+        }
+        
+        private byte next() throws SyntaxError {
+            byte c = peek();
+            pos++;
+            return c;
+        }
+        
+        private void reject(String reason) {
+            rejected++;
+            report("record " + record + ": " + reason);
+        }
+        
+        private void report(String error) {
+            if (errors.size() < MAX_REPORTED_ERRORS) {
+                errors.add(error);
+            }
+        }
+    }
+}
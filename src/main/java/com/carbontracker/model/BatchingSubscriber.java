@@ -0,0 +1,98 @@
+package com.carbontracker.model;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Flow;
+import java.util.function.Consumer;
+
+/**
+ * Subscriber that collects events until its owner drains them, on whatever
+ * schedule suits it (a UI pulse, a timer, a full batch).
+ * <p>
+ * It never holds more than {@code capacity} events: that many are requested
+ * up front, and each {@link #drain} requests exactly as many as it removed.
+ * A consumer that stops draining therefore stops asking for events, and the
+ * publisher's overflow policy takes over instead of this queue growing.
+ */
+public class BatchingSubscriber<T> implements Flow.Subscriber<T> {
+    
+    private final int capacity;
+    private final ConcurrentLinkedQueue<T> pending = new ConcurrentLinkedQueue<>();
+    private volatile Flow.Subscription subscription;
+    private volatile boolean completed;
+    private volatile Throwable error;
+    
+    public BatchingSubscriber(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        this.capacity = capacity;
+    }
+    
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        if (this.subscription != null) {
+            subscription.cancel();
+            return;
+        }
+        this.subscription = subscription;
+        subscription.request(capacity);
+    }
+    
+    @Override
+    public void onNext(T item) {
+        pending.add(item);
+    }
+    
+    @Override
+    public void onError(Throwable throwable) {
+        error = throwable;
+    }
+    
+    @Override
+    public void onComplete() {
+        completed = true;
+    }
+    
+    /**
+     * Passes every collected event to {@code consumer}, oldest first, and
+     * requests as many new ones.
+     *
+     * @return the number of events drained
+     */
+    public int drain(Consumer<? super T> consumer) {
+        int drained = 0;
+        T item;
+        while (drained < capacity && (item = pending.poll()) != null) {
+            consumer.accept(item);
+            drained++;
+        }
+        Flow.Subscription current = subscription;
+        if (drained > 0 && current != null) {
+            current.request(drained);
+        }
+        return drained;
+    }
+    
+    /** Whether undrained events are waiting. */
+    public boolean hasPending() {
+        return !pending.isEmpty();
+    }
+    
+    /** Whether the publisher completed or failed the subscription. */
+    public boolean isDone() {
+        return completed || error != null;
+    }
+    
+    /** Failure reported by the publisher, or null. */
+    public Throwable getError() {
+        return error;
+    }
+    
+    /** Stops receiving events; those already collected can still be drained. */
+    public void cancel() {
+        Flow.Subscription current = subscription;
+        if (current != null) {
+            current.cancel();
+        }
+    }
+}
@@ -0,0 +1,388 @@
+package com.carbontracker.model;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Evaluates {@link EmissionBudget}s incrementally as activities are recorded
+ * and raises an {@link Alert} the first time each budget is exceeded in a
+ * window.
+ * <p>
+ * Budgets that share a scope (source, category or total) and window share
+ * one running sum for the current window, and their limits are kept sorted
+ * with a pointer to the lowest limit not yet exceeded. Recording an activity
+ * therefore touches at most three scopes times four windows, each an add and
+ * a comparison with the next limit; every limit is passed at most once per
+ * window, so the cost is O(1) amortized regardless of how many budgets
+ * exist. A window starts over, and its budgets re-arm, when an activity falls
+ * into a later hour, day or month. Activities older than the current window
+ * count towards all-time budgets only.
+ * <p>
+ * Windows are seeded from the calculator's totals and latest rollup buckets
+ * when the first budget for them is added, so budgets already exceeded by
+ * earlier history raise their alert at that point. Methods are synchronized; listeners run on
+ * the recording thread while the engine is locked and should hand work off.
+ */
+public class BudgetAlertEngine implements EmissionSink {
+    
+    /** Receives alerts as budgets are exceeded. */
+    @FunctionalInterface
+    public interface AlertListener {
+        void onAlert(Alert alert);
+    }
+    
+    /** A budget exceeded in one window. */
+    public static final class Alert {
+        private final EmissionBudget budget;
+        private final long windowStart;
+        private final double usedKg;
+        private final long timestamp;
+        
+        Alert(EmissionBudget budget, long windowStart, double usedKg, long timestamp) {
+            this.budget = budget;
+            this.windowStart = windowStart;
+            this.usedKg = usedKg;
+            this.timestamp = timestamp;
+        }
+        
+        public EmissionBudget getBudget() {
+            return budget;
+        }
+        
+        /** Start of the exceeded window, or {@code Long.MIN_VALUE} for all-time budgets. */
+        public long getWindowStart() {
+            return windowStart;
+        }
+        
+        /** kg CO2 in the window once the limit was passed. */
+        public double getUsedKg() {
+            return usedKg;
+        }
+        
+        /** Time of the activity that passed the limit, or when the budget was added. */
+        public long getTimestamp() {
+            return timestamp;
+        }
+        
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "%s budget of %.2f kg exceeded: %.2f kg",
+                budget.getDescription(), budget.getLimitKg(), usedKg);
+        }
+    }
+    
+    /** How much of a budget's current window is used. */
+    public static final class Usage {
+        private final EmissionBudget budget;
+        private final double usedKg;
+        
+        Usage(EmissionBudget budget, double usedKg) {
+            this.budget = budget;
+            this.usedKg = usedKg;
+        }
+        
+        public EmissionBudget getBudget() {
+            return budget;
+        }
+        
+        public double getUsedKg() {
+            return usedKg;
+        }
+        
+        /** Used share of the limit; above 1 once exceeded. */
+        public double getFraction() {
+            return fraction(usedKg, budget.getLimitKg());
+        }
+        
+        public boolean isExceeded() {
+            return usedKg > budget.getLimitKg();
+        }
+    }
+    
+    private static final EmissionRollup.Granularity[] GRANULARITIES = EmissionRollup.Granularity.values();
+    private static final int WINDOWS = GRANULARITIES.length + 1;
+    private static final int ALL_TIME = GRANULARITIES.length;
+    private static final int TOTAL_SCOPE = EmissionSource.COUNT + EmissionCategory.COUNT;
+    private static final int SCOPES = TOTAL_SCOPE + 1;
+    private static final int MAX_RECENT_ALERTS = 50;
+    
+    private final EmissionCalculator calculator;
+    private final Window[] windows = new Window[SCOPES * WINDOWS];
+    private final Map<String, EmissionBudget> budgets = new HashMap<>();
+    private final Deque<Alert> recentAlerts = new ArrayDeque<>();
+    private final List<AlertListener> listeners = new ArrayList<>();
+    
+    private BudgetAlertEngine(EmissionCalculator calculator) {
+        this.calculator = calculator;
+    }
+    
+    /** Creates an engine that follows every activity added to {@code calculator}. */
+    public static BudgetAlertEngine attach(EmissionCalculator calculator) {
+        BudgetAlertEngine engine = new BudgetAlertEngine(calculator);
+        calculator.addSink(engine);
+        return engine;
+    }
+    
+    public synchronized void addListener(AlertListener listener) {
+        listeners.add(listener);
+    }
+    
+    /**
+     * Adds a budget, replacing any with the same id. Raises its alert right
+     * away if the current window is already over the limit.
+     */
+    public synchronized void addBudget(EmissionBudget budget) {
+        removeBudget(budget.getId());
+        budgets.put(budget.getId(), budget);
+        int slot = slot(scopeOf(budget), windowOf(budget.getWindow()));
+        Window window = windows[slot];
+        if (window == null) {
+            window = new Window(budget.getWindow());
+            seed(window, budget);
+            windows[slot] = window;
+        }
+        window.insert(budget);
+    }
+    
+    public synchronized void addBudgets(Collection<EmissionBudget> added) {
+        for (EmissionBudget budget : added) {
+            addBudget(budget);
+        }
+    }
+    
+    /** Removes a budget; returns false if there was none with that id. */
+    public synchronized boolean removeBudget(String id) {
+        EmissionBudget removed = budgets.remove(id);
+        if (removed == null) {
+            return false;
+        }
+        windows[slot(scopeOf(removed), windowOf(removed.getWindow()))].remove(removed);
+        return true;
+    }
+    
+    public synchronized int getBudgetCount() {
+        return budgets.size();
+    }
+    
+    @Override
+    public synchronized void record(long timestamp, EmissionSource source, double quantity, double factor,
+                                    double kgCO2) {
+        add(source.ordinal(), timestamp, kgCO2);
+        add(EmissionSource.COUNT + source.getCategory().ordinal(), timestamp, kgCO2);
+        add(TOTAL_SCOPE, timestamp, kgCO2);
+    }
+    
+    private void add(int scope, long timestamp, double kgCO2) {
+        int base = scope * WINDOWS;
+        for (int w = 0; w < WINDOWS; w++) {
+            Window window = windows[base + w];
+            if (window != null) {
+                window.add(timestamp, kgCO2);
+            }
+        }
+    }
+    
+    @Override
+    public synchronized void reset() {
+        for (Window window : windows) {
+            if (window != null) {
+                window.clear();
+            }
+        }
+    }
+    
+    /**
+     * Usage of the {@code limit} budgets closest to or furthest over their
+     * limits in the windows containing {@code now}, highest share first.
+     * <p>
+     * All budgets of a window share its used amount and are sorted by limit,
+     * so they are already in order of falling share. Only the heads of the
+     * windows are compared, which costs O(limit * windows) however many
+     * budgets exist.
+     */
+    public synchronized List<Usage> mostUsed(int limit, long now) {
+        int[] next = new int[windows.length];
+        List<Usage> usages = new ArrayList<>(Math.max(0, Math.min(limit, budgets.size())));
+        while (usages.size() < limit) {
+            int best = -1;
+            double bestFraction = 0;
+            for (int slot = 0; slot < windows.length; slot++) {
+                Window window = windows[slot];
+                if (window != null && next[slot] < window.limits.length) {
+                    double fraction = fraction(window.usedAt(now), window.limits[next[slot]]);
+                    if (best < 0 || fraction > bestFraction) {
+                        best = slot;
+                        bestFraction = fraction;
+                    }
+                }
+            }
+            if (best < 0) {
+                break;
+            }
+            Window window = windows[best];
+            usages.add(new Usage(window.sorted[next[best]++], window.usedAt(now)));
+        }
+        return usages;
+    }
+    
+    /** The most recent alerts, newest first. */
+    public synchronized List<Alert> getRecentAlerts() {
+        return new ArrayList<>(recentAlerts);
+    }
+    
+    private void fire(EmissionBudget budget, long windowStart, double usedKg, long timestamp) {
+        Alert alert = new Alert(budget, windowStart, usedKg, timestamp);
+        recentAlerts.addFirst(alert);
+        if (recentAlerts.size() > MAX_RECENT_ALERTS) {
+            recentAlerts.removeLast();
+        }
+        for (AlertListener listener : listeners) {
+            listener.onAlert(alert);
+        }
+    }
+    
+    /**
+     * Fills a new window with what the calculator already holds: all of it
+     * for all-time windows, otherwise its latest hour, day or month.
+     */
+    private void seed(Window window, EmissionBudget budget) {
+        EmissionRollup.Granularity granularity = budget.getWindow();
+        if (granularity == null) {
+            EmissionSnapshot snapshot = calculator.snapshot();
+            window.sum = budget.getSource() != null ? snapshot.getSourceTotal(budget.getSource())
+                : budget.getCategory() != null ? snapshot.getCategoryTotal(budget.getCategory())
+                : snapshot.getTotal();
+            return;
+        }
+        if (calculator.getRollup().isEmpty()) {
+            return;
+        }
+        window.start = calculator.getRollup().lastBucketStart(granularity);
+        window.end = granularity.nextBucket(window.start);
+        for (EmissionSource source : EmissionSource.values()) {
+            if (budget.covers(source)) {
+                EmissionTrend trend = calculator.getTrend(granularity, source, window.start, window.end);
+                if (trend.size() > 0) {
+                    window.sum += trend.getTotal(0);
+                }
+            }
+        }
+    }
+    
+    private static double fraction(double usedKg, double limitKg) {
+        return limitKg > 0 ? usedKg / limitKg : usedKg > 0 ? Double.POSITIVE_INFINITY : 0;
+    }
+    
+    private static int scopeOf(EmissionBudget budget) {
+        return budget.getSource() != null ? budget.getSource().ordinal()
+            : budget.getCategory() != null ? EmissionSource.COUNT + budget.getCategory().ordinal()
+            : TOTAL_SCOPE;
+    }
+    
+    private static int windowOf(EmissionRollup.Granularity granularity) {
+        return granularity == null ? ALL_TIME : granularity.ordinal();
+    }
+    
+    private static int slot(int scope, int window) {
+        return scope * WINDOWS + window;
+    }
+    
+    /**
+     * Running sum of one scope in its current window and the budgets on it,
+     * sorted by limit; those below {@code crossed} are exceeded.
+     */
+    private final class Window {
+        private final EmissionRollup.Granularity granularity;
+        private long start = Long.MIN_VALUE;
+        private long end = Long.MIN_VALUE;
+        private double sum;
+        private EmissionBudget[] sorted = new EmissionBudget[0];
+        private double[] limits = new double[0];
+        private int crossed;
+        
+        Window(EmissionRollup.Granularity granularity) {
+            this.granularity = granularity;
+            if (granularity == null) {
+                end = Long.MAX_VALUE;
+            }
+        }
+        
+        void add(long timestamp, double kgCO2) {
+            if (timestamp >= end) {
+                start = granularity.bucketStart(timestamp);
+                end = granularity.nextBucket(start);
+                sum = 0;
+                crossed = 0;
+            } else if (timestamp < start) {
+                return;
+            }
+            sum += kgCO2;
+            while (crossed < limits.length && sum > limits[crossed]) {
+                fire(sorted[crossed], start, sum, timestamp);
+                crossed++;
+            }
+        }
+        
+        void insert(EmissionBudget budget) {
+            double limit = budget.getLimitKg();
+            int position = sorted.length;
+            while (position > 0 && limits[position - 1] > limit) {
+                position--;
+            }
+            sorted = insertAt(sorted, position, budget);
+            double[] grown = new double[limits.length + 1];
+            System.arraycopy(limits, 0, grown, 0, position);
+            grown[position] = limit;
+            System.arraycopy(limits, position, grown, position + 1, limits.length - position);
+            limits = grown;
+            if (sum > limit) {
+                // Everything below the pointer is exceeded, so the new budget lands there
+                crossed++;
+                fire(budget, start, sum, System.currentTimeMillis());
+            }
+        }
+        
+        void remove(EmissionBudget budget) {
+            int position = Arrays.asList(sorted).indexOf(budget);
+            EmissionBudget[] shrunk = new EmissionBudget[sorted.length - 1];
+            System.arraycopy(sorted, 0, shrunk, 0, position);
+            System.arraycopy(sorted, position + 1, shrunk, position, shrunk.length - position);
+            sorted = shrunk;
+            double[] shrunkLimits = new double[limits.length - 1];
+            System.arraycopy(limits, 0, shrunkLimits, 0, position);
+            System.arraycopy(limits, position + 1, shrunkLimits, position, shrunkLimits.length - position);
+            limits = shrunkLimits;
+            if (position < crossed) {
+                crossed--;
+            }
+        }
+        
+        double usedAt(long now) {
+            return now >= start && now < end ? sum : 0;
+        }
+        
+        void clear() {
+            sum = 0;
+            crossed = 0;
+            if (granularity != null) {
+                start = Long.MIN_VALUE;
+                end = Long.MIN_VALUE;
+            }
+        }
+    }
+    
+    private static EmissionBudget[] insertAt(EmissionBudget[] array, int position, EmissionBudget budget) {
+        EmissionBudget[] grown = new EmissionBudget[array.length + 1];
+        System.arraycopy(array, 0, grown, 0, position);
+        grown[position] = budget;
+        System.arraycopy(array, position, grown, position + 1, array.length - position);
+        return grown;
+    }
+}
@@ -0,0 +1,298 @@
+package com.carbontracker.model;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Thread-safe calculator for ingesting emissions from many threads.
+ * <p>
+ * Each source accumulates into its own {@link DoubleAdder}/{@link LongAdder},
+ * which stripe updates across cells under contention, so writers never take a
+ * shared lock. Writers also count the updates they start and finish on two
+ * more striped counters. {@link #snapshot()} uses them like a sequence lock:
+ * it reads the totals between reading the finished and the started count and
+ * keeps the read if the two are equal, i.e. no update overlapped it. After a
+ * few overlapped reads it briefly holds new updates back instead. Aggregate
+ * getters go through a snapshot, so a total always equals the sum of the
+ * breakdown it was computed with.
+ * <p>
+ * By default only totals are kept, so no add ever waits for another. Pass
+ * {@code retainHistory = true} to also keep the ledger and rollups for
+ * time-window, trend and scenario queries; appends to those are serialized
+ * by the ledger's lock, while the totals stay lock-free. Without history
+ * those queries throw {@link IllegalStateException}.
+ */
+public class ConcurrentEmissionCalculator extends EmissionCalculator {
+    
+    private static final int OPTIMISTIC_READS = 4;
+    
+    private final DoubleAdder[] sourceTotals = new DoubleAdder[EmissionSource.COUNT];
+    private final LongAdder[] sourceCounts = new LongAdder[EmissionSource.COUNT];
+    // Bumped by resets and recomputes, which change totals without adding activities
+    private final AtomicLong rewrites = new AtomicLong();
+    private final LongAdder updatesStarted = new LongAdder();
+    private final LongAdder updatesFinished = new LongAdder();
+    // Set while a snapshot holds updates back; guarded for snapshots by the barrier monitor
+    private volatile boolean snapshotPending;
+    private final Object barrier = new Object();
+    // Only ever switched off, under the ledger lock
+    private volatile boolean retainHistory;
+    
+    public ConcurrentEmissionCalculator() {
+        this(false);
+    }
+    
+    public ConcurrentEmissionCalculator(boolean retainHistory) {
+        this.retainHistory = retainHistory;
+        for (int i = 0; i < EmissionSource.COUNT; i++) {
+            sourceTotals[i] = new DoubleAdder();
+            sourceCounts[i] = new LongAdder();
+        }
+    }
+    
+    /**
+     * With history, looks the factor up under the ledger lock, so an add
+     * racing {@link #recomputeEmissions()} either is recalculated by it or
+     * already uses the new factor.
+     */
+    @Override
+    protected double recordActivity(long timestamp, EmissionSource source, double quantity) {
+        if (!retainHistory) {
+            return super.recordActivity(timestamp, source, quantity);
+        }
+        synchronized (getLedger()) {
+            return super.recordActivity(timestamp, source, quantity);
+        }
+    }
+    
+    @Override
+    protected void record(long timestamp, EmissionSource source, double quantity, double factor, double kgCO2) {
+        if (retainHistory) {
+            EmissionLedger ledger = getLedger();
+            synchronized (ledger) {
+                if (retainHistory) {
+                    ledger.append(timestamp, source, quantity, factor, kgCO2);
+                    getRollup().add(timestamp, source, kgCO2);
+                }
+            }
+        }
+        accumulate(source, kgCO2);
+    }
+    
+    @Override
+    protected void accumulate(EmissionSource source, double kgCO2) {
+        int ordinal = source.ordinal();
+        beginUpdate();
+        sourceTotals[ordinal].add(kgCO2);
+        sourceCounts[ordinal].increment();
+        updatesFinished.increment();
+    }
+    
+    @Override
+    public void restoreTotals(EmissionSource source, double kgCO2, long count) {
+        int ordinal = source.ordinal();
+        beginUpdate();
+        sourceTotals[ordinal].add(kgCO2);
+        sourceCounts[ordinal].add(count);
+        updatesFinished.increment();
+    }
+    
+    @Override
+    protected void adjustTotal(EmissionSource source, double deltaKg) {
+        beginUpdate();
+        sourceTotals[source.ordinal()].add(deltaKg);
+        updatesFinished.increment();
+    }
+    
+    @Override
+    protected void clearTotals() {
+        beginUpdate();
+        for (int i = 0; i < EmissionSource.COUNT; i++) {
+            sourceTotals[i].reset();
+            sourceCounts[i].reset();
+        }
+        updatesFinished.increment();
+        rewrites.incrementAndGet();
+    }
+    
+    /**
+     * Counts an update as started, first waiting for a snapshot that is
+     * holding updates back. Every update ends by counting itself finished.
+     */
+    private void beginUpdate() {
+        updatesStarted.increment();
+        while (snapshotPending) {
+            // Step back so the snapshot does not wait for this update
+            updatesFinished.increment();
+            synchronized (barrier) {
+                // The snapshot holds the monitor until it is done
+            }
+            updatesStarted.increment();
+        }
+    }
+    
+    /**
+     * Holds the ledger lock for the whole pass, so concurrent adds wait and
+     * are then counted with the factor they were recorded with.
+     *
+     * @throws IllegalStateException if no history is retained, since there
+     *         is nothing to recalculate the totals from
+     */
+    @Override
+    public void recomputeEmissions() {
+        requireHistory();
+        EmissionLedger ledger = getLedger();
+        synchronized (ledger) {
+            super.recomputeEmissions();
+        }
+        rewrites.incrementAndGet();
+    }
+    
+    public boolean isRetainingHistory() {
+        return retainHistory;
+    }
+    
+    /**
+     * Stops keeping history and frees the ledger and rollups, e.g. once
+     * imported activities have been exported and only totals are needed
+     * from then on. Totals are unaffected; history queries throw
+     * afterwards.
+     */
+    public void discardHistory() {
+        EmissionLedger ledger = getLedger();
+        synchronized (ledger) {
+            retainHistory = false;
+            ledger.clear();
+            getRollup().clear();
+        }
+    }
+    
+    private void requireHistory() {
+        if (!retainHistory) {
+            throw new IllegalStateException("This query needs history; create the calculator with retainHistory = true");
+        }
+    }
+    
+    /**
+     * Derived from the per-source counts plus a rewrite generation, so
+     * recording an activity does not touch any extra shared state.
+     */
+    @Override
+    public long getVersion() {
+        long count = 0;
+        for (LongAdder sourceCount : sourceCounts) {
+            count += sourceCount.sum();
+        }
+        return count + (rewrites.get() << 40);
+    }
+    
+    /**
+     * Totals and counts as of one point in time: every update is either fully
+     * included or not at all. Reads optimistically and retries if an update
+     * overlapped the read; after a few tries it holds new updates back until
+     * in-flight ones are done and reads once more.
+     */
+    @Override
+    public EmissionSnapshot snapshot() {
+        double[] totals = new double[EmissionSource.COUNT];
+        long[] counts = new long[EmissionSource.COUNT];
+        for (int attempt = 0; attempt < OPTIMISTIC_READS; attempt++) {
+            long finished = updatesFinished.sum();
+            readTotals(totals, counts);
+            // Both counters only grow, so equal sums mean nothing was in flight or started meanwhile
+            if (updatesStarted.sum() == finished) {
+                return new EmissionSnapshot(totals, counts);
+            }
+        }
+        synchronized (barrier) {
+            snapshotPending = true;
+            try {
+                long finished;
+                do {
+                    Thread.onSpinWait();
+                    finished = updatesFinished.sum();
+                } while (updatesStarted.sum() != finished);
+                readTotals(totals, counts);
+            } finally {
+                snapshotPending = false;
+            }
+        }
+        return new EmissionSnapshot(totals, counts);
+    }
+    
+    private void readTotals(double[] totals, long[] counts) {
+        for (int i = 0; i < EmissionSource.COUNT; i++) {
+            totals[i] = sourceTotals[i].sum();
+            counts[i] = sourceCounts[i].sum();
+        }
+    }
+    
+    @Override
+    public double getSourceTotal(EmissionSource source) {
+        return sourceTotals[source.ordinal()].sum();
+    }
+    
+    @Override
+    public long getSourceCount(EmissionSource source) {
+        return sourceCounts[source.ordinal()].sum();
+    }
+    
+    @Override
+    public double getCategoryTotal(EmissionCategory category) {
+        return snapshot().getCategoryTotal(category);
+    }
+    
+    @Override
+    public double getTotalEmissions() {
+        return snapshot().getTotal();
+    }
+    
+    @Override
+    public double getTotalEmissions(long from, long to) {
+        requireHistory();
+        EmissionLedger ledger = getLedger();
+        synchronized (ledger) {
+            return ledger.sum(from, to);
+        }
+    }
+    
+    @Override
+    public double getSourceTotal(EmissionSource source, long from, long to) {
+        requireHistory();
+        EmissionLedger ledger = getLedger();
+        synchronized (ledger) {
+            return ledger.sum(source, from, to);
+        }
+    }
+    
+    @Override
+    public EmissionTrend getTrend(EmissionRollup.Granularity granularity, EmissionSource source, long from, long to) {
+        requireHistory();
+        EmissionLedger ledger = getLedger();
+        synchronized (ledger) {
+            return super.getTrend(granularity, source, from, to);
+        }
+    }
+    
+    @Override
+    public Map<String, Double> getBreakdown(EmissionCategory category) {
+        return snapshot().getBreakdown(category);
+    }
+    
+    /**
+     * Clears all totals. Adds that race with a reset may land on either side
+     * of it.
+     */
+    @Override
+    public void reset() {
+        clearTotals();
+        EmissionLedger ledger = getLedger();
+        synchronized (ledger) {
+            ledger.clear();
+            getRollup().clear();
+        }
+        resetSinks();
+    }
+}
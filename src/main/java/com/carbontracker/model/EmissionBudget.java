@@ -0,0 +1,177 @@
+package com.carbontracker.model;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Immutable limit on the kg CO2 of one source, one category or everything,
+ * per calendar hour, day or month (UTC) or over all time. Budgets are
+ * evaluated by a {@link BudgetAlertEngine}.
+ * <p>
+ * Budget files hold lines of {@code id,scope,window,limitKg}, e.g.
+ * {@code car-daily,car,day,10}, where {@code scope} is a source key, a
+ * category ({@code transport}, {@code energy}, {@code food}) or
+ * {@code total} and {@code window} is {@code hour}, {@code day},
+ * {@code month} or {@code all}. Blank lines, {@code #} comments and a header
+ * line are ignored.
+ */
+public final class EmissionBudget {
+    
+    private final String id;
+    private final EmissionSource source;
+    private final EmissionCategory category;
+    private final EmissionRollup.Granularity window;
+    private final double limitKg;
+    
+    private EmissionBudget(String id, EmissionSource source, EmissionCategory category,
+                           EmissionRollup.Granularity window, double limitKg) {
+        if (!(limitKg >= 0) || Double.isInfinite(limitKg)) {
+            throw new IllegalArgumentException("limit must be a non-negative number");
+        }
+        this.id = id;
+        this.source = source;
+        this.category = category;
+        this.window = window;
+        this.limitKg = limitKg;
+    }
+    
+    /** Budget for one source; a null {@code window} means all time. */
+    public static EmissionBudget forSource(String id, EmissionSource source, EmissionRollup.Granularity window,
+                                           double limitKg) {
+        return new EmissionBudget(id, source, null, window, limitKg);
+    }
+    
+    /** Budget for all sources of a category; a null {@code window} means all time. */
+    public static EmissionBudget forCategory(String id, EmissionCategory category, EmissionRollup.Granularity window,
+                                             double limitKg) {
+        return new EmissionBudget(id, null, category, window, limitKg);
+    }
+    
+    /** Budget for the grand total; a null {@code window} means all time. */
+    public static EmissionBudget forTotal(String id, EmissionRollup.Granularity window, double limitKg) {
+        return new EmissionBudget(id, null, null, window, limitKg);
+    }
+    
+    public String getId() {
+        return id;
+    }
+    
+    /** Source the budget covers, or null for a category or total budget. */
+    public EmissionSource getSource() {
+        return source;
+    }
+    
+    /** Category the budget covers, or null for a source or total budget. */
+    public EmissionCategory getCategory() {
+        return category;
+    }
+    
+    /** Calendar window the limit applies to, or null for all time. */
+    public EmissionRollup.Granularity getWindow() {
+        return window;
+    }
+    
+    public double getLimitKg() {
+        return limitKg;
+    }
+    
+    /** Whether an activity from {@code activitySource} counts against this budget. */
+    public boolean covers(EmissionSource activitySource) {
+        return source != null ? source == activitySource
+            : category == null || category == activitySource.getCategory();
+    }
+    
+    /** Short description such as "Daily Car" or "All-time total". */
+    public String getDescription() {
+        String scope = source != null ? source.getLabel() : category != null ? category.getLabel() : "total";
+        return windowLabel(window) + " " + scope;
+    }
+    
+    private static String windowLabel(EmissionRollup.Granularity window) {
+        if (window == null) {
+            return "All-time";
+        }
+        switch (window) {
+            case HOUR:
+                return "Hourly";
+            case DAY:
+                return "Daily";
+            default:
+                return "Monthly";
+        }
+    }
+    
+    @Override
+    public String toString() {
+        return String.format(Locale.ROOT, "%s (%s, %.2f kg)", id, getDescription(), limitKg);
+    }
+    
+    /**
+     * Parses a budget file.
+     *
+     * @throws IOException if the input cannot be read or a line is malformed
+     */
+    public static List<EmissionBudget> parseAll(Reader input) throws IOException {
+        List<EmissionBudget> budgets = new ArrayList<>();
+        BufferedReader reader = new BufferedReader(input);
+        String line;
+        int lineNumber = 0;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            String[] fields = line.split(",");
+            if (fields.length < 4) {
+                throw new IOException("line " + lineNumber + ": expected id,scope,window,limitKg");
+            }
+            double limit;
+            try {
+                limit = Double.parseDouble(fields[3].trim());
+            } catch (NumberFormatException e) {
+                if (lineNumber == 1) {
+                    continue; // header line
+                }
+                throw new IOException("line " + lineNumber + ": invalid limit '" + fields[3].trim() + "'");
+            }
+            if (!(limit >= 0) || Double.isInfinite(limit)) {
+                throw new IOException("line " + lineNumber + ": limit must be a non-negative number");
+            }
+            String id = fields[0].trim();
+            String scope = fields[1].trim();
+            EmissionRollup.Granularity window = parseWindow(fields[2].trim(), lineNumber);
+            
+            if (scope.equalsIgnoreCase("total")) {
+                budgets.add(forTotal(id, window, limit));
+                continue;
+            }
+            EmissionSource source = EmissionSource.fromKey(scope);
+            if (source != null) {
+                budgets.add(forSource(id, source, window, limit));
+                continue;
+            }
+            try {
+                budgets.add(forCategory(id, EmissionCategory.valueOf(scope.toUpperCase(Locale.ROOT)), window, limit));
+            } catch (IllegalArgumentException e) {
+                throw new IOException("line " + lineNumber + ": unknown scope '" + scope + "'");
+            }
+        }
+        return budgets;
+    }
+    
+    private static EmissionRollup.Granularity parseWindow(String field, int lineNumber) throws IOException {
+        if (field.equalsIgnoreCase("all")) {
+            return null;
+        }
+        try {
+            return EmissionRollup.Granularity.valueOf(field.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IOException("line " + lineNumber + ": invalid window '" + field + "'");
+        }
+    }
+}
@@ -1,16 +1,29 @@
 package com.carbontracker.model;
 
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 
 /**
- * Core calculator for carbon emissions across different categories
+ * Core calculator for carbon emissions across different categories.
+ * Every activity is appended to an {@link EmissionLedger}; the totals are
+ * running views over that ledger, kept in primitive arrays indexed by
+ * {@link EmissionSource} and {@link EmissionCategory} ordinals so they are
+ * O(1) reads. An {@link EmissionRollup} keeps hourly, daily and monthly
+ * totals for trend queries.
  */
 public class EmissionCalculator {
     
-    private Map<String, Double> transportEmissions;
-    private Map<String, Double> energyEmissions;
-    private Map<String, Double> foodEmissions;
+    private final double[] sourceTotals;
+    private final long[] sourceCounts;
+    private final double[] categoryTotals;
+    private final EmissionLedger ledger;
+    private final EmissionRollup rollup;
+    private volatile EmissionSink[] sinks = new EmissionSink[0];
+    private EmissionPublisher eventPublisher;
+    private long version;
+    private volatile EmissionFactorRegistry factorRegistry = new EmissionFactorRegistry();
+    private volatile String region = EmissionFactorTable.DEFAULT_REGION;
     
     // Emission factors (kg CO2 per unit)
     public static final double CAR_EMISSION_FACTOR = 0.21;        // per km
@@ -28,93 +41,323 @@ public class EmissionCalculator {
     public static final double VEGETARIAN_EMISSION_FACTOR = 2.0;  // per meal
     
     public EmissionCalculator() {
-        transportEmissions = new HashMap<>();
-        energyEmissions = new HashMap<>();
-        foodEmissions = new HashMap<>();
+        sourceTotals = new double[EmissionSource.COUNT];
+        sourceCounts = new long[EmissionSource.COUNT];
+        categoryTotals = new double[EmissionCategory.COUNT];
+        ledger = new EmissionLedger();
+        rollup = new EmissionRollup();
     }
     
     // Transport methods
     public void addCarEmission(double kilometers) {
-        addEmission(transportEmissions, "car", kilometers * CAR_EMISSION_FACTOR);
+        addEmission(EmissionSource.CAR, kilometers);
     }
     
     public void addBusEmission(double kilometers) {
-        addEmission(transportEmissions, "bus", kilometers * BUS_EMISSION_FACTOR);
+        addEmission(EmissionSource.BUS, kilometers);
     }
     
     public void addTrainEmission(double kilometers) {
-        addEmission(transportEmissions, "train", kilometers * TRAIN_EMISSION_FACTOR);
+        addEmission(EmissionSource.TRAIN, kilometers);
     }
     
     public void addFlightEmission(double kilometers) {
-        addEmission(transportEmissions, "flight", kilometers * FLIGHT_EMISSION_FACTOR);
+        addEmission(EmissionSource.FLIGHT, kilometers);
     }
     
     // Energy methods
     public void addElectricityEmission(double kWh) {
-        addEmission(energyEmissions, "electricity", kWh * ELECTRICITY_EMISSION_FACTOR);
+        addEmission(EmissionSource.ELECTRICITY, kWh);
     }
     
     public void addNaturalGasEmission(double therms) {
-        addEmission(energyEmissions, "naturalGas", therms * NATURAL_GAS_EMISSION_FACTOR);
+        addEmission(EmissionSource.NATURAL_GAS, therms);
     }
     
     public void addHeatingOilEmission(double liters) {
-        addEmission(energyEmissions, "heatingOil", liters * HEATING_OIL_EMISSION_FACTOR);
+        addEmission(EmissionSource.HEATING_OIL, liters);
     }
     
     // Food methods
     public void addBeefEmission(double kg) {
-        addEmission(foodEmissions, "beef", kg * BEEF_EMISSION_FACTOR);
+        addEmission(EmissionSource.BEEF, kg);
     }
     
     public void addPorkEmission(double kg) {
-        addEmission(foodEmissions, "pork", kg * PORK_EMISSION_FACTOR);
+        addEmission(EmissionSource.PORK, kg);
     }
     
     public void addChickenEmission(double kg) {
-        addEmission(foodEmissions, "chicken", kg * CHICKEN_EMISSION_FACTOR);
+        addEmission(EmissionSource.CHICKEN, kg);
     }
     
     public void addVegetarianMeal(int meals) {
-        addEmission(foodEmissions, "vegetarian", meals * VEGETARIAN_EMISSION_FACTOR);
+        addEmission(EmissionSource.VEGETARIAN, meals);
     }
     
-    private void addEmission(Map<String, Double> map, String key, double value) {
-        map.put(key, map.getOrDefault(key, 0.0) + value);
+    /**
+     * Records an activity quantity (km, kWh, kg, meals, ...) for a source,
+     * converting it to kg CO2 with the emission factor in effect.
+     */
+    public void addEmission(EmissionSource source, double quantity) {
+        addEmission(source, quantity, System.currentTimeMillis());
+    }
+    
+    /**
+     * Records an activity that happened at {@code timestamp} (epoch millis).
+     */
+    public void addEmission(EmissionSource source, double quantity, long timestamp) {
+        double factor = recordActivity(timestamp, source, quantity);
+        double kgCO2 = quantity * factor;
+        for (EmissionSink sink : sinks) {
+            sink.record(timestamp, source, quantity, factor, kgCO2);
+        }
+    }
+    
+    /**
+     * Looks up the factor in effect at {@code timestamp} and records the
+     * activity with it; returns the factor used.
+     */
+    protected double recordActivity(long timestamp, EmissionSource source, double quantity) {
+        double factor = factorRegistry.getFactor(region, source, timestamp);
+        record(timestamp, source, quantity, factor, quantity * factor);
+        return factor;
+    }
+    
+    /**
+     * Restores a previously recorded activity, e.g. from a store on startup.
+     * Unlike {@link #addEmission(EmissionSource, double, long)} the entry is
+     * taken as-is and not forwarded to the sinks.
+     */
+    public void replay(long timestamp, EmissionSource source, double quantity, double factor, double kgCO2) {
+        record(timestamp, source, quantity, factor, kgCO2);
+    }
+    
+    /** Registers a sink that receives every activity added from now on. */
+    public synchronized void addSink(EmissionSink sink) {
+        EmissionSink[] updated = Arrays.copyOf(sinks, sinks.length + 1);
+        updated[updated.length - 1] = sink;
+        sinks = updated;
+    }
+    
+    /**
+     * Stream of every activity added and every reset from now on, created
+     * and registered as a sink on first use. Replayed history is not
+     * published. The default publisher drops events for subscribers that
+     * fall behind; register an {@link EmissionPublisher} with other
+     * settings via {@link #addSink} where that is not acceptable.
+     */
+    public synchronized EmissionPublisher getEventPublisher() {
+        if (eventPublisher == null) {
+            eventPublisher = new EmissionPublisher();
+            addSink(eventPublisher);
+        }
+        return eventPublisher;
+    }
+    
+    public EmissionFactorRegistry getFactorRegistry() {
+        return factorRegistry;
+    }
+    
+    /** Uses the factors of {@code registry} for activities recorded from now on. */
+    public void setFactorRegistry(EmissionFactorRegistry registry) {
+        this.factorRegistry = registry;
+    }
+    
+    public String getRegion() {
+        return region;
+    }
+    
+    /** Selects the region whose emission factors apply to new activities. */
+    public void setRegion(String region) {
+        this.region = region;
+    }
+    
+    /**
+     * Recalculates every activity in the ledger with the factor that the
+     * current factor table defines for its timestamp, rewriting its entry and
+     * moving the difference into the totals and rollups. Totals restored
+     * without ledger entries (see {@link #restoreTotals}) keep the factors
+     * they were recorded with, and sinks keep the values they received.
+     */
+    public void recomputeEmissions() {
+        EmissionFactorRegistry registry = factorRegistry;
+        String region = this.region;
+        for (int i = 0; i < ledger.size(); i++) {
+            EmissionSource source = ledger.getSource(i);
+            long timestamp = ledger.getTimestamp(i);
+            double factor = registry.getFactor(region, source, timestamp);
+            if (factor == ledger.getFactor(i)) {
+                continue;
+            }
+            double kgCO2 = ledger.getQuantity(i) * factor;
+            double delta = kgCO2 - ledger.getEmissions(i);
+            ledger.update(i, factor, kgCO2);
+            rollup.adjust(timestamp, source, delta);
+            adjustTotal(source, delta);
+        }
+    }
+    
+    /**
+     * Adds totals accumulated elsewhere, e.g. restored from a snapshot, for a
+     * source without adding ledger entries.
+     */
+    public void restoreTotals(EmissionSource source, double kgCO2, long count) {
+        int ordinal = source.ordinal();
+        sourceTotals[ordinal] += kgCO2;
+        sourceCounts[ordinal] += count;
+        categoryTotals[source.getCategory().ordinal()] += kgCO2;
+        version++;
+    }
+    
+    /**
+     * Appends an activity to the ledger, the rollups and the running totals.
+     */
+    protected void record(long timestamp, EmissionSource source, double quantity, double factor, double kgCO2) {
+        ledger.append(timestamp, source, quantity, factor, kgCO2);
+        rollup.add(timestamp, source, kgCO2);
+        accumulate(source, kgCO2);
+    }
+    
+    /** Adds an activity's emissions to the running totals. */
+    protected void accumulate(EmissionSource source, double kgCO2) {
+        int ordinal = source.ordinal();
+        sourceTotals[ordinal] += kgCO2;
+        sourceCounts[ordinal]++;
+        categoryTotals[source.getCategory().ordinal()] += kgCO2;
+        version++;
+    }
+    
+    /**
+     * Changes a source's running total without counting another activity,
+     * e.g. after a recorded activity was recalculated.
+     */
+    protected void adjustTotal(EmissionSource source, double deltaKg) {
+        sourceTotals[source.ordinal()] += deltaKg;
+        categoryTotals[source.getCategory().ordinal()] += deltaKg;
+        version++;
+    }
+    
+    /**
+     * Changes whenever an activity is recorded or the calculator is reset,
+     * so observers can cheaply poll for updates.
+     */
+    public long getVersion() {
+        return version;
+    }
+    
+    public double getSourceTotal(EmissionSource source) {
+        return sourceTotals[source.ordinal()];
+    }
+    
+    /** Number of activities recorded for a source since the last reset. */
+    public long getSourceCount(EmissionSource source) {
+        return sourceCounts[source.ordinal()];
+    }
+    
+    public double getCategoryTotal(EmissionCategory category) {
+        return categoryTotals[category.ordinal()];
     }
     
     public double getTransportTotal() {
-        return transportEmissions.values().stream().mapToDouble(Double::doubleValue).sum();
+        return getCategoryTotal(EmissionCategory.TRANSPORT);
     }
     
     public double getEnergyTotal() {
-        return energyEmissions.values().stream().mapToDouble(Double::doubleValue).sum();
+        return getCategoryTotal(EmissionCategory.ENERGY);
     }
     
     public double getFoodTotal() {
-        return foodEmissions.values().stream().mapToDouble(Double::doubleValue).sum();
+        return getCategoryTotal(EmissionCategory.FOOD);
     }
     
     public double getTotalEmissions() {
-        return getTransportTotal() + getEnergyTotal() + getFoodTotal();
+        double total = 0;
+        for (double categoryTotal : categoryTotals) {
+            total += categoryTotal;
+        }
+        return total;
+    }
+    
+    /** Total kg CO2 recorded with {@code from <= timestamp < to}. */
+    public double getTotalEmissions(long from, long to) {
+        return ledger.sum(from, to);
+    }
+    
+    /** Total kg CO2 recorded for a source with {@code from <= timestamp < to}. */
+    public double getSourceTotal(EmissionSource source, long from, long to) {
+        return ledger.sum(source, from, to);
+    }
+    
+    /**
+     * Bucketed totals for the buckets starting in {@code [from, to)}, for one
+     * source or, if {@code source} is null, for all sources. Reads the
+     * rollups, so the cost depends on the number of buckets, not activities.
+     */
+    public EmissionTrend getTrend(EmissionRollup.Granularity granularity, EmissionSource source, long from, long to) {
+        return rollup.trend(granularity, source, from, to);
+    }
+    
+    /**
+     * Copies the current per-source totals and counts.
+     */
+    public EmissionSnapshot snapshot() {
+        return new EmissionSnapshot(sourceTotals.clone(), sourceCounts.clone());
+    }
+    
+    public EmissionLedger getLedger() {
+        return ledger;
+    }
+    
+    public EmissionRollup getRollup() {
+        return rollup;
+    }
+    
+    /**
+     * Breakdown of a category keyed by {@link EmissionSource#getKey()}.
+     * Only sources that have recorded at least one activity are included.
+     */
+    public Map<String, Double> getBreakdown(EmissionCategory category) {
+        Map<String, Double> breakdown = new HashMap<>();
+        for (EmissionSource source : EmissionSource.values()) {
+            int ordinal = source.ordinal();
+            if (source.getCategory() == category && sourceCounts[ordinal] > 0) {
+                breakdown.put(source.getKey(), sourceTotals[ordinal]);
+            }
+        }
+        return breakdown;
     }
     
     public Map<String, Double> getTransportBreakdown() {
-        return new HashMap<>(transportEmissions);
+        return getBreakdown(EmissionCategory.TRANSPORT);
     }
     
     public Map<String, Double> getEnergyBreakdown() {
-        return new HashMap<>(energyEmissions);
+        return getBreakdown(EmissionCategory.ENERGY);
     }
     
     public Map<String, Double> getFoodBreakdown() {
-        return new HashMap<>(foodEmissions);
+        return getBreakdown(EmissionCategory.FOOD);
     }
     
     public void reset() {
-        transportEmissions.clear();
-        energyEmissions.clear();
-        foodEmissions.clear();
+        clearTotals();
+        ledger.clear();
+        rollup.clear();
+        resetSinks();
+    }
+    
+    /** Zeroes the running totals. */
+    protected void clearTotals() {
+        Arrays.fill(sourceTotals, 0.0);
+        Arrays.fill(sourceCounts, 0L);
+        Arrays.fill(categoryTotals, 0.0);
+        version++;
+    }
+    
+    protected void resetSinks() {
+        for (EmissionSink sink : sinks) {
+            sink.reset();
+        }
     }
 }
@@ -0,0 +1,47 @@
+package com.carbontracker.model;
+
+/**
+ * Top-level emission categories shown in the totals and breakdowns, with
+ * the label, icon and accent colour the views present them with.
+ */
+public enum EmissionCategory {
+    TRANSPORT("Transport", "🚗", "#10b981"),
+    ENERGY("Energy", "⚡", "#f59e0b"),
+    FOOD("Food", "🍽️", "#ef4444");
+    
+    private static final EmissionCategory[] VALUES = values();
+    
+    public static final int COUNT = VALUES.length;
+    
+    private final String label;
+    private final String icon;
+    private final String color;
+    
+    EmissionCategory(String label, String icon, String color) {
+        this.label = label;
+        this.icon = icon;
+        this.color = color;
+    }
+    
+    public String getLabel() {
+        return label;
+    }
+    
+    public String getIcon() {
+        return icon;
+    }
+    
+    /** Accent colour as a CSS hex string. */
+    public String getColor() {
+        return color;
+    }
+    
+    /** Icon and label, e.g. "⚡ Energy". */
+    public String getDisplayName() {
+        return icon + " " + label;
+    }
+    
+    public static EmissionCategory byOrdinal(int ordinal) {
+        return VALUES[ordinal];
+    }
+}
@@ -0,0 +1,62 @@
+package com.carbontracker.model;
+
+/**
+ * One change published by an {@link EmissionPublisher}: either a recorded
+ * activity or a reset of the calculator.
+ */
+public final class EmissionEvent {
+    
+    /** Published when the calculator is reset. */
+    public static final EmissionEvent RESET = new EmissionEvent(0, null, 0, 0, 0);
+    
+    private final long timestamp;
+    private final EmissionSource source;
+    private final double quantity;
+    private final double factor;
+    private final double kgCO2;
+    
+    private EmissionEvent(long timestamp, EmissionSource source, double quantity, double factor, double kgCO2) {
+        this.timestamp = timestamp;
+        this.source = source;
+        this.quantity = quantity;
+        this.factor = factor;
+        this.kgCO2 = kgCO2;
+    }
+    
+    public static EmissionEvent recorded(long timestamp, EmissionSource source, double quantity, double factor,
+                                         double kgCO2) {
+        return new EmissionEvent(timestamp, source, quantity, factor, kgCO2);
+    }
+    
+    public boolean isReset() {
+        return this == RESET;
+    }
+    
+    /** Activity time in epoch millis. */
+    public long getTimestamp() {
+        return timestamp;
+    }
+    
+    /** Source of the activity, or null for {@link #RESET}. */
+    public EmissionSource getSource() {
+        return source;
+    }
+    
+    public double getQuantity() {
+        return quantity;
+    }
+    
+    public double getFactor() {
+        return factor;
+    }
+    
+    public double getKgCO2() {
+        return kgCO2;
+    }
+    
+    @Override
+    public String toString() {
+        return isReset() ? "EmissionEvent[reset]"
+            : "EmissionEvent[" + source.getKey() + " " + quantity + " x " + factor + " = " + kgCO2 + " kg @" + timestamp + "]";
+    }
+}
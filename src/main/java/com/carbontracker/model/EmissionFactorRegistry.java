@@ -0,0 +1,119 @@
+package com.carbontracker.model;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Holds the emission factor table currently in effect.
+ * <p>
+ * The table is an immutable {@link EmissionFactorTable} behind a volatile
+ * reference: a reload compiles the new table off to the side and publishes it
+ * with a single write, so threads recording emissions never block and always
+ * see either the old or the new table in full. A file can be watched to
+ * reload it automatically whenever it changes, and reload listeners are told
+ * after each such reload, e.g. to recompute recorded activities.
+ */
+public class EmissionFactorRegistry implements Closeable {
+    
+    private final AtomicInteger versions = new AtomicInteger();
+    private volatile EmissionFactorTable table = EmissionFactorTable.builtIn();
+    private final List<Runnable> reloadListeners = new CopyOnWriteArrayList<>();
+    private WatchService watchService;
+    
+    public EmissionFactorTable getTable() {
+        return table;
+    }
+    
+    public double getFactor(String region, EmissionSource source, long timestamp) {
+        return table.getFactor(region, source, timestamp);
+    }
+    
+    /**
+     * Loads a factor file and makes it the current table.
+     *
+     * @return the newly installed table
+     */
+    public EmissionFactorTable load(Path file) throws IOException {
+        EmissionFactorTable loaded;
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            loaded = EmissionFactorTable.parse(reader, versions.incrementAndGet());
+        }
+        table = loaded;
+        return loaded;
+    }
+    
+    /** Runs {@code listener} on the watcher thread after every automatic reload. */
+    public void addReloadListener(Runnable listener) {
+        reloadListeners.add(listener);
+    }
+    
+    /**
+     * Loads {@code file} now and again whenever it is modified. Reload errors
+     * are reported on standard error and leave the current table in place.
+     */
+    public synchronized void watch(Path file) throws IOException {
+        load(file);
+        if (watchService != null) {
+            watchService.close();
+        }
+        Path absolute = file.toAbsolutePath();
+        WatchService service = FileSystems.getDefault().newWatchService();
+        absolute.getParent().register(service,
+            StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        watchService = service;
+        
+        Thread watcher = new Thread(() -> watchLoop(service, absolute), "emission-factor-watcher");
+        watcher.setDaemon(true);
+        watcher.start();
+    }
+    
+    private void watchLoop(WatchService service, Path file) {
+        try {
+            while (true) {
+                WatchKey key = service.take();
+                boolean changed = false;
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    Object context = event.context();
+                    if (context instanceof Path && file.getFileName().equals(context)) {
+                        changed = true;
+                    }
+                }
+                key.reset();
+                if (changed) {
+                    try {
+                        load(file);
+                    } catch (IOException e) {
+                        System.err.println("Could not reload emission factors from " + file + ": " + e.getMessage());
+                        continue;
+                    }
+                    for (Runnable listener : reloadListeners) {
+                        listener.run();
+                    }
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // Stopped
+        }
+    }
+    
+    @Override
+    public synchronized void close() throws IOException {
+        if (watchService != null) {
+            watchService.close();
+            watchService = null;
+        }
+    }
+}
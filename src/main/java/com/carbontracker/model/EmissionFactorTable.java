@@ -0,0 +1,192 @@
+package com.carbontracker.model;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Immutable, versioned set of emission factors per region and effective date.
+ * <p>
+ * Tables are read from lines of {@code region,source,effectiveFrom,factor},
+ * e.g. {@code uk,electricity,2024-01-01,0.207}, where {@code effectiveFrom} is
+ * an ISO date (UTC) or {@code *} for "always". Blank lines, {@code #} comments
+ * and a header line are ignored.
+ * <p>
+ * At load time each region is compiled into a sorted array of change dates and
+ * a flat {@code double[]} holding one full row of factors per date, so a lookup
+ * is a binary search plus an array read. Regions start from the built-in
+ * {@link EmissionSource#getDefaultFactor() default factors}; regions missing
+ * from the table use the {@value #DEFAULT_REGION} region if present.
+ */
+public final class EmissionFactorTable {
+    
+    public static final String DEFAULT_REGION = "default";
+    
+    private static final EmissionFactorTable BUILT_IN = new EmissionFactorTable(0, new HashMap<>());
+    
+    private final int version;
+    private final Map<String, RegionFactors> regions;
+    private final RegionFactors fallback;
+    
+    private EmissionFactorTable(int version, Map<String, RegionFactors> regions) {
+        this.version = version;
+        this.regions = regions;
+        RegionFactors defaultRegion = regions.get(DEFAULT_REGION);
+        this.fallback = defaultRegion != null ? defaultRegion : RegionFactors.builtIn();
+    }
+    
+    /** Table with only the built-in factors (version 0). */
+    public static EmissionFactorTable builtIn() {
+        return BUILT_IN;
+    }
+    
+    public int getVersion() {
+        return version;
+    }
+    
+    /**
+     * Factor for {@code source} in {@code region} in effect at {@code timestamp}
+     * (epoch millis).
+     */
+    public double getFactor(String region, EmissionSource source, long timestamp) {
+        RegionFactors factors = region == null ? null : regions.get(region);
+        if (factors == null) {
+            factors = fallback;
+        }
+        return factors.getFactor(source, timestamp);
+    }
+    
+    public boolean hasRegion(String region) {
+        return regions.containsKey(region);
+    }
+    
+    /**
+     * Parses and compiles a table.
+     *
+     * @throws IOException if the input cannot be read or a line is malformed
+     */
+    public static EmissionFactorTable parse(Reader input, int version) throws IOException {
+        // region -> source ordinal -> effective date -> factor
+        Map<String, List<TreeMap<Long, Double>>> entries = new HashMap<>();
+        BufferedReader reader = new BufferedReader(input);
+        String line;
+        int lineNumber = 0;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            String[] fields = line.split(",");
+            if (fields.length < 4) {
+                throw new IOException("line " + lineNumber + ": expected region,source,effectiveFrom,factor");
+            }
+            String region = fields[0].trim();
+            EmissionSource source = EmissionSource.fromKey(fields[1].trim());
+            double factor;
+            try {
+                factor = Double.parseDouble(fields[3].trim());
+            } catch (NumberFormatException e) {
+                if (lineNumber == 1) {
+                    continue; // header line
+                }
+                throw new IOException("line " + lineNumber + ": invalid factor '" + fields[3].trim() + "'");
+            }
+            if (source == null) {
+                throw new IOException("line " + lineNumber + ": unknown source '" + fields[1].trim() + "'");
+            }
+            if (!(factor >= 0) || Double.isInfinite(factor)) {
+                throw new IOException("line " + lineNumber + ": factor must be a non-negative number");
+            }
+            long effectiveFrom = parseEffectiveFrom(fields[2].trim(), lineNumber);
+            
+            List<TreeMap<Long, Double>> bySource = entries.computeIfAbsent(region, r -> {
+                List<TreeMap<Long, Double>> list = new ArrayList<>();
+                for (int i = 0; i < EmissionSource.COUNT; i++) {
+                    list.add(new TreeMap<>());
+                }
+                return list;
+            });
+            bySource.get(source.ordinal()).put(effectiveFrom, factor);
+        }
+        
+        Map<String, RegionFactors> regions = new HashMap<>();
+        for (Map.Entry<String, List<TreeMap<Long, Double>>> region : entries.entrySet()) {
+            regions.put(region.getKey(), RegionFactors.compile(region.getValue()));
+        }
+        return new EmissionFactorTable(version, regions);
+    }
+    
+    private static long parseEffectiveFrom(String field, int lineNumber) throws IOException {
+        if (field.equals("*")) {
+            return Long.MIN_VALUE;
+        }
+        try {
+            return LocalDate.parse(field).atStartOfDay(ZoneOffset.UTC).toInstant().toEpochMilli();
+        } catch (DateTimeParseException e) {
+            throw new IOException("line " + lineNumber + ": invalid effective date '" + field + "'");
+        }
+    }
+    
+    /**
+     * Compiled factor timeline of one region.
+     */
+    private static final class RegionFactors {
+        private final long[] effectiveFrom;
+        private final double[] factors;
+        
+        private RegionFactors(long[] effectiveFrom, double[] factors) {
+            this.effectiveFrom = effectiveFrom;
+            this.factors = factors;
+        }
+        
+        static RegionFactors builtIn() {
+            double[] row = new double[EmissionSource.COUNT];
+            for (EmissionSource source : EmissionSource.values()) {
+                row[source.ordinal()] = source.getDefaultFactor();
+            }
+            return new RegionFactors(new long[] {Long.MIN_VALUE}, row);
+        }
+        
+        static RegionFactors compile(List<TreeMap<Long, Double>> bySource) {
+            TreeSet<Long> dates = new TreeSet<>();
+            dates.add(Long.MIN_VALUE);
+            for (TreeMap<Long, Double> timeline : bySource) {
+                dates.addAll(timeline.keySet());
+            }
+            
+            long[] effectiveFrom = new long[dates.size()];
+            double[] factors = new double[dates.size() * EmissionSource.COUNT];
+            int row = 0;
+            for (long date : dates) {
+                effectiveFrom[row] = date;
+                for (EmissionSource source : EmissionSource.values()) {
+                    Map.Entry<Long, Double> entry = bySource.get(source.ordinal()).floorEntry(date);
+                    factors[row * EmissionSource.COUNT + source.ordinal()] =
+                        entry != null ? entry.getValue() : source.getDefaultFactor();
+                }
+                row++;
+            }
+            return new RegionFactors(effectiveFrom, factors);
+        }
+        
+        double getFactor(EmissionSource source, long timestamp) {
+            int row = Arrays.binarySearch(effectiveFrom, timestamp);
+            if (row < 0) {
+                // Insertion point minus one is the last date <= timestamp; row 0 is Long.MIN_VALUE
+                row = -row - 2;
+            }
+            return factors[row * EmissionSource.COUNT + source.ordinal()];
+        }
+    }
+}
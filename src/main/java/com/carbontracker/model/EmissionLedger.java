@@ -0,0 +1,470 @@
+package com.carbontracker.model;
+
+import java.util.Arrays;
+
+/**
+ * Append-only ledger of recorded activities.
+ * Entries are stored column by column in fixed-size primitive chunks, so an
+ * append writes five array slots and never copies existing history. Each
+ * source also keeps an index of its entries, so per-source queries only
+ * visit that source's entries.
+ * <p>
+ * Time-window queries binary search these indexes and cost time
+ * proportional to the window. Entries that arrive in timestamp order, the
+ * usual case, extend a sorted run at no extra cost. Late entries, e.g. from
+ * a parallel import or a skewed clock, are kept in a few extra sorted runs
+ * that are merged as they grow (each late entry is merged O(log n) times),
+ * and queries search each run.
+ * <p>
+ * {@link #view()} hands the entries recorded so far to another thread
+ * without copying them; see {@link View}.
+ */
+public class EmissionLedger {
+    
+    private static final int CHUNK_BITS = 14;
+    static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+    private static final int PENDING_CAPACITY = 64;
+    
+    private long[][] timestamps = new long[0][];
+    private byte[][] sources = new byte[0][];
+    private double[][] quantities = new double[0][];
+    private double[][] factors = new double[0][];
+    private double[][] emissions = new double[0][];
+    private int size;
+    // Chunks a view may still read; update() copies their factors and emissions first
+    private boolean[] sharedChunks = new boolean[0];
+    
+    private TimeIndex allEntries = new TimeIndex(true);
+    private final TimeIndex[] sourceEntries = new TimeIndex[EmissionSource.COUNT];
+    
+    /**
+     * Callback used to walk ledger entries without materializing them.
+     */
+    @FunctionalInterface
+    public interface EntryVisitor {
+        void visit(long timestamp, EmissionSource source, double quantity, double factor, double kgCO2);
+    }
+    
+    public EmissionLedger() {
+        for (int i = 0; i < EmissionSource.COUNT; i++) {
+            sourceEntries[i] = new TimeIndex(false);
+        }
+    }
+    
+    /**
+     * Appends an entry and returns its index. Entries may arrive out of
+     * timestamp order.
+     */
+    public int append(long timestamp, EmissionSource source, double quantity, double factor, double kgCO2) {
+        int index = size;
+        int chunk = index >>> CHUNK_BITS;
+        if (chunk == timestamps.length) {
+            addChunk();
+        }
+        int slot = index & CHUNK_MASK;
+        timestamps[chunk][slot] = timestamp;
+        sources[chunk][slot] = (byte) source.ordinal();
+        quantities[chunk][slot] = quantity;
+        factors[chunk][slot] = factor;
+        emissions[chunk][slot] = kgCO2;
+        size = index + 1;
+        
+        allEntries.add(index, timestamp);
+        sourceEntries[source.ordinal()].add(index, timestamp);
+        return index;
+    }
+    
+    private void addChunk() {
+        int chunks = timestamps.length + 1;
+        timestamps = Arrays.copyOf(timestamps, chunks);
+        sources = Arrays.copyOf(sources, chunks);
+        quantities = Arrays.copyOf(quantities, chunks);
+        factors = Arrays.copyOf(factors, chunks);
+        emissions = Arrays.copyOf(emissions, chunks);
+        sharedChunks = Arrays.copyOf(sharedChunks, chunks);
+        timestamps[chunks - 1] = new long[CHUNK_SIZE];
+        sources[chunks - 1] = new byte[CHUNK_SIZE];
+        quantities[chunks - 1] = new double[CHUNK_SIZE];
+        factors[chunks - 1] = new double[CHUNK_SIZE];
+        emissions[chunks - 1] = new double[CHUNK_SIZE];
+    }
+    
+    public int size() {
+        return size;
+    }
+    
+    public boolean isEmpty() {
+        return size == 0;
+    }
+    
+    /** Whether every entry so far was appended in timestamp order. */
+    public boolean isOrdered() {
+        return allEntries.lateCount() == 0;
+    }
+    
+    public long getTimestamp(int index) {
+        checkIndex(index);
+        return timestamps[index >>> CHUNK_BITS][index & CHUNK_MASK];
+    }
+    
+    public EmissionSource getSource(int index) {
+        checkIndex(index);
+        return EmissionSource.byOrdinal(sources[index >>> CHUNK_BITS][index & CHUNK_MASK]);
+    }
+    
+    public double getQuantity(int index) {
+        checkIndex(index);
+        return quantities[index >>> CHUNK_BITS][index & CHUNK_MASK];
+    }
+    
+    public double getFactor(int index) {
+        checkIndex(index);
+        return factors[index >>> CHUNK_BITS][index & CHUNK_MASK];
+    }
+    
+    public double getEmissions(int index) {
+        checkIndex(index);
+        return emissions[index >>> CHUNK_BITS][index & CHUNK_MASK];
+    }
+    
+    /**
+     * Replaces the factor and emissions of an entry, e.g. after emission
+     * factors were revised. Timestamp, source and quantity never change.
+     */
+    public void update(int index, double factor, double kgCO2) {
+        checkIndex(index);
+        int chunk = index >>> CHUNK_BITS;
+        if (sharedChunks[chunk]) {
+            factors[chunk] = factors[chunk].clone();
+            emissions[chunk] = emissions[chunk].clone();
+            sharedChunks[chunk] = false;
+        }
+        factors[chunk][index & CHUNK_MASK] = factor;
+        emissions[chunk][index & CHUNK_MASK] = kgCO2;
+    }
+    
+    /**
+     * The entries recorded so far, readable from any thread while this
+     * ledger keeps changing. Like every other method, call it from the
+     * thread that changes the ledger or under the lock guarding it.
+     */
+    public View view() {
+        int chunks = (size + CHUNK_MASK) >>> CHUNK_BITS;
+        Arrays.fill(sharedChunks, 0, chunks, true);
+        return new View(this, chunks);
+    }
+    
+    /**
+     * Entries {@code 0..size()-1} of a ledger as they were when the view was
+     * taken. The view shares the ledger's column chunks instead of copying
+     * them: appends only write past its size, {@link #update} copies a
+     * shared chunk's factors and emissions before changing them, and
+     * {@link #clear()} allocates new chunks. Hand it to another thread
+     * through a synchronizing handoff such as an executor.
+     */
+    public static final class View {
+        private final long[][] timestamps;
+        private final byte[][] sources;
+        private final double[][] quantities;
+        private final double[][] factors;
+        private final double[][] emissions;
+        private final int size;
+        
+        private View(EmissionLedger ledger, int chunks) {
+            timestamps = Arrays.copyOf(ledger.timestamps, chunks);
+            sources = Arrays.copyOf(ledger.sources, chunks);
+            quantities = Arrays.copyOf(ledger.quantities, chunks);
+            factors = Arrays.copyOf(ledger.factors, chunks);
+            emissions = Arrays.copyOf(ledger.emissions, chunks);
+            size = ledger.size;
+        }
+        
+        public int size() {
+            return size;
+        }
+        
+        // Raw column chunks for bulk scans within the package; chunk c holds
+        // entries [c * CHUNK_SIZE, (c + 1) * CHUNK_SIZE) and is filled up to size
+        
+        long[] timestampChunk(int chunk) {
+            return timestamps[chunk];
+        }
+        
+        byte[] sourceChunk(int chunk) {
+            return sources[chunk];
+        }
+        
+        double[] quantityChunk(int chunk) {
+            return quantities[chunk];
+        }
+        
+        double[] factorChunk(int chunk) {
+            return factors[chunk];
+        }
+        
+        double[] emissionChunk(int chunk) {
+            return emissions[chunk];
+        }
+    }
+    
+    private long timestampAt(int index) {
+        return timestamps[index >>> CHUNK_BITS][index & CHUNK_MASK];
+    }
+    
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Ledger index " + index + " out of bounds for size " + size);
+        }
+    }
+    
+    /** Number of entries recorded for a source. */
+    public int count(EmissionSource source) {
+        return sourceEntries[source.ordinal()].size();
+    }
+    
+    /**
+     * Visits every entry with {@code from <= timestamp < to}. Entries that
+     * were appended in timestamp order are visited in that order, followed
+     * by late entries in timestamp order.
+     */
+    public void forEach(long from, long to, EntryVisitor visitor) {
+        allEntries.forEach(from, to, visitor);
+    }
+    
+    /**
+     * Visits the entries of one source with {@code from <= timestamp < to},
+     * in the same order as {@link #forEach(long, long, EntryVisitor)}.
+     */
+    public void forEach(EmissionSource source, long from, long to, EntryVisitor visitor) {
+        sourceEntries[source.ordinal()].forEach(from, to, visitor);
+    }
+    
+    /** Total kg CO2 of all entries with {@code from <= timestamp < to}. */
+    public double sum(long from, long to) {
+        return allEntries.sum(from, to);
+    }
+    
+    /** Total kg CO2 of one source's entries with {@code from <= timestamp < to}. */
+    public double sum(EmissionSource source, long from, long to) {
+        return sourceEntries[source.ordinal()].sum(from, to);
+    }
+    
+    private void visit(int index, EntryVisitor visitor) {
+        int chunk = index >>> CHUNK_BITS;
+        int slot = index & CHUNK_MASK;
+        visitor.visit(timestamps[chunk][slot], EmissionSource.byOrdinal(sources[chunk][slot]),
+            quantities[chunk][slot], factors[chunk][slot], emissions[chunk][slot]);
+    }
+    
+    /** First position in a sorted entry list whose timestamp is >= {@code timestamp}. */
+    private int lowerBound(int[] entries, int count, long timestamp) {
+        int low = 0;
+        int high = count;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (timestampAt(entries[mid]) < timestamp) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+    
+    /** First entry index whose timestamp is >= {@code timestamp} among entries 0..count-1. */
+    private int lowerBound(int count, long timestamp) {
+        int low = 0;
+        int high = count;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (timestampAt(mid) < timestamp) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+    
+    public void clear() {
+        timestamps = new long[0][];
+        sources = new byte[0][];
+        quantities = new double[0][];
+        factors = new double[0][];
+        emissions = new double[0][];
+        sharedChunks = new boolean[0];
+        size = 0;
+        allEntries = new TimeIndex(true);
+        for (int i = 0; i < EmissionSource.COUNT; i++) {
+            sourceEntries[i] = new TimeIndex(false);
+        }
+    }
+    
+    /**
+     * Entry indices sorted by timestamp. Entries that are not older than the
+     * newest in-order entry extend the in-order list. Older ones first go to
+     * a small buffer kept sorted by insertion; a full buffer becomes a run,
+     * and runs are merged while the newest is at least as long as the one
+     * before it, so there are at most log2(n) runs.
+     */
+    private final class TimeIndex {
+        
+        /** In-order entries, or null while they are exactly 0..inOrderCount-1. */
+        private int[] inOrder;
+        private int inOrderCount;
+        private long newest = Long.MIN_VALUE;
+        private int[] pending = new int[PENDING_CAPACITY];
+        private int pendingCount;
+        private int[][] runs = new int[0][];
+        private int runCount;
+        private int runEntries;
+        
+        TimeIndex(boolean dense) {
+            inOrder = dense ? null : new int[16];
+        }
+        
+        int size() {
+            return inOrderCount + lateCount();
+        }
+        
+        int lateCount() {
+            return pendingCount + runEntries;
+        }
+        
+        void add(int index, long timestamp) {
+            if (timestamp >= newest) {
+                newest = timestamp;
+                if (inOrder != null) {
+                    if (inOrderCount == inOrder.length) {
+                        inOrder = Arrays.copyOf(inOrder, inOrderCount * 2);
+                    }
+                    inOrder[inOrderCount] = index;
+                }
+                inOrderCount++;
+                return;
+            }
+            if (inOrder == null) {
+                // Later in-order entries no longer follow their indices
+                materialize(index);
+            }
+            if (pendingCount == PENDING_CAPACITY) {
+                flushPending();
+            }
+            int n = pendingCount;
+            while (n > 0 && timestampAt(pending[n - 1]) > timestamp) {
+                pending[n] = pending[n - 1];
+                n--;
+            }
+            pending[n] = index;
+            pendingCount++;
+        }
+        
+        private void materialize(int capacity) {
+            inOrder = new int[Math.max(16, capacity * 2)];
+            for (int i = 0; i < inOrderCount; i++) {
+                inOrder[i] = i;
+            }
+        }
+        
+        private void flushPending() {
+            int[] run = Arrays.copyOf(pending, pendingCount);
+            pendingCount = 0;
+            while (runCount > 0 && runs[runCount - 1].length <= run.length) {
+                run = merge(runs[--runCount], run);
+            }
+            if (runCount == runs.length) {
+                runs = Arrays.copyOf(runs, runCount + 4);
+            }
+            runs[runCount++] = run;
+            runEntries = 0;
+            for (int r = 0; r < runCount; r++) {
+                runEntries += runs[r].length;
+            }
+        }
+        
+        /** Merges two sorted runs; on equal timestamps the older run comes first. */
+        private int[] merge(int[] older, int[] newer) {
+            int[] merged = new int[older.length + newer.length];
+            int a = 0;
+            int b = 0;
+            for (int n = 0; n < merged.length; n++) {
+                if (b == newer.length || (a < older.length && timestampAt(older[a]) <= timestampAt(newer[b]))) {
+                    merged[n] = older[a++];
+                } else {
+                    merged[n] = newer[b++];
+                }
+            }
+            return merged;
+        }
+        
+        double sum(long from, long to) {
+            double total = 0;
+            if (inOrder == null) {
+                for (int i = lowerBound(inOrderCount, from); i < inOrderCount; i++) {
+                    int chunk = i >>> CHUNK_BITS;
+                    int slot = i & CHUNK_MASK;
+                    if (timestamps[chunk][slot] >= to) {
+                        break;
+                    }
+                    total += emissions[chunk][slot];
+                }
+            } else {
+                total += sum(inOrder, inOrderCount, from, to);
+            }
+            if (lateCount() > 0) {
+                total += sum(pending, pendingCount, from, to);
+                for (int r = 0; r < runCount; r++) {
+                    total += sum(runs[r], runs[r].length, from, to);
+                }
+            }
+            return total;
+        }
+        
+        private double sum(int[] entries, int count, long from, long to) {
+            double total = 0;
+            for (int n = lowerBound(entries, count, from); n < count; n++) {
+                int i = entries[n];
+                int chunk = i >>> CHUNK_BITS;
+                int slot = i & CHUNK_MASK;
+                if (timestamps[chunk][slot] >= to) {
+                    break;
+                }
+                total += emissions[chunk][slot];
+            }
+            return total;
+        }
+        
+        void forEach(long from, long to, EntryVisitor visitor) {
+            if (inOrder == null) {
+                for (int i = lowerBound(inOrderCount, from); i < inOrderCount && timestampAt(i) < to; i++) {
+                    visit(i, visitor);
+                }
+            } else {
+                forEach(inOrder, inOrderCount, from, to, visitor);
+            }
+            if (lateCount() == 0) {
+                return;
+            }
+            // Merge the parts of the late runs inside the window so they are
+            // visited in timestamp order
+            int[] late = window(pending, pendingCount, from, to);
+            for (int r = runCount - 1; r >= 0; r--) {
+                late = merge(window(runs[r], runs[r].length, from, to), late);
+            }
+            for (int index : late) {
+                visit(index, visitor);
+            }
+        }
+        
+        private int[] window(int[] entries, int count, long from, long to) {
+            return Arrays.copyOfRange(entries, lowerBound(entries, count, from), lowerBound(entries, count, to));
+        }
+        
+        private void forEach(int[] entries, int count, long from, long to, EntryVisitor visitor) {
+            for (int n = lowerBound(entries, count, from); n < count && timestampAt(entries[n]) < to; n++) {
+                visit(entries[n], visitor);
+            }
+        }
+    }
+}
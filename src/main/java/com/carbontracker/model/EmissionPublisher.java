@@ -0,0 +1,106 @@
+package com.carbontracker.model;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Publishes a calculator's activities as {@link EmissionEvent}s to any number
+ * of {@link Flow.Subscriber}s, see {@link EmissionCalculator#getEventPublisher()}.
+ * <p>
+ * Built on {@link SubmissionPublisher}: each subscriber gets its own bounded
+ * buffer, and events are delivered on the executor only as far as the
+ * subscriber has requested them. When a slow subscriber's buffer is full the
+ * {@link OverflowPolicy} decides what happens: {@code DROP} discards the event
+ * for that subscriber only and counts it, so recording never waits and
+ * memory stays bounded; {@code BLOCK} makes the recording thread wait for
+ * space, for subscribers that must see every event.
+ */
+public class EmissionPublisher implements EmissionSink, Flow.Publisher<EmissionEvent>, AutoCloseable {
+    
+    public enum OverflowPolicy {
+        DROP,
+        BLOCK
+    }
+    
+    private final SubmissionPublisher<EmissionEvent> publisher;
+    private final OverflowPolicy policy;
+    private final LongAdder dropped = new LongAdder();
+    
+    /**
+     * Delivers on the common fork-join pool with {@link Flow#defaultBufferSize()}
+     * events per subscriber, dropping on overflow.
+     */
+    public EmissionPublisher() {
+        this.publisher = new SubmissionPublisher<>();
+        this.policy = OverflowPolicy.DROP;
+    }
+    
+    /**
+     * @param executor runs subscriber callbacks
+     * @param bufferCapacity maximum number of undelivered events per subscriber,
+     *                       rounded up to a power of two
+     * @param policy what to do when a subscriber's buffer is full
+     */
+    public EmissionPublisher(Executor executor, int bufferCapacity, OverflowPolicy policy) {
+        this.publisher = new SubmissionPublisher<>(executor, bufferCapacity);
+        this.policy = policy;
+    }
+    
+    @Override
+    public void subscribe(Flow.Subscriber<? super EmissionEvent> subscriber) {
+        publisher.subscribe(subscriber);
+    }
+    
+    @Override
+    public void record(long timestamp, EmissionSource source, double quantity, double factor, double kgCO2) {
+        // Skip the allocation entirely while nobody listens
+        if (publisher.hasSubscribers()) {
+            publish(EmissionEvent.recorded(timestamp, source, quantity, factor, kgCO2));
+        }
+    }
+    
+    @Override
+    public void reset() {
+        publish(EmissionEvent.RESET);
+    }
+    
+    private void publish(EmissionEvent event) {
+        try {
+            if (policy == OverflowPolicy.BLOCK) {
+                publisher.submit(event);
+            } else {
+                publisher.offer(event, (subscriber, item) -> {
+                    dropped.increment();
+                    return false;
+                });
+            }
+        } catch (IllegalStateException e) {
+            // Closed; recording carries on without publishing
+        }
+    }
+    
+    /** Events discarded so far because a subscriber's buffer was full, summed over subscribers. */
+    public long getDroppedEvents() {
+        return dropped.sum();
+    }
+    
+    /** Largest number of events buffered but not yet consumed by any one subscriber. */
+    public int getMaxLag() {
+        return publisher.estimateMaximumLag();
+    }
+    
+    public int getSubscriberCount() {
+        return publisher.getNumberOfSubscribers();
+    }
+    
+    /**
+     * Completes every subscription once buffered events are delivered. Later
+     * activities are no longer published.
+     */
+    @Override
+    public void close() {
+        publisher.close();
+    }
+}
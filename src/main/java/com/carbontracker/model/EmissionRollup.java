@@ -0,0 +1,264 @@
+package com.carbontracker.model;
+
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Pre-aggregated emission totals per source in hourly, daily and monthly
+ * buckets (UTC), maintained incrementally as activities are recorded.
+ * <p>
+ * Trend queries read whole buckets, so "monthly totals for 2025" touches
+ * twelve cells regardless of how many activities were recorded. Each
+ * granularity remembers the bucket it last wrote, so recording activities in
+ * time order skips the map lookup entirely. Not thread-safe.
+ */
+public class EmissionRollup {
+    
+    private static final long HOUR_MILLIS = 3_600_000L;
+    private static final long DAY_MILLIS = 24 * HOUR_MILLIS;
+    
+    /**
+     * Bucket size of a rollup.
+     */
+    public enum Granularity {
+        HOUR, DAY, MONTH;
+        
+        /** Start of the bucket containing {@code timestamp} (epoch millis, UTC). */
+        public long bucketStart(long timestamp) {
+            switch (this) {
+                case HOUR:
+                    return Math.floorDiv(timestamp, HOUR_MILLIS) * HOUR_MILLIS;
+                case DAY:
+                    return Math.floorDiv(timestamp, DAY_MILLIS) * DAY_MILLIS;
+                default:
+                    LocalDate date = LocalDate.ofEpochDay(Math.floorDiv(timestamp, DAY_MILLIS));
+                    return date.withDayOfMonth(1).toEpochDay() * DAY_MILLIS;
+            }
+        }
+        
+        /** Start of the bucket following the one that starts at {@code bucketStart}. */
+        public long nextBucket(long bucketStart) {
+            switch (this) {
+                case HOUR:
+                    return bucketStart + HOUR_MILLIS;
+                case DAY:
+                    return bucketStart + DAY_MILLIS;
+                default:
+                    LocalDate date = LocalDate.ofEpochDay(Math.floorDiv(bucketStart, DAY_MILLIS));
+                    return date.plusMonths(1).toEpochDay() * DAY_MILLIS;
+            }
+        }
+    }
+    
+    /**
+     * Receives the per-source totals and counts of a bucket, indexed by
+     * source ordinal. The arrays must not be modified or retained.
+     */
+    @FunctionalInterface
+    public interface BucketVisitor {
+        void visit(long bucketStart, double[] totals, long[] counts);
+    }
+    
+    private static final Granularity[] GRANULARITIES = Granularity.values();
+    
+    private final Level[] levels = new Level[GRANULARITIES.length];
+    
+    public EmissionRollup() {
+        for (Granularity granularity : GRANULARITIES) {
+            levels[granularity.ordinal()] = new Level(granularity);
+        }
+    }
+    
+    /** Adds an activity's emissions to every granularity. */
+    public void add(long timestamp, EmissionSource source, double kgCO2) {
+        for (Level level : levels) {
+            level.bucketFor(timestamp).add(source.ordinal(), kgCO2);
+        }
+    }
+    
+    /**
+     * Changes the emissions already counted for an activity by
+     * {@code deltaKg} in every granularity, e.g. after its factor was revised.
+     */
+    public void adjust(long timestamp, EmissionSource source, double deltaKg) {
+        for (Level level : levels) {
+            level.bucketFor(timestamp).totals[source.ordinal()] += deltaKg;
+        }
+    }
+    
+    /** Number of non-empty buckets at a granularity. */
+    public int bucketCount(Granularity granularity) {
+        return levels[granularity.ordinal()].buckets.size();
+    }
+    
+    public boolean isEmpty() {
+        return levels[0].buckets.isEmpty();
+    }
+    
+    /**
+     * Start of the earliest non-empty bucket.
+     *
+     * @throws java.util.NoSuchElementException if the rollup is empty
+     */
+    public long firstBucketStart(Granularity granularity) {
+        return levels[granularity.ordinal()].buckets.firstKey();
+    }
+    
+    /**
+     * Start of the latest non-empty bucket.
+     *
+     * @throws java.util.NoSuchElementException if the rollup is empty
+     */
+    public long lastBucketStart(Granularity granularity) {
+        return levels[granularity.ordinal()].buckets.lastKey();
+    }
+    
+    /**
+     * Total kg CO2 of the buckets that start in {@code [from, to)}, for one
+     * source or, if {@code source} is null, for all sources.
+     */
+    public double sum(Granularity granularity, EmissionSource source, long from, long to) {
+        double total = 0;
+        for (Bucket bucket : levels[granularity.ordinal()].range(from, to).values()) {
+            total += bucket.total(source);
+        }
+        return total;
+    }
+    
+    /**
+     * Bucket totals for the buckets that start in {@code [from, to)}, for one
+     * source or, if {@code source} is null, for all sources. Buckets without
+     * any activity are included as zeros, so the trend has no gaps.
+     */
+    public EmissionTrend trend(Granularity granularity, EmissionSource source, long from, long to) {
+        long first = granularity.bucketStart(from);
+        if (first < from) {
+            first = granularity.nextBucket(first);
+        }
+        int size = 0;
+        for (long start = first; start < to; start = granularity.nextBucket(start)) {
+            size++;
+        }
+        long[] starts = new long[size];
+        double[] totals = new double[size];
+        long[] counts = new long[size];
+        int i = 0;
+        for (long start = first; start < to; start = granularity.nextBucket(start)) {
+            starts[i++] = start;
+        }
+        
+        i = 0;
+        for (Map.Entry<Long, Bucket> entry : levels[granularity.ordinal()].range(first, to).entrySet()) {
+            while (starts[i] < entry.getKey()) {
+                i++;
+            }
+            totals[i] = entry.getValue().total(source);
+            counts[i] = entry.getValue().count(source);
+        }
+        return new EmissionTrend(granularity, starts, totals, counts);
+    }
+    
+    /** Visits the non-empty buckets of a granularity in time order. */
+    public void forEachBucket(Granularity granularity, BucketVisitor visitor) {
+        for (Map.Entry<Long, Bucket> entry : levels[granularity.ordinal()].buckets.entrySet()) {
+            Bucket bucket = entry.getValue();
+            visitor.visit(entry.getKey(), bucket.totals, bucket.counts);
+        }
+    }
+    
+    /**
+     * Adds previously aggregated totals and counts, indexed by source ordinal,
+     * to the bucket starting at {@code bucketStart}.
+     */
+    public void addBucket(Granularity granularity, long bucketStart, double[] totals, long[] counts) {
+        Bucket bucket = levels[granularity.ordinal()].bucketFor(bucketStart);
+        for (int i = 0; i < EmissionSource.COUNT; i++) {
+            bucket.totals[i] += totals[i];
+            bucket.counts[i] += counts[i];
+        }
+    }
+    
+    public void clear() {
+        for (Level level : levels) {
+            level.clear();
+        }
+    }
+    
+    /**
+     * Buckets of one granularity, with a cache of the most recently used one.
+     */
+    private static final class Level {
+        private final Granularity granularity;
+        private final TreeMap<Long, Bucket> buckets = new TreeMap<>();
+        private long cachedStart = Long.MAX_VALUE;
+        private long cachedEnd = Long.MIN_VALUE;
+        private Bucket cached;
+        
+        Level(Granularity granularity) {
+            this.granularity = granularity;
+        }
+        
+        Bucket bucketFor(long timestamp) {
+            if (timestamp >= cachedStart && timestamp < cachedEnd) {
+                return cached;
+            }
+            long start = granularity.bucketStart(timestamp);
+            Bucket bucket = buckets.computeIfAbsent(start, s -> new Bucket());
+            cachedStart = start;
+            cachedEnd = granularity.nextBucket(start);
+            cached = bucket;
+            return bucket;
+        }
+        
+        NavigableMap<Long, Bucket> range(long from, long to) {
+            if (from >= to) {
+                return new TreeMap<>();
+            }
+            return buckets.subMap(from, true, to, false);
+        }
+        
+        void clear() {
+            buckets.clear();
+            cachedStart = Long.MAX_VALUE;
+            cachedEnd = Long.MIN_VALUE;
+            cached = null;
+        }
+    }
+    
+    /**
+     * Per-source totals of one bucket.
+     */
+    private static final class Bucket {
+        private final double[] totals = new double[EmissionSource.COUNT];
+        private final long[] counts = new long[EmissionSource.COUNT];
+        
+        void add(int ordinal, double kgCO2) {
+            totals[ordinal] += kgCO2;
+            counts[ordinal]++;
+        }
+        
+        double total(EmissionSource source) {
+            if (source != null) {
+                return totals[source.ordinal()];
+            }
+            double total = 0;
+            for (double sourceTotal : totals) {
+                total += sourceTotal;
+            }
+            return total;
+        }
+        
+        long count(EmissionSource source) {
+            if (source != null) {
+                return counts[source.ordinal()];
+            }
+            long count = 0;
+            for (long sourceCount : counts) {
+                count += sourceCount;
+            }
+            return count;
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package com.carbontracker.model;
+
+/**
+ * Receives every activity recorded by an {@link EmissionCalculator},
+ * e.g. to persist it.
+ */
+public interface EmissionSink {
+    
+    void record(long timestamp, EmissionSource source, double quantity, double factor, double kgCO2);
+    
+    /** Called when the calculator is reset; sinks should drop their data. */
+    default void reset() {
+    }
+}
@@ -0,0 +1,72 @@
+package com.carbontracker.model;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Immutable copy of the per-source totals and counts.
+ * Category and grand totals are derived from the same values, so they always
+ * add up to the breakdown. A plain calculator's snapshot is taken at one point
+ * in time; see {@link ConcurrentEmissionCalculator#snapshot()} for what a
+ * snapshot taken during concurrent adds contains.
+ */
+public final class EmissionSnapshot {
+    
+    private final double[] sourceTotals;
+    private final long[] sourceCounts;
+    
+    EmissionSnapshot(double[] sourceTotals, long[] sourceCounts) {
+        this.sourceTotals = sourceTotals;
+        this.sourceCounts = sourceCounts;
+    }
+    
+    public double getSourceTotal(EmissionSource source) {
+        return sourceTotals[source.ordinal()];
+    }
+    
+    public long getSourceCount(EmissionSource source) {
+        return sourceCounts[source.ordinal()];
+    }
+    
+    public double getCategoryTotal(EmissionCategory category) {
+        double total = 0;
+        for (EmissionSource source : EmissionSource.values()) {
+            if (source.getCategory() == category) {
+                total += sourceTotals[source.ordinal()];
+            }
+        }
+        return total;
+    }
+    
+    public double getTotal() {
+        double total = 0;
+        for (double sourceTotal : sourceTotals) {
+            total += sourceTotal;
+        }
+        return total;
+    }
+    
+    /** Number of activities across all sources. */
+    public long getCount() {
+        long count = 0;
+        for (long sourceCount : sourceCounts) {
+            count += sourceCount;
+        }
+        return count;
+    }
+    
+    /**
+     * Breakdown of a category keyed by {@link EmissionSource#getKey()},
+     * limited to sources with at least one recorded activity.
+     */
+    public Map<String, Double> getBreakdown(EmissionCategory category) {
+        Map<String, Double> breakdown = new HashMap<>();
+        for (EmissionSource source : EmissionSource.values()) {
+            int ordinal = source.ordinal();
+            if (source.getCategory() == category && sourceCounts[ordinal] > 0) {
+                breakdown.put(source.getKey(), sourceTotals[ordinal]);
+            }
+        }
+        return breakdown;
+    }
+}
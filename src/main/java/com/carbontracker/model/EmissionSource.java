@@ -0,0 +1,103 @@
+package com.carbontracker.model;
+
+/**
+ * Individual emission sources, each with its category, breakdown key,
+ * default emission factor (kg CO2 per unit) and the label, icon, unit and
+ * colour the views present it with.
+ */
+public enum EmissionSource {
+    CAR("car", EmissionCategory.TRANSPORT, EmissionCalculator.CAR_EMISSION_FACTOR, "Car", "🚗", "km", "#ef4444"),
+    BUS("bus", EmissionCategory.TRANSPORT, EmissionCalculator.BUS_EMISSION_FACTOR, "Bus", "🚌", "km", "#10b981"),
+    TRAIN("train", EmissionCategory.TRANSPORT, EmissionCalculator.TRAIN_EMISSION_FACTOR, "Train", "🚆", "km", "#3b82f6"),
+    FLIGHT("flight", EmissionCategory.TRANSPORT, EmissionCalculator.FLIGHT_EMISSION_FACTOR, "Flight", "✈️", "km", "#8b5cf6"),
+    
+    ELECTRICITY("electricity", EmissionCategory.ENERGY, EmissionCalculator.ELECTRICITY_EMISSION_FACTOR,
+        "Electricity", "💡", "kWh", "#f59e0b"),
+    NATURAL_GAS("naturalGas", EmissionCategory.ENERGY, EmissionCalculator.NATURAL_GAS_EMISSION_FACTOR,
+        "Natural Gas", "🔥", "therms", "#ec4899"),
+    HEATING_OIL("heatingOil", EmissionCategory.ENERGY, EmissionCalculator.HEATING_OIL_EMISSION_FACTOR,
+        "Heating Oil", "🛢️", "liters", "#14b8a6"),
+    
+    BEEF("beef", EmissionCategory.FOOD, EmissionCalculator.BEEF_EMISSION_FACTOR, "Beef", "🥩", "kg", "#b91c1c"),
+    PORK("pork", EmissionCategory.FOOD, EmissionCalculator.PORK_EMISSION_FACTOR, "Pork", "🥓", "kg", "#f97316"),
+    CHICKEN("chicken", EmissionCategory.FOOD, EmissionCalculator.CHICKEN_EMISSION_FACTOR, "Chicken", "🍗", "kg", "#eab308"),
+    VEGETARIAN("vegetarian", EmissionCategory.FOOD, EmissionCalculator.VEGETARIAN_EMISSION_FACTOR,
+        "Vegetarian Meals", "🥗", "meals", "#22c55e");
+    
+    private static final EmissionSource[] VALUES = values();
+    
+    public static final int COUNT = VALUES.length;
+    
+    private final String key;
+    private final EmissionCategory category;
+    private final double defaultFactor;
+    private final String label;
+    private final String icon;
+    private final String unit;
+    private final String color;
+    
+    EmissionSource(String key, EmissionCategory category, double defaultFactor,
+                   String label, String icon, String unit, String color) {
+        this.key = key;
+        this.category = category;
+        this.defaultFactor = defaultFactor;
+        this.label = label;
+        this.icon = icon;
+        this.unit = unit;
+        this.color = color;
+    }
+    
+    /** Key used in the breakdown maps, e.g. "naturalGas". */
+    public String getKey() {
+        return key;
+    }
+    
+    public EmissionCategory getCategory() {
+        return category;
+    }
+    
+    public double getDefaultFactor() {
+        return defaultFactor;
+    }
+    
+    public String getLabel() {
+        return label;
+    }
+    
+    public String getIcon() {
+        return icon;
+    }
+    
+    /** Unit of the activity quantity, e.g. "km" or "kWh". */
+    public String getUnit() {
+        return unit;
+    }
+    
+    /** Chart colour as a CSS hex string. */
+    public String getColor() {
+        return color;
+    }
+    
+    /** Icon and label, e.g. "🚗 Car". */
+    public String getDisplayName() {
+        return icon + " " + label;
+    }
+    
+    public static EmissionSource byOrdinal(int ordinal) {
+        return VALUES[ordinal];
+    }
+    
+    /**
+     * Looks up a source by its breakdown key.
+     *
+     * @return the matching source, or null if the key is unknown
+     */
+    public static EmissionSource fromKey(String key) {
+        for (EmissionSource source : VALUES) {
+            if (source.key.equals(key)) {
+                return source;
+            }
+        }
+        return null;
+    }
+}
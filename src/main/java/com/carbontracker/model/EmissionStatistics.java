@@ -0,0 +1,200 @@
+package com.carbontracker.model;
+
+/**
+ * Per-source distribution of activity quantities and kg CO2: a
+ * {@link RunningStats} for count, mean and spread and a {@link LogHistogram}
+ * for quantiles, so questions like "median car trip" or "p95 electricity
+ * reading" are answered without touching the history.
+ * <p>
+ * Register an instance as a sink to follow a calculator, feed it replayed
+ * history through {@link #record}, and {@link #merge} instances kept per
+ * thread or per profile into one. Memory is fixed at about 25 KB per source.
+ * Each source is guarded by its own lock, so recorders of different sources
+ * never contend; reads return copies.
+ */
+public class EmissionStatistics implements EmissionSink {
+    
+    /** Which value of an activity a distribution describes. */
+    public enum Metric {
+        QUANTITY, KG_CO2
+    }
+    
+    /** Point-in-time summary of one distribution. */
+    public static final class Summary {
+        private final long count;
+        private final double mean;
+        private final double standardDeviation;
+        private final double min;
+        private final double max;
+        private final double median;
+        private final double p90;
+        private final double p95;
+        private final double p99;
+        
+        Summary(RunningStats stats, LogHistogram histogram) {
+            this.count = stats.getCount();
+            this.mean = stats.getMean();
+            this.standardDeviation = stats.getStandardDeviation();
+            this.min = stats.getMin();
+            this.max = stats.getMax();
+            // The sketch's bucket midpoints can lie just outside the exact range
+            this.median = clamp(histogram.quantile(0.5));
+            this.p90 = clamp(histogram.quantile(0.9));
+            this.p95 = clamp(histogram.quantile(0.95));
+            this.p99 = clamp(histogram.quantile(0.99));
+        }
+        
+        private double clamp(double value) {
+            return count == 0 ? Double.NaN : Math.max(min, Math.min(max, value));
+        }
+        
+        public long getCount() {
+            return count;
+        }
+        
+        public double getMean() {
+            return mean;
+        }
+        
+        public double getStandardDeviation() {
+            return standardDeviation;
+        }
+        
+        public double getMin() {
+            return min;
+        }
+        
+        public double getMax() {
+            return max;
+        }
+        
+        public double getMedian() {
+            return median;
+        }
+        
+        public double getP90() {
+            return p90;
+        }
+        
+        public double getP95() {
+            return p95;
+        }
+        
+        public double getP99() {
+            return p99;
+        }
+    }
+    
+    private static final int METRICS = Metric.values().length;
+    
+    private final SourceStatistics[] sources = new SourceStatistics[EmissionSource.COUNT];
+    
+    public EmissionStatistics() {
+        for (int i = 0; i < sources.length; i++) {
+            sources[i] = new SourceStatistics();
+        }
+    }
+    
+    @Override
+    public void record(long timestamp, EmissionSource source, double quantity, double factor, double kgCO2) {
+        SourceStatistics statistics = sources[source.ordinal()];
+        synchronized (statistics) {
+            statistics.add(Metric.QUANTITY, quantity);
+            statistics.add(Metric.KG_CO2, kgCO2);
+        }
+    }
+    
+    @Override
+    public void reset() {
+        for (SourceStatistics statistics : sources) {
+            synchronized (statistics) {
+                statistics.clear();
+            }
+        }
+    }
+    
+    /** Adds everything {@code other} has seen to this instance. */
+    public void merge(EmissionStatistics other) {
+        for (int i = 0; i < sources.length; i++) {
+            SourceStatistics copy;
+            synchronized (other.sources[i]) {
+                copy = other.sources[i].copy();
+            }
+            synchronized (sources[i]) {
+                sources[i].merge(copy);
+            }
+        }
+    }
+    
+    /** Number of activities seen for a source. */
+    public long getCount(EmissionSource source) {
+        SourceStatistics statistics = sources[source.ordinal()];
+        synchronized (statistics) {
+            return statistics.stats[0].getCount();
+        }
+    }
+    
+    /** Copy of the running moments of one distribution. */
+    public RunningStats getStats(EmissionSource source, Metric metric) {
+        SourceStatistics statistics = sources[source.ordinal()];
+        synchronized (statistics) {
+            return statistics.stats[metric.ordinal()].copy();
+        }
+    }
+    
+    /** Value at quantile {@code q} of one distribution, or NaN if it is empty. */
+    public double getQuantile(EmissionSource source, Metric metric, double q) {
+        SourceStatistics statistics = sources[source.ordinal()];
+        synchronized (statistics) {
+            return statistics.histograms[metric.ordinal()].quantile(q);
+        }
+    }
+    
+    public Summary summarize(EmissionSource source, Metric metric) {
+        SourceStatistics statistics = sources[source.ordinal()];
+        synchronized (statistics) {
+            return new Summary(statistics.stats[metric.ordinal()], statistics.histograms[metric.ordinal()]);
+        }
+    }
+    
+    /**
+     * Moments and sketches of one source, one of each per metric. Guarded by
+     * its own monitor.
+     */
+    private static final class SourceStatistics {
+        private final RunningStats[] stats = new RunningStats[METRICS];
+        private final LogHistogram[] histograms = new LogHistogram[METRICS];
+        
+        SourceStatistics() {
+            for (int m = 0; m < METRICS; m++) {
+                stats[m] = new RunningStats();
+                histograms[m] = new LogHistogram();
+            }
+        }
+        
+        void add(Metric metric, double value) {
+            stats[metric.ordinal()].add(value);
+            histograms[metric.ordinal()].add(value);
+        }
+        
+        void merge(SourceStatistics other) {
+            for (int m = 0; m < METRICS; m++) {
+                stats[m].merge(other.stats[m]);
+                histograms[m].merge(other.histograms[m]);
+            }
+        }
+        
+        SourceStatistics copy() {
+            SourceStatistics copy = new SourceStatistics();
+            copy.merge(this);
+            return copy;
+        }
+        
+        void clear() {
+            for (int m = 0; m < METRICS; m++) {
+                stats[m].clear();
+                histograms[m].clear();
+            }
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.carbontracker.model;
+
+/**
+ * Immutable series of consecutive bucket totals, as returned by
+ * {@link EmissionRollup#trend}. Long series can be reduced to a plottable
+ * number of points with {@link #downsample(int)}.
+ */
+public final class EmissionTrend {
+    
+    private final EmissionRollup.Granularity granularity;
+    private final long[] bucketStarts;
+    private final double[] totals;
+    private final long[] counts;
+    
+    EmissionTrend(EmissionRollup.Granularity granularity, long[] bucketStarts, double[] totals, long[] counts) {
+        this.granularity = granularity;
+        this.bucketStarts = bucketStarts;
+        this.totals = totals;
+        this.counts = counts;
+    }
+    
+    public EmissionRollup.Granularity getGranularity() {
+        return granularity;
+    }
+    
+    public int size() {
+        return bucketStarts.length;
+    }
+    
+    /** Start of bucket {@code i} (epoch millis, UTC). */
+    public long getBucketStart(int i) {
+        return bucketStarts[i];
+    }
+    
+    /** Total kg CO2 of bucket {@code i}. */
+    public double getTotal(int i) {
+        return totals[i];
+    }
+    
+    /** Number of activities in bucket {@code i}. */
+    public long getCount(int i) {
+        return counts[i];
+    }
+    
+    /** Total kg CO2 over all buckets. */
+    public double getTotal() {
+        double total = 0;
+        for (double bucketTotal : totals) {
+            total += bucketTotal;
+        }
+        return total;
+    }
+    
+    /**
+     * Picks at most {@code maxPoints} buckets that preserve the visual shape of
+     * the series, using Largest-Triangle-Three-Buckets: the first and last
+     * points are kept, and from each of the remaining equal-width groups the
+     * point forming the largest triangle with the previously chosen point and
+     * the average of the next group. Peaks and dips therefore survive, unlike
+     * plain averaging or striding. Returns this trend if it is already small
+     * enough.
+     */
+    public EmissionTrend downsample(int maxPoints) {
+        int n = bucketStarts.length;
+        if (maxPoints >= n || maxPoints < 3) {
+            return this;
+        }
+        int[] picked = new int[maxPoints];
+        double groupSize = (double) (n - 2) / (maxPoints - 2);
+        long origin = bucketStarts[0];
+        int a = 0;
+        for (int i = 0; i < maxPoints - 2; i++) {
+            // Average of the next group is the third triangle vertex
+            int nextStart = (int) ((i + 1) * groupSize) + 1;
+            int nextEnd = Math.min((int) ((i + 2) * groupSize) + 1, n);
+            double avgX = 0;
+            double avgY = 0;
+            for (int j = nextStart; j < nextEnd; j++) {
+                avgX += bucketStarts[j] - origin;
+                avgY += totals[j];
+            }
+            int nextCount = nextEnd - nextStart;
+            avgX /= nextCount;
+            avgY /= nextCount;
+            
+            double ax = bucketStarts[a] - origin;
+            double ay = totals[a];
+            int groupStart = (int) (i * groupSize) + 1;
+            int groupEnd = (int) ((i + 1) * groupSize) + 1;
+            double maxArea = -1;
+            int chosen = groupStart;
+            for (int j = groupStart; j < groupEnd; j++) {
+                double area = Math.abs((ax - avgX) * (totals[j] - ay) - (ax - (bucketStarts[j] - origin)) * (avgY - ay));
+                if (area > maxArea) {
+                    maxArea = area;
+                    chosen = j;
+                }
+            }
+            picked[i + 1] = chosen;
+            a = chosen;
+        }
+        picked[maxPoints - 1] = n - 1;
+        
+        long[] starts = new long[maxPoints];
+        double[] pickedTotals = new double[maxPoints];
+        long[] pickedCounts = new long[maxPoints];
+        for (int i = 0; i < maxPoints; i++) {
+            starts[i] = bucketStarts[picked[i]];
+            pickedTotals[i] = totals[picked[i]];
+            pickedCounts[i] = counts[picked[i]];
+        }
+        return new EmissionTrend(granularity, starts, pickedTotals, pickedCounts);
+    }
+}
@@ -0,0 +1,141 @@
+package com.carbontracker.model;
+
+import java.util.Arrays;
+
+/**
+ * Mergeable quantile sketch with a bounded relative error, in the style of
+ * DDSketch and HDR histograms.
+ * <p>
+ * Positive values are counted in logarithmic buckets whose bounds grow by a
+ * factor {@code gamma = (1 + accuracy) / (1 - accuracy)}, so any quantile is
+ * answered within {@code accuracy} of the true value's magnitude. The bucket
+ * array covers {@code [minTrackable, maxTrackable]} and is allocated once:
+ * about 1,400 longs for the default 1% accuracy over 10<sup>-4</sup> to
+ * 10<sup>8</sup>. Smaller values, including zero, share one bucket reported
+ * as 0, larger ones are clamped into the last bucket. Adds and merges are
+ * O(1) and O(buckets); a quantile query walks the buckets once and never
+ * looks at the values themselves. Not thread-safe.
+ */
+public final class LogHistogram {
+    
+    public static final double DEFAULT_ACCURACY = 0.01;
+    public static final double DEFAULT_MIN_TRACKABLE = 1e-4;
+    public static final double DEFAULT_MAX_TRACKABLE = 1e8;
+    
+    private final double accuracy;
+    private final double minTrackable;
+    private final double gamma;
+    private final double logGamma;
+    private final int minIndex;
+    private final long[] counts;
+    private long zeroCount;
+    private long totalCount;
+    
+    public LogHistogram() {
+        this(DEFAULT_ACCURACY, DEFAULT_MIN_TRACKABLE, DEFAULT_MAX_TRACKABLE);
+    }
+    
+    /**
+     * @param accuracy relative error of quantiles, between 0 and 1 exclusive
+     * @param minTrackable smallest value given its own bucket
+     * @param maxTrackable largest value given its own bucket
+     */
+    public LogHistogram(double accuracy, double minTrackable, double maxTrackable) {
+        if (!(accuracy > 0 && accuracy < 1) || !(minTrackable > 0) || !(maxTrackable > minTrackable)) {
+            throw new IllegalArgumentException("need 0 < accuracy < 1 and 0 < minTrackable < maxTrackable");
+        }
+        this.accuracy = accuracy;
+        this.minTrackable = minTrackable;
+        this.gamma = (1 + accuracy) / (1 - accuracy);
+        this.logGamma = Math.log(gamma);
+        this.minIndex = rawIndex(minTrackable);
+        this.counts = new long[rawIndex(maxTrackable) - minIndex + 1];
+    }
+    
+    private LogHistogram(LogHistogram template) {
+        this.accuracy = template.accuracy;
+        this.minTrackable = template.minTrackable;
+        this.gamma = template.gamma;
+        this.logGamma = template.logGamma;
+        this.minIndex = template.minIndex;
+        this.counts = template.counts.clone();
+        this.zeroCount = template.zeroCount;
+        this.totalCount = template.totalCount;
+    }
+    
+    private int rawIndex(double value) {
+        return (int) Math.ceil(Math.log(value) / logGamma);
+    }
+    
+    /** Counts a value; NaN is ignored and negative values count as zero. */
+    public void add(double value) {
+        if (value >= minTrackable) {
+            int index = Math.min(rawIndex(value) - minIndex, counts.length - 1);
+            counts[index]++;
+        } else if (value == value) {
+            zeroCount++;
+        } else {
+            return;
+        }
+        totalCount++;
+    }
+    
+    /**
+     * Adds every value counted by {@code other}, which must have been
+     * created with the same parameters.
+     */
+    public void merge(LogHistogram other) {
+        if (other.counts.length != counts.length || other.gamma != gamma || other.minIndex != minIndex) {
+            throw new IllegalArgumentException("histograms have different bucket layouts");
+        }
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] += other.counts[i];
+        }
+        zeroCount += other.zeroCount;
+        totalCount += other.totalCount;
+    }
+    
+    public LogHistogram copy() {
+        return new LogHistogram(this);
+    }
+    
+    public void clear() {
+        Arrays.fill(counts, 0L);
+        zeroCount = 0;
+        totalCount = 0;
+    }
+    
+    public long getCount() {
+        return totalCount;
+    }
+    
+    public double getAccuracy() {
+        return accuracy;
+    }
+    
+    /**
+     * Value at quantile {@code q} (0 = minimum, 0.5 = median, 1 = maximum),
+     * within the relative accuracy, or NaN if nothing was added.
+     */
+    public double quantile(double q) {
+        if (totalCount == 0) {
+            return Double.NaN;
+        }
+        if (!(q >= 0 && q <= 1)) {
+            throw new IllegalArgumentException("quantile must be between 0 and 1");
+        }
+        long rank = (long) (q * (totalCount - 1));
+        if (rank < zeroCount) {
+            return 0;
+        }
+        long seen = zeroCount;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen > rank) {
+                // Point in the bucket (gamma^(k-1), gamma^k] with equal relative error to both bounds
+                return 2 * Math.pow(gamma, i + minIndex) / (gamma + 1);
+            }
+        }
+        return 2 * Math.pow(gamma, counts.length - 1 + minIndex) / (gamma + 1);
+    }
+}
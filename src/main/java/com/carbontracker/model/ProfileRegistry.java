@@ -0,0 +1,390 @@
+package com.carbontracker.model;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Many independent emission profiles (users, sites, vehicles, ...) in one JVM.
+ * <p>
+ * Every profile's per-source totals and counts live in two flat primitive
+ * arrays indexed by {@code profile * EmissionSource.COUNT + source}, so a
+ * profile costs about 180 bytes plus its id and 100k profiles fit in a few
+ * tens of megabytes. Full calculators with ledger history and rollups are
+ * only materialized for profiles that are opened with
+ * {@link #getCalculator(String)}, and at most {@code maxActive} of them are
+ * kept; the least recently used one is dropped when another is opened. A
+ * {@link ProfileSink} receives every activity recorded through the registry,
+ * so that a {@link HistoryLoader} can restore a profile's history when it is
+ * opened again. Without them, an opened calculator only sees activities
+ * recorded while it stays open, while the registry totals are always
+ * complete.
+ * <p>
+ * Methods are synchronized, so several threads may record into the registry.
+ * History is loaded outside the lock; activities recorded for a profile while
+ * it loads are held back and passed to the sink and the calculator once the
+ * load is done, so the loader never races with writes for that profile.
+ */
+public class ProfileRegistry {
+    
+    /**
+     * Restores the recorded history of a profile into a freshly created
+     * calculator, e.g. by replaying a store.
+     */
+    @FunctionalInterface
+    public interface HistoryLoader {
+        void load(String profileId, EmissionCalculator calculator) throws IOException;
+    }
+    
+    /**
+     * Receives every activity recorded through the registry, e.g. to persist
+     * it per profile for a {@link HistoryLoader}.
+     */
+    public interface ProfileSink {
+        
+        void record(String profileId, long timestamp, EmissionSource source, double quantity, double factor, double kgCO2);
+        
+        /** Called when a profile is reset; sinks should drop its data. */
+        default void reset(String profileId) {
+        }
+    }
+    
+    /** A profile whose history is being loaded, and what was recorded for it meanwhile. */
+    private static final class Loading {
+        final CompletableFuture<EmissionCalculator> calculator = new CompletableFuture<>();
+        final List<Activity> pending = new ArrayList<>();
+        boolean reset;
+    }
+    
+    private static final class Activity {
+        final long timestamp;
+        final EmissionSource source;
+        final double quantity;
+        final double factor;
+        final double kgCO2;
+        
+        Activity(long timestamp, EmissionSource source, double quantity, double factor, double kgCO2) {
+            this.timestamp = timestamp;
+            this.source = source;
+            this.quantity = quantity;
+            this.factor = factor;
+            this.kgCO2 = kgCO2;
+        }
+    }
+    
+    private static final int INITIAL_CAPACITY = 64;
+    
+    private final EmissionFactorRegistry factorRegistry;
+    private final HistoryLoader historyLoader;
+    private final ProfileSink sink;
+    private final int maxActive;
+    private final Map<String, Integer> indexes = new HashMap<>();
+    private final List<String> ids = new ArrayList<>();
+    private final Map<Integer, EmissionCalculator> active;
+    private final Map<Integer, Loading> loading = new HashMap<>();
+    private double[] totals = new double[INITIAL_CAPACITY * EmissionSource.COUNT];
+    private long[] counts = new long[INITIAL_CAPACITY * EmissionSource.COUNT];
+    private String region = EmissionFactorTable.DEFAULT_REGION;
+    
+    public ProfileRegistry() {
+        this(new EmissionFactorRegistry(), 64, null, null);
+    }
+    
+    public ProfileRegistry(EmissionFactorRegistry factorRegistry, int maxActive, HistoryLoader historyLoader) {
+        this(factorRegistry, maxActive, historyLoader, null);
+    }
+    
+    /**
+     * @param factorRegistry emission factors shared by all profiles
+     * @param maxActive maximum number of materialized calculators
+     * @param historyLoader restores history when a profile is opened, or null
+     * @param sink receives every recorded activity, or null
+     */
+    public ProfileRegistry(EmissionFactorRegistry factorRegistry, int maxActive,
+                           HistoryLoader historyLoader, ProfileSink sink) {
+        if (maxActive < 1) {
+            throw new IllegalArgumentException("maxActive must be positive");
+        }
+        this.factorRegistry = factorRegistry;
+        this.maxActive = maxActive;
+        this.historyLoader = historyLoader;
+        this.sink = sink;
+        this.active = new LinkedHashMap<Integer, EmissionCalculator>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, EmissionCalculator> eldest) {
+                return size() > ProfileRegistry.this.maxActive;
+            }
+        };
+    }
+    
+    /** Selects the region whose emission factors apply to new activities. */
+    public synchronized void setRegion(String region) {
+        this.region = region;
+    }
+    
+    /**
+     * Index of a profile, registering it if it is new. Indexes are dense and
+     * stable, so hot ingest paths can resolve an id once and then record by
+     * index.
+     */
+    public synchronized int profileIndex(String profileId) {
+        Integer index = indexes.get(profileId);
+        if (index != null) {
+            return index;
+        }
+        int created = ids.size();
+        ensureCapacity(created + 1);
+        ids.add(profileId);
+        indexes.put(profileId, created);
+        return created;
+    }
+    
+    /** Index of a registered profile, or -1. */
+    public synchronized int indexOf(String profileId) {
+        Integer index = indexes.get(profileId);
+        return index != null ? index : -1;
+    }
+    
+    public synchronized String getProfileId(int index) {
+        return ids.get(index);
+    }
+    
+    /** Number of registered profiles. */
+    public synchronized int size() {
+        return ids.size();
+    }
+    
+    public void addEmission(String profileId, EmissionSource source, double quantity, long timestamp) {
+        addEmission(profileIndex(profileId), source, quantity, timestamp);
+    }
+    
+    /**
+     * Records an activity for the profile at {@code index}, converting the
+     * quantity with the factor in effect at {@code timestamp}.
+     */
+    public synchronized void addEmission(int index, EmissionSource source, double quantity, long timestamp) {
+        checkIndex(index);
+        double factor = factorRegistry.getFactor(region, source, timestamp);
+        double kgCO2 = quantity * factor;
+        int cell = index * EmissionSource.COUNT + source.ordinal();
+        totals[cell] += kgCO2;
+        counts[cell]++;
+        
+        Loading load = loading.get(index);
+        if (load != null) {
+            load.pending.add(new Activity(timestamp, source, quantity, factor, kgCO2));
+        } else {
+            deliver(index, active.get(index), timestamp, source, quantity, factor, kgCO2);
+        }
+    }
+    
+    /** Passes an activity to the sink and, if open, the profile's calculator. */
+    private void deliver(int index, EmissionCalculator calculator,
+                         long timestamp, EmissionSource source, double quantity, double factor, double kgCO2) {
+        if (sink != null) {
+            sink.record(ids.get(index), timestamp, source, quantity, factor, kgCO2);
+        }
+        if (calculator != null) {
+            // The sink above persists the activity, so the calculator must not forward it again
+            calculator.replay(timestamp, source, quantity, factor, kgCO2);
+        }
+    }
+    
+    public synchronized double getSourceTotal(int index, EmissionSource source) {
+        checkIndex(index);
+        return totals[index * EmissionSource.COUNT + source.ordinal()];
+    }
+    
+    public synchronized double getTotal(int index) {
+        checkIndex(index);
+        double total = 0;
+        int base = index * EmissionSource.COUNT;
+        for (int i = 0; i < EmissionSource.COUNT; i++) {
+            total += totals[base + i];
+        }
+        return total;
+    }
+    
+    /** Copies the totals and counts of one profile. */
+    public synchronized EmissionSnapshot snapshot(int index) {
+        checkIndex(index);
+        int base = index * EmissionSource.COUNT;
+        return new EmissionSnapshot(
+            Arrays.copyOfRange(totals, base, base + EmissionSource.COUNT),
+            Arrays.copyOfRange(counts, base, base + EmissionSource.COUNT));
+    }
+    
+    /** Totals and counts summed over every profile. */
+    public synchronized EmissionSnapshot aggregate() {
+        double[] sumTotals = new double[EmissionSource.COUNT];
+        long[] sumCounts = new long[EmissionSource.COUNT];
+        int cells = ids.size() * EmissionSource.COUNT;
+        for (int cell = 0; cell < cells; cell += EmissionSource.COUNT) {
+            for (int i = 0; i < EmissionSource.COUNT; i++) {
+                sumTotals[i] += totals[cell + i];
+                sumCounts[i] += counts[cell + i];
+            }
+        }
+        return new EmissionSnapshot(sumTotals, sumCounts);
+    }
+    
+    /** Totals and counts summed over a group of profiles; unknown ids are skipped. */
+    public synchronized EmissionSnapshot aggregate(Collection<String> profileIds) {
+        double[] sumTotals = new double[EmissionSource.COUNT];
+        long[] sumCounts = new long[EmissionSource.COUNT];
+        for (String profileId : profileIds) {
+            Integer index = indexes.get(profileId);
+            if (index == null) {
+                continue;
+            }
+            int base = index * EmissionSource.COUNT;
+            for (int i = 0; i < EmissionSource.COUNT; i++) {
+                sumTotals[i] += totals[base + i];
+                sumCounts[i] += counts[base + i];
+            }
+        }
+        return new EmissionSnapshot(sumTotals, sumCounts);
+    }
+    
+    /**
+     * Indexes of the {@code limit} profiles with the highest emissions for a
+     * source, or overall if {@code source} is null, highest first.
+     */
+    public synchronized int[] topProfiles(EmissionSource source, int limit) {
+        // Min-heap of the best candidates seen so far
+        PriorityQueue<double[]> heap = new PriorityQueue<>(Math.max(1, limit), (a, b) -> Double.compare(a[0], b[0]));
+        for (int index = 0; index < ids.size() && limit > 0; index++) {
+            double value = source != null ? totals[index * EmissionSource.COUNT + source.ordinal()] : getTotal(index);
+            if (heap.size() < limit) {
+                heap.add(new double[] {value, index});
+            } else if (value > heap.peek()[0]) {
+                heap.poll();
+                heap.add(new double[] {value, index});
+            }
+        }
+        int[] top = new int[heap.size()];
+        for (int i = top.length - 1; i >= 0; i--) {
+            top[i] = (int) heap.poll()[1];
+        }
+        return top;
+    }
+    
+    /**
+     * Full calculator for a profile, materializing it if needed. The
+     * calculator is owned by the registry: record through the registry so
+     * its totals stay in step, and do not keep the reference past the next
+     * call that may evict it. The history is loaded without holding the
+     * registry lock; concurrent calls for the same profile wait for that
+     * one load.
+     */
+    public EmissionCalculator getCalculator(String profileId) throws IOException {
+        int index;
+        Loading load;
+        EmissionCalculator calculator;
+        synchronized (this) {
+            index = profileIndex(profileId);
+            calculator = active.get(index);
+            if (calculator != null) {
+                return calculator;
+            }
+            load = loading.get(index);
+            if (load == null) {
+                load = new Loading();
+                loading.put(index, load);
+                calculator = new EmissionCalculator();
+                calculator.setFactorRegistry(factorRegistry);
+                calculator.setRegion(region);
+            }
+        }
+        if (calculator == null) {
+            return await(load);
+        }
+        
+        try {
+            if (historyLoader != null) {
+                historyLoader.load(profileId, calculator);
+            }
+        } catch (IOException | RuntimeException e) {
+            finishLoading(index, load, null);
+            load.calculator.completeExceptionally(e);
+            throw e;
+        }
+        finishLoading(index, load, calculator);
+        load.calculator.complete(calculator);
+        return calculator;
+    }
+    
+    /**
+     * Publishes a loaded calculator, or none if loading failed, and passes on
+     * what was recorded for the profile in the meantime.
+     */
+    private synchronized void finishLoading(int index, Loading load, EmissionCalculator calculator) {
+        loading.remove(index);
+        if (calculator != null && load.reset) {
+            calculator.reset();
+        }
+        for (Activity activity : load.pending) {
+            deliver(index, calculator, activity.timestamp, activity.source,
+                activity.quantity, activity.factor, activity.kgCO2);
+        }
+        if (calculator != null) {
+            active.put(index, calculator);
+        }
+    }
+    
+    private static EmissionCalculator await(Loading load) throws IOException {
+        try {
+            return load.calculator.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw (RuntimeException) e.getCause();
+        }
+    }
+    
+    /** Number of currently materialized calculators. */
+    public synchronized int activeCount() {
+        return active.size();
+    }
+    
+    /** Clears the totals of one profile and drops its calculator. */
+    public synchronized void reset(int index) {
+        checkIndex(index);
+        int base = index * EmissionSource.COUNT;
+        Arrays.fill(totals, base, base + EmissionSource.COUNT, 0.0);
+        Arrays.fill(counts, base, base + EmissionSource.COUNT, 0L);
+        active.remove(index);
+        Loading load = loading.get(index);
+        if (load != null) {
+            load.pending.clear();
+            load.reset = true;
+        }
+        if (sink != null) {
+            sink.reset(ids.get(index));
+        }
+    }
+    
+    private void ensureCapacity(int profiles) {
+        int needed = profiles * EmissionSource.COUNT;
+        if (needed > totals.length) {
+            int capacity = Math.max(needed, totals.length * 2);
+            totals = Arrays.copyOf(totals, capacity);
+            counts = Arrays.copyOf(counts, capacity);
+        }
+    }
+    
+    private void checkIndex(int index) {
+        if (index < 0 || index >= ids.size()) {
+            throw new IndexOutOfBoundsException("Profile index " + index + " out of bounds for size " + ids.size());
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.carbontracker.model;
+
+/**
+ * Count, mean, variance, minimum and maximum of a stream of values in
+ * constant memory.
+ * <p>
+ * Values are folded in with Welford's update, which avoids the cancellation
+ * of the naive sum-of-squares formula; {@link #merge} combines two instances
+ * with the pairwise formula of Chan et al., so partial results from several
+ * threads or profiles add up to exactly what one instance seeing every value
+ * would hold, up to rounding. Not thread-safe.
+ */
+public final class RunningStats {
+    
+    private long count;
+    private double mean;
+    private double m2;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+    
+    public void add(double value) {
+        count++;
+        double delta = value - mean;
+        mean += delta / count;
+        m2 += delta * (value - mean);
+        if (value < min) {
+            min = value;
+        }
+        if (value > max) {
+            max = value;
+        }
+    }
+    
+    /** Adds every value seen by {@code other}. */
+    public void merge(RunningStats other) {
+        if (other.count == 0) {
+            return;
+        }
+        if (count == 0) {
+            copyFrom(other);
+            return;
+        }
+        long combined = count + other.count;
+        double delta = other.mean - mean;
+        mean += delta * other.count / combined;
+        m2 += other.m2 + delta * delta * ((double) count * other.count / combined);
+        count = combined;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+    }
+    
+    public RunningStats copy() {
+        RunningStats copy = new RunningStats();
+        copy.copyFrom(this);
+        return copy;
+    }
+    
+    private void copyFrom(RunningStats other) {
+        count = other.count;
+        mean = other.mean;
+        m2 = other.m2;
+        min = other.min;
+        max = other.max;
+    }
+    
+    public void clear() {
+        count = 0;
+        mean = 0;
+        m2 = 0;
+        min = Double.POSITIVE_INFINITY;
+        max = Double.NEGATIVE_INFINITY;
+    }
+    
+    public long getCount() {
+        return count;
+    }
+    
+    /** Mean of the values, or 0 if there are none. */
+    public double getMean() {
+        return mean;
+    }
+    
+    /** Sample variance, or 0 for fewer than two values. */
+    public double getVariance() {
+        return count > 1 ? m2 / (count - 1) : 0;
+    }
+    
+    public double getStandardDeviation() {
+        return Math.sqrt(getVariance());
+    }
+    
+    /** Smallest value, or NaN if there are none. */
+    public double getMin() {
+        return count > 0 ? min : Double.NaN;
+    }
+    
+    /** Largest value, or NaN if there are none. */
+    public double getMax() {
+        return count > 0 ? max : Double.NaN;
+    }
+}
@@ -0,0 +1,149 @@
+package com.carbontracker.model;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Immutable what-if change to recorded activities, evaluated by a
+ * {@link ScenarioSimulator}.
+ * <p>
+ * A scenario is a linear map: each recorded activity's quantity is split
+ * into shares that end up as the same or other sources (shifting car km to
+ * the train, beef to chicken), possibly reduced, and each share is then
+ * priced with its source's factor, which may be overridden or scaled (a
+ * cleaner grid). Changes compose in the order they are applied, e.g.
+ * shifting car km to the train and then halving the train factor also
+ * lowers the shifted km.
+ */
+public final class Scenario {
+    
+    private final String name;
+    /** share[from][to]: fraction of a {@code from} activity's quantity that becomes {@code to}. */
+    private final double[][] share;
+    /** Factor replacing the recorded or current one, or NaN. */
+    private final double[] factorOverride;
+    private final double[] factorScale;
+    
+    private Scenario(String name, double[][] share, double[] factorOverride, double[] factorScale) {
+        this.name = name;
+        this.share = share;
+        this.factorOverride = factorOverride;
+        this.factorScale = factorScale;
+    }
+    
+    /** Scenario that changes nothing yet. */
+    public static Scenario named(String name) {
+        double[][] share = new double[EmissionSource.COUNT][EmissionSource.COUNT];
+        for (int i = 0; i < EmissionSource.COUNT; i++) {
+            share[i][i] = 1;
+        }
+        double[] factorOverride = new double[EmissionSource.COUNT];
+        Arrays.fill(factorOverride, Double.NaN);
+        double[] factorScale = new double[EmissionSource.COUNT];
+        Arrays.fill(factorScale, 1);
+        return new Scenario(name, share, factorOverride, factorScale);
+    }
+    
+    /**
+     * Moves {@code fraction} of the quantity that ends up as {@code from}
+     * to {@code to}, one unit for one unit, e.g. km for km.
+     */
+    public Scenario shift(EmissionSource from, EmissionSource to, double fraction) {
+        checkFraction(fraction);
+        double[][] updated = copyShare();
+        for (double[] row : updated) {
+            double moved = row[from.ordinal()] * fraction;
+            row[from.ordinal()] -= moved;
+            row[to.ordinal()] += moved;
+        }
+        return new Scenario(name, updated, factorOverride, factorScale);
+    }
+    
+    /** Cuts the quantity that ends up as {@code source} by {@code fraction}. */
+    public Scenario reduce(EmissionSource source, double fraction) {
+        checkFraction(fraction);
+        double[][] updated = copyShare();
+        for (double[] row : updated) {
+            row[source.ordinal()] *= 1 - fraction;
+        }
+        return new Scenario(name, updated, factorOverride, factorScale);
+    }
+    
+    /** Prices {@code source} with a fixed factor instead of the recorded one. */
+    public Scenario withFactor(EmissionSource source, double factor) {
+        if (!(factor >= 0) || Double.isInfinite(factor)) {
+            throw new IllegalArgumentException("factor must be a non-negative number");
+        }
+        double[] updated = factorOverride.clone();
+        updated[source.ordinal()] = factor;
+        return new Scenario(name, share, updated, factorScale);
+    }
+    
+    /** Multiplies the factor of {@code source}, e.g. 0.5 for a grid with half the carbon intensity. */
+    public Scenario scaleFactor(EmissionSource source, double multiplier) {
+        if (!(multiplier >= 0) || Double.isInfinite(multiplier)) {
+            throw new IllegalArgumentException("multiplier must be a non-negative number");
+        }
+        double[] updated = factorScale.clone();
+        updated[source.ordinal()] *= multiplier;
+        return new Scenario(name, share, factorOverride, updated);
+    }
+    
+    public String getName() {
+        return name;
+    }
+    
+    /** Whether activities of {@code source} are priced differently under this scenario. */
+    boolean affects(EmissionSource source) {
+        int s = source.ordinal();
+        for (int t = 0; t < EmissionSource.COUNT; t++) {
+            if (share[s][t] != (t == s ? 1 : 0)) {
+                return true;
+            }
+        }
+        return factorOverride[s] == factorOverride[s] || factorScale[s] != 1;
+    }
+    
+    double share(EmissionSource from, EmissionSource to) {
+        return share[from.ordinal()][to.ordinal()];
+    }
+    
+    double factorOverride(EmissionSource source) {
+        return factorOverride[source.ordinal()];
+    }
+    
+    double factorScale(EmissionSource source) {
+        return factorScale[source.ordinal()];
+    }
+    
+    private double[][] copyShare() {
+        double[][] copy = new double[EmissionSource.COUNT][];
+        for (int i = 0; i < EmissionSource.COUNT; i++) {
+            copy[i] = share[i].clone();
+        }
+        return copy;
+    }
+    
+    private static void checkFraction(double fraction) {
+        if (!(fraction >= 0 && fraction <= 1)) {
+            throw new IllegalArgumentException("fraction must be between 0 and 1");
+        }
+    }
+    
+    @Override
+    public String toString() {
+        return name;
+    }
+    
+    /** The everyday changes the dashboard and CLI project savings for. */
+    public static List<Scenario> suggestions() {
+        return List.of(
+            named("Take the bus for half your car km").shift(EmissionSource.CAR, EmissionSource.BUS, 0.5),
+            named("Take the train for half your car km").shift(EmissionSource.CAR, EmissionSource.TRAIN, 0.5),
+            named("Replace a quarter of your flight km by train")
+                .shift(EmissionSource.FLIGHT, EmissionSource.TRAIN, 0.25),
+            named("Swap beef for chicken").shift(EmissionSource.BEEF, EmissionSource.CHICKEN, 1),
+            named("Drive 20% less").reduce(EmissionSource.CAR, 0.2),
+            named("Switch to a 50% cleaner electricity tariff").scaleFactor(EmissionSource.ELECTRICITY, 0.5));
+    }
+}
@@ -0,0 +1,271 @@
+package com.carbontracker.model;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Supplier;
+
+/**
+ * Replays a calculator's recorded activities under {@link Scenario}s and
+ * reports the projected emissions of each next to the recorded ones.
+ * <p>
+ * The ledger is split along its column chunks into fork-join tasks. Each
+ * task reads its entries once and evaluates every scenario on them, so many
+ * scenarios cost about as much memory traffic as one. Activities a scenario
+ * leaves alone just add their recorded kg CO2; shifted shares are priced
+ * with the factor in effect for the target source at the activity's time.
+ * Partial sums are combined in a fixed order, so results do not depend on
+ * scheduling.
+ * <p>
+ * Call {@link #simulate} and {@link #capture} from the thread that
+ * records, or with the ledger locked as {@link ConcurrentEmissionCalculator}
+ * does. To keep recording while a simulation runs, {@link #capture} the
+ * activities and run the returned replay on another thread; it works on an
+ * {@link EmissionLedger.View} and the factor table of the moment it was
+ * captured. Only activities still in the ledger are replayed.
+ */
+public class ScenarioSimulator {
+    
+    /** Projected emissions of one scenario. */
+    public static final class Result {
+        private final Scenario scenario;
+        private final double[] baseline;
+        private final double[] projected;
+        
+        Result(Scenario scenario, double[] baseline, double[] projected) {
+            this.scenario = scenario;
+            this.baseline = baseline;
+            this.projected = projected;
+        }
+        
+        public Scenario getScenario() {
+            return scenario;
+        }
+        
+        /** Recorded kg CO2 of the replayed activities. */
+        public double getBaselineKg() {
+            return sum(baseline);
+        }
+        
+        public double getProjectedKg() {
+            return sum(projected);
+        }
+        
+        public double getBaselineKg(EmissionSource source) {
+            return baseline[source.ordinal()];
+        }
+        
+        /** Projected kg CO2 attributed to {@code source}, including quantities shifted to it. */
+        public double getProjectedKg(EmissionSource source) {
+            return projected[source.ordinal()];
+        }
+        
+        public double getSavingsKg() {
+            return getBaselineKg() - getProjectedKg();
+        }
+        
+        /** Savings as a share of the baseline, or 0 if nothing was recorded. */
+        public double getSavingsFraction() {
+            double total = getBaselineKg();
+            return total > 0 ? getSavingsKg() / total : 0;
+        }
+        
+        private static double sum(double[] values) {
+            double total = 0;
+            for (double value : values) {
+                total += value;
+            }
+            return total;
+        }
+    }
+    
+    private final EmissionCalculator calculator;
+    private final ForkJoinPool pool;
+    
+    /** Simulates on the common fork-join pool. */
+    public ScenarioSimulator(EmissionCalculator calculator) {
+        this(calculator, ForkJoinPool.commonPool());
+    }
+    
+    public ScenarioSimulator(EmissionCalculator calculator, ForkJoinPool pool) {
+        this.calculator = calculator;
+        this.pool = pool;
+    }
+    
+    /** Replays every activity in the ledger under each scenario. */
+    public List<Result> simulate(List<Scenario> scenarios) {
+        return simulate(scenarios, Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+    
+    /** Replays the activities with {@code from <= timestamp < to} under each scenario. */
+    public List<Result> simulate(List<Scenario> scenarios, long from, long to) {
+        return capture(scenarios, from, to).get();
+    }
+    
+    /**
+     * Captures the activities recorded so far and returns a replay of all of
+     * them under each scenario, which may run on any thread.
+     */
+    public Supplier<List<Result>> capture(List<Scenario> scenarios) {
+        return capture(scenarios, Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+    
+    /**
+     * Captures the activities recorded so far and returns a replay of those
+     * with {@code from <= timestamp < to} under each scenario, which may run
+     * on any thread.
+     */
+    public Supplier<List<Result>> capture(List<Scenario> scenarios, long from, long to) {
+        Plan[] plans = new Plan[scenarios.size()];
+        for (int i = 0; i < plans.length; i++) {
+            plans[i] = new Plan(scenarios.get(i));
+        }
+        List<Scenario> captured = List.copyOf(scenarios);
+        EmissionLedger.View entries = calculator.getLedger().view();
+        EmissionFactorTable factors = calculator.getFactorRegistry().getTable();
+        String region = calculator.getRegion();
+        return () -> {
+            double[][] sums = pool.invoke(new ReplayTask(entries, plans, factors, region, from, to,
+                0, entries.size()));
+            List<Result> results = new ArrayList<>(plans.length);
+            for (int i = 0; i < plans.length; i++) {
+                results.add(new Result(captured.get(i), sums[0], sums[i + 1]));
+            }
+            return results;
+        };
+    }
+    
+    /**
+     * A scenario compiled per recorded source: whether it changes anything
+     * and, if so, which sources its quantity ends up as, in what shares.
+     */
+    private static final class Plan {
+        private final boolean[] affected = new boolean[EmissionSource.COUNT];
+        private final int[][] targets = new int[EmissionSource.COUNT][];
+        private final double[][] shares = new double[EmissionSource.COUNT][];
+        private final double[] factorOverride = new double[EmissionSource.COUNT];
+        private final double[] factorScale = new double[EmissionSource.COUNT];
+        
+        Plan(Scenario scenario) {
+            for (EmissionSource from : EmissionSource.values()) {
+                int s = from.ordinal();
+                affected[s] = scenario.affects(from);
+                factorOverride[s] = scenario.factorOverride(from);
+                factorScale[s] = scenario.factorScale(from);
+                int count = 0;
+                for (EmissionSource to : EmissionSource.values()) {
+                    if (scenario.share(from, to) != 0) {
+                        count++;
+                    }
+                }
+                targets[s] = new int[count];
+                shares[s] = new double[count];
+                int next = 0;
+                for (EmissionSource to : EmissionSource.values()) {
+                    if (scenario.share(from, to) != 0) {
+                        targets[s][next] = to.ordinal();
+                        shares[s][next] = scenario.share(from, to);
+                        next++;
+                    }
+                }
+            }
+        }
+    }
+    
+    /**
+     * Sums a range of ledger entries: row 0 holds the recorded kg CO2 per
+     * source, row {@code k + 1} the projection of plan {@code k}.
+     */
+    private static final class ReplayTask extends RecursiveTask<double[][]> {
+        
+        private static final long serialVersionUID = 1L;
+        
+        private final EmissionLedger.View ledger;
+        private final Plan[] plans;
+        private final EmissionFactorTable factors;
+        private final String region;
+        private final long from;
+        private final long to;
+        private final int start;
+        private final int end;
+        
+        ReplayTask(EmissionLedger.View ledger, Plan[] plans, EmissionFactorTable factors, String region,
+                   long from, long to, int start, int end) {
+            this.ledger = ledger;
+            this.plans = plans;
+            this.factors = factors;
+            this.region = region;
+            this.from = from;
+            this.to = to;
+            this.start = start;
+            this.end = end;
+        }
+        
+        @Override
+        protected double[][] compute() {
+            if (end - start <= EmissionLedger.CHUNK_SIZE) {
+                return replay();
+            }
+            // Split on a chunk boundary so every leaf reads whole column arrays
+            int chunks = (end - start + EmissionLedger.CHUNK_SIZE - 1) / EmissionLedger.CHUNK_SIZE;
+            int middle = start + chunks / 2 * EmissionLedger.CHUNK_SIZE;
+            ReplayTask left = new ReplayTask(ledger, plans, factors, region, from, to, start, middle);
+            ReplayTask right = new ReplayTask(ledger, plans, factors, region, from, to, middle, end);
+            left.fork();
+            double[][] rightSums = right.compute();
+            double[][] sums = left.join();
+            for (int row = 0; row < sums.length; row++) {
+                for (int s = 0; s < EmissionSource.COUNT; s++) {
+                    sums[row][s] += rightSums[row][s];
+                }
+            }
+            return sums;
+        }
+        
+        private double[][] replay() {
+            double[][] sums = new double[plans.length + 1][EmissionSource.COUNT];
+            if (start == end) {
+                return sums;
+            }
+            int chunk = start / EmissionLedger.CHUNK_SIZE;
+            long[] timestamps = ledger.timestampChunk(chunk);
+            byte[] sources = ledger.sourceChunk(chunk);
+            double[] quantities = ledger.quantityChunk(chunk);
+            double[] entryFactors = ledger.factorChunk(chunk);
+            double[] emissions = ledger.emissionChunk(chunk);
+            double[] baseline = sums[0];
+            
+            int first = start - chunk * EmissionLedger.CHUNK_SIZE;
+            for (int slot = first, last = first + (end - start); slot < last; slot++) {
+                long timestamp = timestamps[slot];
+                if (timestamp < from || timestamp >= to) {
+                    continue;
+                }
+                int s = sources[slot];
+                double kgCO2 = emissions[slot];
+                baseline[s] += kgCO2;
+                for (int k = 0; k < plans.length; k++) {
+                    Plan plan = plans[k];
+                    double[] projected = sums[k + 1];
+                    if (!plan.affected[s]) {
+                        projected[s] += kgCO2;
+                        continue;
+                    }
+                    int[] targets = plan.targets[s];
+                    double[] shares = plan.shares[s];
+                    for (int j = 0; j < targets.length; j++) {
+                        int t = targets[j];
+                        double factor = plan.factorOverride[t];
+                        if (factor != factor) {
+                            factor = t == s ? entryFactors[slot]
+                                : factors.getFactor(region, EmissionSource.byOrdinal(t), timestamp);
+                        }
+                        projected[t] += shares[j] * quantities[slot] * factor * plan.factorScale[t];
+                    }
+                }
+            }
+            return sums;
+        }
+    }
+}
@@ -0,0 +1,208 @@
+package com.carbontracker.server;
+
+import com.carbontracker.io.ImportResult;
+import com.carbontracker.io.JsonActivityImporter;
+import com.carbontracker.model.ConcurrentEmissionCalculator;
+import com.carbontracker.model.EmissionSnapshot;
+import com.carbontracker.model.EmissionSource;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Embedded HTTP endpoint for pushing activities from other systems, built on
+ * the JDK's {@link HttpServer}.
+ * <ul>
+ * <li>{@code POST /emissions} takes one JSON activity, a JSON array of them
+ * or newline-delimited JSON (see {@link JsonActivityImporter}) and answers
+ * {@code {"accepted":N,"rejected":M,"errors":[...]}}, with status 400 if
+ * nothing was accepted.</li>
+ * <li>{@code GET /totals} returns the current per-source totals in kg CO2.</li>
+ * </ul>
+ * Each request runs on its own virtual thread when the JVM supports them
+ * (Java 21 and later) and on a fixed pool of platform threads otherwise.
+ * Activities go straight into a {@link ConcurrentEmissionCalculator}, so
+ * requests never wait for one another except on its internal locks.
+ */
+public class EmissionIngestServer implements Closeable {
+    
+    /** Largest accepted request body. */
+    public static final int MAX_BODY_BYTES = 16 << 20;
+    
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final boolean virtualThreads;
+    private final ConcurrentEmissionCalculator calculator;
+    private final JsonActivityImporter importer;
+    private final LongAdder rejectedRecords = new LongAdder();
+    
+    private EmissionIngestServer(HttpServer server, ExecutorService executor, boolean virtualThreads,
+                                 ConcurrentEmissionCalculator calculator) {
+        this.server = server;
+        this.executor = executor;
+        this.virtualThreads = virtualThreads;
+        this.calculator = calculator;
+        this.importer = new JsonActivityImporter(calculator);
+    }
+    
+    /**
+     * Starts serving on {@code address}; port 0 picks a free port, see
+     * {@link #getPort()}.
+     */
+    public static EmissionIngestServer start(InetSocketAddress address, ConcurrentEmissionCalculator calculator)
+            throws IOException {
+        ExecutorService executor = newVirtualThreadExecutor();
+        boolean virtualThreads = executor != null;
+        if (executor == null) {
+            executor = Executors.newFixedThreadPool(4 * Runtime.getRuntime().availableProcessors(), runnable -> {
+                Thread thread = new Thread(runnable, "emission-ingest");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        // Response headers and body go out as separate writes; with Nagle's
+        // algorithm the body then waits for the client's delayed ACK (~40 ms).
+        // The JDK server reads this once, when the first server is created.
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+        HttpServer server = HttpServer.create(address, 1024);
+        EmissionIngestServer ingest = new EmissionIngestServer(server, executor, virtualThreads, calculator);
+        server.createContext("/emissions", ingest::handleEmissions);
+        server.createContext("/totals", ingest::handleTotals);
+        server.setExecutor(executor);
+        server.start();
+        return ingest;
+    }
+    
+    /**
+     * {@code Executors.newVirtualThreadPerTaskExecutor()}, looked up
+     * reflectively so the project still builds for Java 17, or null if the
+     * running JVM has no virtual threads.
+     */
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException | UnsupportedOperationException e) {
+            return null;
+        }
+    }
+    
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+    
+    /** Whether requests are handled on virtual threads. */
+    public boolean usesVirtualThreads() {
+        return virtualThreads;
+    }
+    
+    /** Records rejected across all requests so far. */
+    public long getRejectedRecords() {
+        return rejectedRecords.sum();
+    }
+    
+    private void handleEmissions(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                exchange.getResponseHeaders().set("Allow", "POST");
+                send(exchange, 405, "{\"error\":\"use POST\"}");
+                return;
+            }
+            byte[] body;
+            try (InputStream in = exchange.getRequestBody()) {
+                body = in.readNBytes(MAX_BODY_BYTES + 1);
+            }
+            if (body.length > MAX_BODY_BYTES) {
+                send(exchange, 413, "{\"error\":\"body larger than " + MAX_BODY_BYTES + " bytes\"}");
+                return;
+            }
+            
+            ImportResult result = importer.importBytes(body, body.length);
+            rejectedRecords.add(result.getRejectedRecords());
+            StringBuilder response = new StringBuilder(64);
+            response.append("{\"accepted\":").append(result.getAcceptedRecords())
+                .append(",\"rejected\":").append(result.getRejectedRecords())
+                .append(",\"errors\":[");
+            for (int i = 0; i < result.getErrors().size(); i++) {
+                if (i > 0) {
+                    response.append(',');
+                }
+                appendString(response, result.getErrors().get(i));
+            }
+            response.append("]}");
+            boolean failed = result.getAcceptedRecords() == 0 && result.getRejectedRecords() > 0;
+            send(exchange, failed ? 400 : 200, response.toString());
+        }
+    }
+    
+    private void handleTotals(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                exchange.getResponseHeaders().set("Allow", "GET");
+                send(exchange, 405, "{\"error\":\"use GET\"}");
+                return;
+            }
+            EmissionSnapshot snapshot = calculator.snapshot();
+            StringBuilder response = new StringBuilder(512);
+            response.append("{\"total\":").append(snapshot.getTotal()).append(",\"sources\":{");
+            for (EmissionSource source : EmissionSource.values()) {
+                if (source.ordinal() > 0) {
+                    response.append(',');
+                }
+                response.append('"').append(source.getKey()).append("\":{\"kgCO2\":")
+                    .append(snapshot.getSourceTotal(source)).append(",\"count\":")
+                    .append(snapshot.getSourceCount(source)).append('}');
+            }
+            response.append("}}");
+            send(exchange, 200, response.toString());
+        }
+    }
+    
+    private static void send(HttpExchange exchange, int status, String json) throws IOException {
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+    
+    private static void appendString(StringBuilder out, String value) {
+        out.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                out.append('\\').append(c);
+            } else if (c < 0x20) {
+                out.append(String.format(Locale.ROOT, "\\u%04x", (int) c));
+            } else {
+                out.append(c);
+            }
+        }
+        out.append('"');
+    }
+    
+    /** Stops accepting requests and waits briefly for running ones to finish. */
+    @Override
+    public void close() {
+        server.stop(1);
+        executor.shutdown();
+        try {
+            executor.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
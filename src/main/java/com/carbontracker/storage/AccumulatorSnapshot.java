@@ -0,0 +1,239 @@
+package com.carbontracker.storage;
+
+import com.carbontracker.model.EmissionCalculator;
+import com.carbontracker.model.EmissionRollup;
+import com.carbontracker.model.EmissionSink;
+import com.carbontracker.model.EmissionSource;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Compact accumulator state (per-source totals, counts and rollups) as of a
+ * write-ahead log sequence number.
+ * <p>
+ * An instance is kept current by feeding it logged events as an
+ * {@link EmissionSink}; every event, including a reset, advances its
+ * sequence number by one, matching the log's dense numbering. Snapshots are
+ * written to {@code snapshot-<sequence>.bin} files via a temporary file and
+ * an atomic rename, and end with a CRC32 of their contents, so a snapshot is
+ * either complete or ignored.
+ */
+public class AccumulatorSnapshot implements EmissionSink {
+    
+    private static final int MAGIC = 0x43545350; // "CTSP"
+    private static final int VERSION = 1;
+    private static final EmissionRollup.Granularity[] GRANULARITIES = EmissionRollup.Granularity.values();
+    
+    private final double[] totals = new double[EmissionSource.COUNT];
+    private final long[] counts = new long[EmissionSource.COUNT];
+    private final EmissionRollup rollup = new EmissionRollup();
+    private long sequence;
+    
+    /** Empty state at sequence 0, before the first logged event. */
+    public AccumulatorSnapshot() {
+    }
+    
+    @Override
+    public void record(long timestamp, EmissionSource source, double quantity, double factor, double kgCO2) {
+        totals[source.ordinal()] += kgCO2;
+        counts[source.ordinal()]++;
+        rollup.add(timestamp, source, kgCO2);
+        sequence++;
+    }
+    
+    @Override
+    public void reset() {
+        clear();
+        sequence++;
+    }
+    
+    private void clear() {
+        for (int i = 0; i < EmissionSource.COUNT; i++) {
+            totals[i] = 0;
+            counts[i] = 0;
+        }
+        rollup.clear();
+    }
+    
+    /** Sequence number of the last event included. */
+    public long getSequence() {
+        return sequence;
+    }
+    
+    public long getCount() {
+        long count = 0;
+        for (long sourceCount : counts) {
+            count += sourceCount;
+        }
+        return count;
+    }
+    
+    /**
+     * Adds this state's totals and rollups to a calculator, which is
+     * expected to be empty.
+     */
+    public void restoreInto(EmissionCalculator calculator) {
+        for (EmissionSource source : EmissionSource.values()) {
+            if (counts[source.ordinal()] > 0) {
+                calculator.restoreTotals(source, totals[source.ordinal()], counts[source.ordinal()]);
+            }
+        }
+        for (EmissionRollup.Granularity granularity : GRANULARITIES) {
+            rollup.forEachBucket(granularity, (start, bucketTotals, bucketCounts) ->
+                calculator.getRollup().addBucket(granularity, start, bucketTotals, bucketCounts));
+        }
+    }
+    
+    /**
+     * Writes this state to {@code directory} and deletes all but the previous
+     * snapshot.
+     *
+     * @return the written file
+     */
+    public Path write(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        Path target = directory.resolve(fileName(sequence));
+        Path temp = directory.resolve(fileName(sequence) + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            CRC32 crc = new CRC32();
+            OutputStream stream = Channels.newOutputStream(channel);
+            DataOutputStream out = new DataOutputStream(
+                new CheckedOutputStream(new BufferedOutputStream(stream, 1 << 16), crc));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(sequence);
+            out.writeInt(EmissionSource.COUNT);
+            for (int i = 0; i < EmissionSource.COUNT; i++) {
+                out.writeDouble(totals[i]);
+                out.writeLong(counts[i]);
+            }
+            for (EmissionRollup.Granularity granularity : GRANULARITIES) {
+                out.writeInt(rollup.bucketCount(granularity));
+                try {
+                    rollup.forEachBucket(granularity, (start, bucketTotals, bucketCounts) -> {
+                        try {
+                            out.writeLong(start);
+                            for (int i = 0; i < EmissionSource.COUNT; i++) {
+                                out.writeDouble(bucketTotals[i]);
+                                out.writeLong(bucketCounts[i]);
+                            }
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    });
+                } catch (UncheckedIOException e) {
+                    throw e.getCause();
+                }
+            }
+            out.flush();
+            new DataOutputStream(stream).writeInt((int) crc.getValue());
+            channel.force(true);
+        }
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        
+        // Keep the previous snapshot as a fallback in case this one is damaged
+        TreeMap<Long, Path> older = new TreeMap<>(listSnapshots(directory).headMap(sequence));
+        if (!older.isEmpty()) {
+            older.pollLastEntry();
+        }
+        for (Path old : older.values()) {
+            Files.deleteIfExists(old);
+        }
+        return target;
+    }
+    
+    /**
+     * Reads the newest valid snapshot in {@code directory}, or returns an
+     * empty state at sequence 0 if there is none.
+     */
+    public static AccumulatorSnapshot readLatest(Path directory) throws IOException {
+        if (Files.isDirectory(directory)) {
+            for (Path file : listSnapshots(directory).descendingMap().values()) {
+                AccumulatorSnapshot snapshot = read(file);
+                if (snapshot != null) {
+                    return snapshot;
+                }
+                System.err.println("Ignoring damaged emission snapshot " + file);
+            }
+        }
+        return new AccumulatorSnapshot();
+    }
+    
+    /** Reads a snapshot file, or returns null if it is incomplete or corrupt. */
+    static AccumulatorSnapshot read(Path file) throws IOException {
+        CRC32 crc = new CRC32();
+        try (DataInputStream in = new DataInputStream(new CheckedInputStream(
+                new BufferedInputStream(Files.newInputStream(file), 1 << 16), crc))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                return null;
+            }
+            AccumulatorSnapshot snapshot = new AccumulatorSnapshot();
+            snapshot.sequence = in.readLong();
+            if (in.readInt() != EmissionSource.COUNT) {
+                return null;
+            }
+            for (int i = 0; i < EmissionSource.COUNT; i++) {
+                snapshot.totals[i] = in.readDouble();
+                snapshot.counts[i] = in.readLong();
+            }
+            double[] bucketTotals = new double[EmissionSource.COUNT];
+            long[] bucketCounts = new long[EmissionSource.COUNT];
+            for (EmissionRollup.Granularity granularity : GRANULARITIES) {
+                int buckets = in.readInt();
+                for (int b = 0; b < buckets; b++) {
+                    long start = in.readLong();
+                    for (int i = 0; i < EmissionSource.COUNT; i++) {
+                        bucketTotals[i] = in.readDouble();
+                        bucketCounts[i] = in.readLong();
+                    }
+                    snapshot.rollup.addBucket(granularity, start, bucketTotals, bucketCounts);
+                }
+            }
+            int expected = (int) crc.getValue();
+            if (in.readInt() != expected) {
+                return null;
+            }
+            return snapshot;
+        } catch (EOFException e) {
+            return null;
+        }
+    }
+    
+    private static TreeMap<Long, Path> listSnapshots(Path directory) throws IOException {
+        TreeMap<Long, Path> snapshots = new TreeMap<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "snapshot-*.bin")) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                try {
+                    snapshots.put(Long.parseLong(name.substring(9, name.length() - 4)), file);
+                } catch (NumberFormatException e) {
+                    // Not a snapshot
+                }
+            }
+        }
+        return snapshots;
+    }
+    
+    private static String fileName(long sequence) {
+        return String.format("snapshot-%020d.bin", sequence);
+    }
+}
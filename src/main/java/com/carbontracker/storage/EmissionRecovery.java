@@ -0,0 +1,168 @@
+package com.carbontracker.storage;
+
+import com.carbontracker.model.EmissionCalculator;
+import com.carbontracker.model.EmissionSink;
+import com.carbontracker.model.EmissionSource;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Crash-safe accumulator state for a calculator: a {@link WriteAheadLog} of
+ * every event plus periodic {@link AccumulatorSnapshot}s.
+ * <p>
+ * {@link #open} restores the newest snapshot into the calculator and replays
+ * only the log events after it, then attaches the log as a sink. Snapshots
+ * are built on the log's flusher thread from committed events, so each one
+ * matches an exact log position no matter how many threads are recording.
+ * Every {@code snapshotInterval} events a snapshot is written and log
+ * segments that the previous snapshot already covers are deleted; one more
+ * is written on {@link #close()}.
+ * <p>
+ * Totals and rollups survive in full. The calculator's ledger only holds the
+ * replayed tail, so raw-entry queries cover activities since the snapshot.
+ */
+public class EmissionRecovery implements Closeable {
+    
+    public static final long DEFAULT_SNAPSHOT_INTERVAL = 1_000_000;
+    
+    private final Path directory;
+    private final long snapshotInterval;
+    private final AccumulatorSnapshot state;
+    private final WriteAheadLog log;
+    private final long restoredEvents;
+    private final long replayedEvents;
+    private final long recoveryNanos;
+    private long writtenSnapshot;
+    private long lastCheckpoint;
+    
+    private EmissionRecovery(Path directory, long snapshotInterval, AccumulatorSnapshot state, WriteAheadLog log,
+                             long snapshotSequence, long restoredEvents, long replayedEvents, long recoveryNanos) {
+        this.directory = directory;
+        this.snapshotInterval = snapshotInterval;
+        this.state = state;
+        this.log = log;
+        this.writtenSnapshot = snapshotSequence;
+        this.lastCheckpoint = snapshotSequence;
+        this.restoredEvents = restoredEvents;
+        this.replayedEvents = replayedEvents;
+        this.recoveryNanos = recoveryNanos;
+    }
+    
+    public static EmissionRecovery open(Path directory, EmissionCalculator calculator) throws IOException {
+        return open(directory, calculator, DEFAULT_SNAPSHOT_INTERVAL);
+    }
+    
+    /**
+     * Restores {@code calculator}, which must be empty, from the state in
+     * {@code directory} and keeps logging its events there.
+     */
+    public static EmissionRecovery open(Path directory, EmissionCalculator calculator, long snapshotInterval)
+            throws IOException {
+        long start = System.nanoTime();
+        AccumulatorSnapshot state = AccumulatorSnapshot.readLatest(directory);
+        long snapshotSequence = state.getSequence();
+        long restoredEvents = state.getCount();
+        state.restoreInto(calculator);
+        
+        long[] replayed = new long[1];
+        long last = WriteAheadLog.replay(directory, snapshotSequence, new EmissionSink() {
+            @Override
+            public void record(long timestamp, EmissionSource source, double quantity, double factor, double kgCO2) {
+                calculator.replay(timestamp, source, quantity, factor, kgCO2);
+                state.record(timestamp, source, quantity, factor, kgCO2);
+                replayed[0]++;
+            }
+            
+            @Override
+            public void reset() {
+                calculator.reset();
+                state.reset();
+                replayed[0]++;
+            }
+        });
+        long recoveryNanos = System.nanoTime() - start;
+        
+        WriteAheadLog log = WriteAheadLog.open(directory, last);
+        EmissionRecovery recovery = new EmissionRecovery(directory, snapshotInterval, state, log,
+            snapshotSequence, restoredEvents, replayed[0], recoveryNanos);
+        log.setCommitListener(recovery.new CheckpointingListener());
+        calculator.addSink(log);
+        return recovery;
+    }
+    
+    /** Number of events restored from the snapshot. */
+    public long getRestoredEvents() {
+        return restoredEvents;
+    }
+    
+    /** Number of log events replayed after the snapshot. */
+    public long getReplayedEvents() {
+        return replayedEvents;
+    }
+    
+    /** Time {@link #open} spent restoring and replaying, in nanoseconds. */
+    public long getRecoveryNanos() {
+        return recoveryNanos;
+    }
+    
+    /** Blocks until every event recorded so far is on disk. */
+    public void sync() throws IOException {
+        log.sync();
+    }
+    
+    /**
+     * Flushes the log and writes a final snapshot, so the next start has no
+     * log to replay. The calculator must not record any more events.
+     */
+    @Override
+    public void close() throws IOException {
+        log.close();
+        if (state.getSequence() != writtenSnapshot) {
+            writeSnapshot();
+        }
+    }
+    
+    /**
+     * Writes the current state and drops the log segments covered by the
+     * snapshot before it, which is kept as a fallback.
+     */
+    private void writeSnapshot() throws IOException {
+        state.write(directory);
+        log.truncateThrough(writtenSnapshot);
+        writtenSnapshot = state.getSequence();
+    }
+    
+    /**
+     * Applies committed events to the snapshot state and writes a snapshot
+     * whenever enough of them have accumulated. Runs on the flusher thread.
+     */
+    private class CheckpointingListener implements EmissionSink {
+        
+        @Override
+        public void record(long timestamp, EmissionSource source, double quantity, double factor, double kgCO2) {
+            state.record(timestamp, source, quantity, factor, kgCO2);
+            checkpointIfDue();
+        }
+        
+        @Override
+        public void reset() {
+            state.reset();
+            checkpointIfDue();
+        }
+        
+        private void checkpointIfDue() {
+            if (state.getSequence() - lastCheckpoint < snapshotInterval) {
+                return;
+            }
+            lastCheckpoint = state.getSequence();
+            try {
+                writeSnapshot();
+            } catch (IOException e) {
+                // The log still has every event; try again after the next interval
+                System.err.println("Could not write emission snapshot: " + e.getMessage());
+            }
+        }
+    }
+}
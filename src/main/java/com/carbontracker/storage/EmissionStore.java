@@ -0,0 +1,232 @@
+package com.carbontracker.storage;
+
+import com.carbontracker.model.EmissionLedger;
+import com.carbontracker.model.EmissionSink;
+import com.carbontracker.model.EmissionSource;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Durable, memory-mapped store of recorded activities.
+ * <p>
+ * The file is a sequence of fixed-width 48 byte slots. Slot 0 is the header;
+ * every other slot holds one record:
+ * <pre>
+ *  0 int    record length (always 48)
+ *  4 int    epoch (bumped by {@link #reset()})
+ *  8 long   timestamp (epoch millis)
+ * 16 double quantity
+ * 24 double emission factor
+ * 32 double kg CO2
+ * 40 int    source ordinal
+ * 44 int    CRC32 of bytes 0..43
+ * </pre>
+ * An append is a single bulk write into the mapped region. On open the
+ * records are scanned until the first slot with a bad length, epoch or
+ * checksum, which marks the end of the valid history (a torn or stale write);
+ * any later records of the current epoch are invalidated, and new appends
+ * overwrite from there.
+ */
+public class EmissionStore implements EmissionSink, Closeable {
+    
+    private static final int MAGIC = 0x4354454D; // "CTEM"
+    private static final int VERSION = 1;
+    
+    private static final int RECORD_SIZE = 48;
+    private static final int CHECKSUMMED_BYTES = 44;
+    private static final int SLOTS_PER_REGION = 1 << 17;
+    private static final long REGION_SIZE = (long) RECORD_SIZE * SLOTS_PER_REGION;
+    
+    private final FileChannel channel;
+    private final List<MappedByteBuffer> regions = new ArrayList<>();
+    private final ByteBuffer scratch = ByteBuffer.allocate(RECORD_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    private final CRC32 crc = new CRC32();
+    
+    private int epoch;
+    private long recordCount;
+    
+    private EmissionStore(FileChannel channel) {
+        this.channel = channel;
+    }
+    
+    /**
+     * Opens (or creates) the store at {@code path} and recovers its history.
+     */
+    public static EmissionStore open(Path path) throws IOException {
+        Path parent = path.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        FileChannel channel = FileChannel.open(path,
+            StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        EmissionStore store = new EmissionStore(channel);
+        try {
+            store.initialize();
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+        return store;
+    }
+    
+    private void initialize() throws IOException {
+        boolean fresh = channel.size() == 0;
+        long regionCount = Math.max(1, (channel.size() + REGION_SIZE - 1) / REGION_SIZE);
+        for (long i = 0; i < regionCount; i++) {
+            mapRegion();
+        }
+        
+        MappedByteBuffer header = regions.get(0);
+        if (fresh) {
+            header.putInt(0, MAGIC);
+            header.putInt(4, VERSION);
+            header.putInt(8, RECORD_SIZE);
+            header.putInt(12, 0);
+            header.force();
+        } else if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION
+                || header.getInt(8) != RECORD_SIZE) {
+            throw new IOException("Not an emission store or unsupported version");
+        }
+        epoch = header.getInt(12);
+        recordCount = recover();
+    }
+    
+    private void mapRegion() throws IOException {
+        MappedByteBuffer region = channel.map(FileChannel.MapMode.READ_WRITE,
+            regions.size() * REGION_SIZE, REGION_SIZE);
+        region.order(ByteOrder.LITTLE_ENDIAN);
+        regions.add(region);
+    }
+    
+    /** Counts the valid records that follow the header. */
+    private long recover() {
+        long slot = 1;
+        long capacity = regions.size() * (long) SLOTS_PER_REGION;
+        byte[] record = new byte[RECORD_SIZE];
+        while (slot < capacity) {
+            MappedByteBuffer region = regions.get((int) (slot / SLOTS_PER_REGION));
+            int offset = (int) (slot % SLOTS_PER_REGION) * RECORD_SIZE;
+            if (region.getInt(offset) != RECORD_SIZE || region.getInt(offset + 4) != epoch) {
+                break;
+            }
+            region.get(offset, record);
+            crc.reset();
+            crc.update(record, 0, CHECKSUMMED_BYTES);
+            if ((int) crc.getValue() != region.getInt(offset + CHECKSUMMED_BYTES)) {
+                break;
+            }
+            int source = region.getInt(offset + 40);
+            if (source < 0 || source >= EmissionSource.COUNT) {
+                break;
+            }
+            slot++;
+        }
+        long valid = slot - 1;
+        
+        // Records of this epoch past a corrupt slot would come back once an
+        // append overwrites it, so invalidate them
+        boolean dropped = false;
+        for (; slot < capacity; slot++) {
+            MappedByteBuffer region = regions.get((int) (slot / SLOTS_PER_REGION));
+            int offset = (int) (slot % SLOTS_PER_REGION) * RECORD_SIZE;
+            if (region.getInt(offset + 4) == epoch && region.getInt(offset) != 0) {
+                region.putInt(offset, 0);
+                dropped = true;
+            }
+        }
+        if (dropped) {
+            force();
+        }
+        return valid;
+    }
+    
+    /**
+     * Appends a record. Thread-safe; appends are serialized.
+     */
+    @Override
+    public synchronized void record(long timestamp, EmissionSource source, double quantity,
+                                    double factor, double kgCO2) {
+        long slot = recordCount + 1;
+        int regionIndex = (int) (slot / SLOTS_PER_REGION);
+        try {
+            while (regionIndex >= regions.size()) {
+                mapRegion();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not grow emission store", e);
+        }
+        
+        scratch.clear();
+        scratch.putInt(RECORD_SIZE)
+               .putInt(epoch)
+               .putLong(timestamp)
+               .putDouble(quantity)
+               .putDouble(factor)
+               .putDouble(kgCO2)
+               .putInt(source.ordinal());
+        crc.reset();
+        crc.update(scratch.array(), 0, CHECKSUMMED_BYTES);
+        scratch.putInt((int) crc.getValue());
+        
+        int offset = (int) (slot % SLOTS_PER_REGION) * RECORD_SIZE;
+        regions.get(regionIndex).put(offset, scratch.array(), 0, RECORD_SIZE);
+        recordCount++;
+    }
+    
+    /**
+     * Visits every stored record in append order.
+     */
+    public synchronized void forEach(EmissionLedger.EntryVisitor visitor) {
+        for (long slot = 1; slot <= recordCount; slot++) {
+            MappedByteBuffer region = regions.get((int) (slot / SLOTS_PER_REGION));
+            int offset = (int) (slot % SLOTS_PER_REGION) * RECORD_SIZE;
+            visitor.visit(region.getLong(offset + 8),
+                EmissionSource.byOrdinal(region.getInt(offset + 40)),
+                region.getDouble(offset + 16),
+                region.getDouble(offset + 24),
+                region.getDouble(offset + 32));
+        }
+    }
+    
+    public synchronized long size() {
+        return recordCount;
+    }
+    
+    /**
+     * Discards all records by bumping the header epoch, which invalidates
+     * every existing slot without rewriting them.
+     */
+    @Override
+    public synchronized void reset() {
+        epoch++;
+        MappedByteBuffer header = regions.get(0);
+        header.putInt(12, epoch);
+        header.force();
+        recordCount = 0;
+    }
+    
+    /** Flushes appended records to the storage device. */
+    public synchronized void force() {
+        for (MappedByteBuffer region : regions) {
+            region.force();
+        }
+    }
+    
+    @Override
+    public synchronized void close() throws IOException {
+        force();
+        channel.close();
+    }
+}
@@ -0,0 +1,407 @@
+package com.carbontracker.storage;
+
+import com.carbontracker.model.EmissionSink;
+import com.carbontracker.model.EmissionSource;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of emission events with group commit.
+ * <p>
+ * Events are numbered with dense sequence numbers and written to segment
+ * files {@code wal-<first sequence>.log} in a directory. Each segment starts
+ * with a 16 byte header (magic, version, first sequence) followed by
+ * fixed-width 48 byte records:
+ * <pre>
+ *  0 long   sequence number
+ *  8 long   timestamp (epoch millis)
+ * 16 double quantity
+ * 24 double emission factor
+ * 32 double kg CO2
+ * 40 int    source ordinal, or -1 for a reset
+ * 44 int    CRC32 of bytes 0..43
+ * </pre>
+ * {@link #record} only copies the event into an in-memory buffer. A flusher
+ * thread swaps buffers, writes everything that accumulated while the previous
+ * batch was being synced and forces it to disk with a single {@code fsync}, so
+ * the cost of syncing is shared by all events of a batch. Callers that need
+ * an event to be durable before they continue call {@link #sync()}.
+ * <p>
+ * After each commit, the committed events are passed in order to an optional
+ * commit listener on the flusher thread, which lets it maintain state that is
+ * exactly consistent with a sequence number.
+ */
+public class WriteAheadLog implements EmissionSink, Closeable {
+    
+    private static final int MAGIC = 0x4357414C; // "CWAL"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+    private static final int RECORD_SIZE = 48;
+    private static final int CHECKSUMMED_BYTES = 44;
+    private static final int RESET = -1;
+    
+    private static final int BUFFER_RECORDS = 1 << 14;
+    private static final long DEFAULT_SEGMENT_SIZE = 64L << 20;
+    
+    private final Path directory;
+    private final long segmentSize;
+    private final Object lock = new Object();
+    private final CRC32 crc = new CRC32();
+    private final Thread flusher;
+    
+    private ByteBuffer filling = newBuffer();
+    private ByteBuffer draining = newBuffer();
+    private FileChannel segment;
+    private long nextSequence;
+    private long committedSequence;
+    private boolean closed;
+    private IOException failure;
+    private EmissionSink commitListener;
+    
+    private WriteAheadLog(Path directory, long lastSequence, long segmentSize) {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.nextSequence = lastSequence + 1;
+        this.committedSequence = lastSequence;
+        this.flusher = new Thread(this::flushLoop, "emission-wal-flusher");
+        flusher.setDaemon(true);
+    }
+    
+    /**
+     * Opens the log in {@code directory} for appending. New events are
+     * numbered from {@code lastSequence + 1}, which must be the last sequence
+     * number returned by {@link #replay}; they go to a new segment, so a torn
+     * tail left by a crash is never appended to.
+     */
+    public static WriteAheadLog open(Path directory, long lastSequence) throws IOException {
+        return open(directory, lastSequence, DEFAULT_SEGMENT_SIZE);
+    }
+    
+    public static WriteAheadLog open(Path directory, long lastSequence, long segmentSize) throws IOException {
+        Files.createDirectories(directory);
+        WriteAheadLog log = new WriteAheadLog(directory, lastSequence, segmentSize);
+        log.segment = log.createSegment(lastSequence + 1);
+        log.flusher.start();
+        return log;
+    }
+    
+    /**
+     * Sets the sink that receives committed events, in sequence order, on the
+     * flusher thread. Must be called before the first event is recorded.
+     */
+    public void setCommitListener(EmissionSink listener) {
+        synchronized (lock) {
+            this.commitListener = listener;
+        }
+    }
+    
+    @Override
+    public void record(long timestamp, EmissionSource source, double quantity, double factor, double kgCO2) {
+        append(timestamp, source.ordinal(), quantity, factor, kgCO2);
+    }
+    
+    /** Logs a reset; replay clears everything recorded before it. */
+    @Override
+    public void reset() {
+        append(0L, RESET, 0.0, 0.0, 0.0);
+    }
+    
+    private void append(long timestamp, int source, double quantity, double factor, double kgCO2) {
+        synchronized (lock) {
+            while (filling.remaining() < RECORD_SIZE && failure == null && !closed) {
+                // Buffer full: wait for the flusher to swap buffers
+                try {
+                    lock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new UncheckedIOException(new InterruptedIOException("Interrupted while logging emission"));
+                }
+            }
+            checkOpen();
+            int start = filling.position();
+            filling.putLong(nextSequence++)
+                   .putLong(timestamp)
+                   .putDouble(quantity)
+                   .putDouble(factor)
+                   .putDouble(kgCO2)
+                   .putInt(source);
+            crc.reset();
+            crc.update(filling.duplicate().position(start).limit(start + CHECKSUMMED_BYTES));
+            filling.putInt((int) crc.getValue());
+            if (start == 0) {
+                lock.notifyAll();
+            }
+        }
+    }
+    
+    /**
+     * Blocks until every event recorded so far is on disk.
+     */
+    public void sync() throws IOException {
+        synchronized (lock) {
+            long target = nextSequence - 1;
+            while (committedSequence < target && failure == null && !closed) {
+                try {
+                    lock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while waiting for the log");
+                }
+            }
+            if (failure != null) {
+                throw failure;
+            }
+        }
+    }
+    
+    /** Sequence number of the last event known to be on disk. */
+    public long getCommittedSequence() {
+        synchronized (lock) {
+            return committedSequence;
+        }
+    }
+    
+    private void checkOpen() {
+        if (failure != null) {
+            throw new UncheckedIOException("Write-ahead log failed", failure);
+        }
+        if (closed) {
+            throw new IllegalStateException("Write-ahead log is closed");
+        }
+    }
+    
+    private void flushLoop() {
+        while (true) {
+            ByteBuffer batch;
+            long lastInBatch;
+            EmissionSink listener;
+            synchronized (lock) {
+                while (filling.position() == 0 && !closed) {
+                    try {
+                        lock.wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                if (filling.position() == 0) {
+                    return; // closed and drained
+                }
+                batch = filling;
+                filling = draining;
+                draining = batch;
+                lastInBatch = nextSequence - 1;
+                listener = commitListener;
+                lock.notifyAll();
+            }
+            
+            batch.flip();
+            try {
+                commit(batch, lastInBatch);
+            } catch (IOException e) {
+                synchronized (lock) {
+                    failure = e;
+                    lock.notifyAll();
+                }
+                System.err.println("Could not write emission log: " + e.getMessage());
+                return;
+            }
+            synchronized (lock) {
+                committedSequence = lastInBatch;
+                lock.notifyAll();
+            }
+            if (listener != null) {
+                batch.rewind();
+                deliver(batch, listener);
+            }
+            batch.clear();
+        }
+    }
+    
+    private void commit(ByteBuffer batch, long lastInBatch) throws IOException {
+        if (segment.position() >= segmentSize) {
+            segment.force(false);
+            segment.close();
+            segment = createSegment(batch.getLong(0));
+        }
+        while (batch.hasRemaining()) {
+            segment.write(batch);
+        }
+        segment.force(false);
+    }
+    
+    private static void deliver(ByteBuffer batch, EmissionSink listener) {
+        for (int offset = 0; offset < batch.limit(); offset += RECORD_SIZE) {
+            int source = batch.getInt(offset + 40);
+            if (source == RESET) {
+                listener.reset();
+            } else {
+                listener.record(batch.getLong(offset + 8), EmissionSource.byOrdinal(source),
+                    batch.getDouble(offset + 16), batch.getDouble(offset + 24), batch.getDouble(offset + 32));
+            }
+        }
+    }
+    
+    private FileChannel createSegment(long firstSequence) throws IOException {
+        Path path = directory.resolve(segmentName(firstSequence));
+        FileChannel channel = FileChannel.open(path,
+            StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC).putInt(VERSION).putLong(firstSequence).flip();
+        while (header.hasRemaining()) {
+            channel.write(header);
+        }
+        return channel;
+    }
+    
+    /**
+     * Deletes segments whose events all have sequence numbers up to
+     * {@code sequence}, e.g. once a snapshot covers them. Safe to call from
+     * the commit listener.
+     */
+    public void truncateThrough(long sequence) throws IOException {
+        List<Path> obsolete = new ArrayList<>();
+        TreeMap<Long, Path> segments = listSegments(directory);
+        Long previous = null;
+        for (Long first : segments.keySet()) {
+            if (previous != null && first - 1 <= sequence) {
+                obsolete.add(segments.get(previous));
+            }
+            previous = first;
+        }
+        for (Path path : obsolete) {
+            Files.deleteIfExists(path);
+        }
+    }
+    
+    /**
+     * Flushes and syncs everything recorded so far, then stops the flusher.
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (lock) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            lock.notifyAll();
+        }
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        segment.close();
+        synchronized (lock) {
+            if (failure != null) {
+                throw failure;
+            }
+        }
+    }
+    
+    /**
+     * Visits the logged events with sequence numbers after {@code afterSequence}
+     * in order. A segment is read up to its first incomplete or corrupt record,
+     * which is where a crash interrupted a write.
+     *
+     * @return the sequence number of the last event in the log, or
+     *         {@code afterSequence} if there is none after it
+     */
+    public static long replay(Path directory, long afterSequence, EmissionSink sink) throws IOException {
+        long last = afterSequence;
+        if (!Files.isDirectory(directory)) {
+            return last;
+        }
+        TreeMap<Long, Path> segments = listSegments(directory);
+        CRC32 crc = new CRC32();
+        ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_RECORDS * RECORD_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        for (var entry : segments.entrySet()) {
+            Long next = segments.higherKey(entry.getKey());
+            if (next != null && next - 1 <= afterSequence) {
+                continue; // entirely covered
+            }
+            last = replaySegment(entry.getValue(), last, buffer, crc, sink);
+        }
+        return last;
+    }
+    
+    private static long replaySegment(Path path, long last, ByteBuffer buffer, CRC32 crc, EmissionSink sink)
+            throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            while (header.hasRemaining() && channel.read(header) >= 0) {
+                // Read the full header
+            }
+            if (header.hasRemaining() || header.getInt(0) != MAGIC || header.getInt(4) != VERSION) {
+                return last;
+            }
+            buffer.clear();
+            while (channel.read(buffer) > 0 || buffer.position() > 0) {
+                buffer.flip();
+                while (buffer.remaining() >= RECORD_SIZE) {
+                    int offset = buffer.position();
+                    crc.reset();
+                    crc.update(buffer.duplicate().limit(offset + CHECKSUMMED_BYTES));
+                    long sequence = buffer.getLong(offset);
+                    int source = buffer.getInt(offset + 40);
+                    if ((int) crc.getValue() != buffer.getInt(offset + CHECKSUMMED_BYTES)
+                            || source < RESET || source >= EmissionSource.COUNT) {
+                        return last;
+                    }
+                    if (sequence > last) {
+                        if (source == RESET) {
+                            sink.reset();
+                        } else {
+                            sink.record(buffer.getLong(offset + 8), EmissionSource.byOrdinal(source),
+                                buffer.getDouble(offset + 16), buffer.getDouble(offset + 24),
+                                buffer.getDouble(offset + 32));
+                        }
+                        last = sequence;
+                    }
+                    buffer.position(offset + RECORD_SIZE);
+                }
+                if (buffer.hasRemaining() && channel.position() == channel.size()) {
+                    return last; // torn record at the end
+                }
+                buffer.compact();
+            }
+        }
+        return last;
+    }
+    
+    private static TreeMap<Long, Path> listSegments(Path directory) throws IOException {
+        TreeMap<Long, Path> segments = new TreeMap<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "wal-*.log")) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                try {
+                    segments.put(Long.parseLong(name.substring(4, name.length() - 4)), file);
+                } catch (NumberFormatException e) {
+                    // Not a segment
+                }
+            }
+        }
+        return segments;
+    }
+    
+    private static String segmentName(long firstSequence) {
+        return String.format("wal-%020d.log", firstSequence);
+    }
+    
+    private static ByteBuffer newBuffer() {
+        return ByteBuffer.allocateDirect(BUFFER_RECORDS * RECORD_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    }
+}
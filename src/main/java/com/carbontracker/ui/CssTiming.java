@@ -0,0 +1,72 @@
+package com.carbontracker.ui;
+
+import javafx.css.PseudoClass;
+import javafx.scene.Node;
+import javafx.scene.Parent;
+
+/**
+ * Measures how long JavaFX spends applying CSS to a scene graph, for
+ * comparing styling approaches on a real dashboard. Enabled at startup with
+ * {@code -Dcarbontracker.timing=true}.
+ */
+public final class CssTiming {
+    
+    private static final PseudoClass HOVER = PseudoClass.getPseudoClass("hover");
+    private static final String FORCE_CLASS = "css-timing";
+    
+    private CssTiming() {
+    }
+    
+    /**
+     * Prints the average time of a full CSS pass over {@code root}, in which
+     * every node rematches its selectors, and of hovering and unhovering
+     * every button once. Must be called on the FX thread with {@code root}
+     * in a scene.
+     */
+    public static void report(Parent root, int rounds) {
+        int nodes = countNodes(root);
+        
+        long fullPass = 0;
+        for (int i = 0; i < rounds; i++) {
+            // A style class change makes the whole subtree reapply CSS
+            long start = System.nanoTime();
+            if (!root.getStyleClass().remove(FORCE_CLASS)) {
+                root.getStyleClass().add(FORCE_CLASS);
+            }
+            root.applyCss();
+            fullPass += System.nanoTime() - start;
+        }
+        root.getStyleClass().remove(FORCE_CLASS);
+        root.applyCss();
+        
+        int buttons = 0;
+        long hoverPass = 0;
+        for (int i = 0; i < rounds; i++) {
+            long start = System.nanoTime();
+            for (Node node : root.lookupAll(".button")) {
+                node.pseudoClassStateChanged(HOVER, true);
+            }
+            root.applyCss();
+            buttons = 0;
+            for (Node node : root.lookupAll(".button")) {
+                node.pseudoClassStateChanged(HOVER, false);
+                buttons++;
+            }
+            root.applyCss();
+            hoverPass += System.nanoTime() - start;
+        }
+        
+        System.out.printf("CSS over %d nodes: full pass %.2f ms, hover flip of %d buttons %.2f ms%n",
+            nodes, fullPass / 1e6 / rounds, buttons, hoverPass / 1e6 / rounds);
+    }
+    
+    private static int countNodes(Node node) {
+        int count = 1;
+        if (node instanceof Parent) {
+            for (Node child : ((Parent) node).getChildrenUnmodifiable()) {
+                count += countNodes(child);
+            }
+        }
+        return count;
+    }
+}
@@ -1,8 +1,20 @@
 package com.carbontracker.ui;
 
+import com.carbontracker.model.BudgetAlertEngine;
 import com.carbontracker.model.EmissionCalculator;
+import com.carbontracker.model.EmissionCategory;
+import com.carbontracker.model.EmissionSource;
+import com.carbontracker.model.EmissionStatistics;
+import com.carbontracker.model.Scenario;
+import com.carbontracker.model.ScenarioSimulator;
+import javafx.animation.PauseTransition;
+import javafx.application.Platform;
+import javafx.beans.binding.Bindings;
+import javafx.beans.binding.BooleanBinding;
+import javafx.beans.value.ObservableDoubleValue;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
+import javafx.scene.Node;
 import javafx.scene.chart.PieChart;
 import javafx.scene.control.Label;
 import javafx.scene.control.ScrollPane;
@@ -11,18 +23,70 @@ import javafx.scene.layout.*;
 import javafx.scene.paint.Color;
 import javafx.scene.text.Font;
 import javafx.scene.text.FontWeight;
+import javafx.util.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Supplier;
 
 /**
- * Dashboard pane showing emission overview and statistics
+ * Dashboard pane showing emission overview and statistics.
+ * The scene graph is built once and bound to {@link ObservableEmissionTotals};
+ * {@link #refresh()} only pushes new totals, so just the labels and slices
+ * whose values changed are updated. Stat cards, slices and breakdown tips are
+ * generated from {@link EmissionCategory} and {@link EmissionSource}, so a new
+ * category or source appears without changes here. The budget card shows the
+ * budgets of a {@link BudgetAlertEngine} closest to their limits and the
+ * latest alert, read from the engine's running sums on each refresh, and the
+ * activity card shows per-source medians and percentiles from
+ * {@link EmissionStatistics} sketches, so neither scans the history. The
+ * projected savings tips do: they capture the recorded activities on the FX
+ * thread and replay them under {@link Scenario#suggestions()} on the common
+ * fork-join pool, at most once
+ * every two seconds while the calculator keeps changing, and are filled in
+ * on the FX thread when the replay is done.
  */
 public class DashboardPane {
     
     private ScrollPane scrollPane;
     private EmissionCalculator calculator;
+    private final ObservableEmissionTotals totals = new ObservableEmissionTotals();
     
-    public DashboardPane(EmissionCalculator calculator) {
+    private PieChart pieChart;
+    private final Map<EmissionSource, PieChart.Data> slices = new EnumMap<>(EmissionSource.class);
+    private PieChart.Data placeholderSlice;
+    
+    private static final int SHOWN_BUDGETS = 5;
+    private BudgetAlertEngine budgets;
+    private VBox budgetCard;
+    private final List<Label> budgetLabels = new ArrayList<>();
+    private Label alertLabel;
+    
+    private EmissionStatistics statistics;
+    private final Map<EmissionSource, Label> statisticsLabels = new EnumMap<>(EmissionSource.class);
+    
+    private final List<Scenario> scenarios = Scenario.suggestions();
+    private final List<Label> scenarioLabels = new ArrayList<>();
+    private static final long SCENARIO_INTERVAL_MILLIS = 2000;
+    private final PauseTransition scenarioPause = new PauseTransition(Duration.millis(SCENARIO_INTERVAL_MILLIS));
+    private long simulatedVersion = -1;
+    // Set from the start of a simulation until the pause after it has elapsed
+    private boolean simulating;
+    
+    public DashboardPane(EmissionCalculator calculator, BudgetAlertEngine budgets, EmissionStatistics statistics) {
         this.calculator = calculator;
+        this.budgets = budgets;
+        this.statistics = statistics;
+        scenarioPause.setOnFinished(e -> {
+            simulating = false;
+            refreshScenarios();
+        });
         createPane();
+        refresh();
     }
     
     private void createPane() {
@@ -55,43 +119,36 @@ public class DashboardPane {
         // Wrap in ScrollPane
         scrollPane = new ScrollPane(mainContent);
         scrollPane.setFitToWidth(true);
-        scrollPane.setStyle("-fx-background-color: transparent; " +
-                           "-fx-background: transparent;");
+        scrollPane.getStyleClass().add("content-scroll");
         scrollPane.setPannable(true);
     }
     
     private HBox createStatsCards() {
-        HBox statsBox = new HBox(25);
+        HBox statsBox = new HBox(20);
         statsBox.setAlignment(Pos.CENTER);
         
-        VBox transportCard = createStatCard("🚗 Transport", 
-            calculator.getTransportTotal(), "#10b981");
-        VBox energyCard = createStatCard("⚡ Energy", 
-            calculator.getEnergyTotal(), "#f59e0b");
-        VBox totalCard = createStatCard("🌍 Total Carbon", 
-            calculator.getTotalEmissions(), "#3b82f6");
-        
-        statsBox.getChildren().addAll(transportCard, energyCard, totalCard);
+        for (EmissionCategory category : EmissionCategory.values()) {
+            statsBox.getChildren().add(createStatCard(category.getDisplayName(),
+                totals.categoryTotalProperty(category), category.getColor()));
+        }
+        statsBox.getChildren().add(createStatCard("🌍 Total Carbon", totals.totalProperty(), "#3b82f6"));
         return statsBox;
     }
     
-    private VBox createStatCard(String title, double value, String color) {
+    private VBox createStatCard(String title, ObservableDoubleValue value, String color) {
         VBox card = new VBox(12);
-        card.setPrefSize(260, 150);
+        card.setPrefSize(210, 150);
         card.setAlignment(Pos.CENTER);
-        card.setStyle("-fx-background-color: #1e293b; " +
-                     "-fx-background-radius: 15; " +
-                     "-fx-border-color: " + color + "; " +
-                     "-fx-border-width: 2; " +
-                     "-fx-border-radius: 15; " +
-                     "-fx-effect: dropshadow(gaussian, rgba(0,0,0,0.4), 15, 0, 0, 5);");
+        card.getStyleClass().addAll("card", "stat-card");
+        card.setStyle("-accent-color: " + color + ";");
         card.setPadding(new Insets(25));
         
         Label titleLabel = new Label(title);
         titleLabel.setFont(Font.font("Segoe UI", FontWeight.BOLD, 18));
         titleLabel.setTextFill(Color.web(color));
         
-        Label valueLabel = new Label(String.format("%.2f", value));
+        Label valueLabel = new Label();
+        valueLabel.textProperty().bind(Bindings.format("%.2f", value));
         valueLabel.setFont(Font.font("Segoe UI", FontWeight.BOLD, 32));
         valueLabel.setTextFill(Color.web("#f1f5f9"));
         
@@ -114,98 +171,92 @@ public class DashboardPane {
         
         PieChart pieChart = createPieChart();
         
-        chartBox.getChildren().addAll(chartTitle, pieChart);
+        chartBox.getChildren().addAll(chartTitle, pieChart, createStatisticsCard());
         return chartBox;
     }
     
+    /** One line per source with its typical activity; lines appear once the source is used. */
+    private VBox createStatisticsCard() {
+        VBox card = new VBox(8);
+        card.setPadding(new Insets(25));
+        card.getStyleClass().add("card");
+        card.getChildren().add(createHighlightLabel("📐 Typical Activities"));
+        for (EmissionSource source : EmissionSource.values()) {
+            Label label = createTipLabel("");
+            label.setMaxWidth(450);
+            setShown(label, false);
+            statisticsLabels.put(source, label);
+            card.getChildren().add(label);
+        }
+        bindShown(card, totals.totalProperty().greaterThan(0));
+        return card;
+    }
+    
     private PieChart createPieChart() {
         PieChart chart = new PieChart();
+        pieChart = chart;
         
-        // Get individual breakdowns
-        var transportBreakdown = calculator.getTransportBreakdown();
-        var energyBreakdown = calculator.getEnergyBreakdown();
-        
-        // Add transport slices with individual colors
-        if (transportBreakdown.containsKey("car") && transportBreakdown.get("car") > 0) {
-            PieChart.Data carSlice = new PieChart.Data(
-                "🚗 Car\n" + String.format("%.2f kg", transportBreakdown.get("car")), 
-                transportBreakdown.get("car"));
-            chart.getData().add(carSlice);
-        }
-        
-        if (transportBreakdown.containsKey("bus") && transportBreakdown.get("bus") > 0) {
-            PieChart.Data busSlice = new PieChart.Data(
-                "🚌 Bus\n" + String.format("%.2f kg", transportBreakdown.get("bus")), 
-                transportBreakdown.get("bus"));
-            chart.getData().add(busSlice);
-        }
-        
-        if (transportBreakdown.containsKey("train") && transportBreakdown.get("train") > 0) {
-            PieChart.Data trainSlice = new PieChart.Data(
-                "🚆 Train\n" + String.format("%.2f kg", transportBreakdown.get("train")), 
-                transportBreakdown.get("train"));
-            chart.getData().add(trainSlice);
-        }
-        
-        if (transportBreakdown.containsKey("flight") && transportBreakdown.get("flight") > 0) {
-            PieChart.Data flightSlice = new PieChart.Data(
-                "✈️ Flight\n" + String.format("%.2f kg", transportBreakdown.get("flight")), 
-                transportBreakdown.get("flight"));
-            chart.getData().add(flightSlice);
-        }
-        
-        // Add energy slices
-        if (energyBreakdown.containsKey("electricity") && energyBreakdown.get("electricity") > 0) {
-            PieChart.Data electricitySlice = new PieChart.Data(
-                "💡 Electricity\n" + String.format("%.2f kg", energyBreakdown.get("electricity")), 
-                energyBreakdown.get("electricity"));
-            chart.getData().add(electricitySlice);
-        }
-        
-        if (energyBreakdown.containsKey("naturalGas") && energyBreakdown.get("naturalGas") > 0) {
-            PieChart.Data gasSlice = new PieChart.Data(
-                "🔥 Natural Gas\n" + String.format("%.2f kg", energyBreakdown.get("naturalGas")), 
-                energyBreakdown.get("naturalGas"));
-            chart.getData().add(gasSlice);
+        // Slices are added, updated and removed in place as totals change
+        for (EmissionSource source : EmissionSource.values()) {
+            totals.sourceTotalProperty(source).addListener((obs, oldValue, newValue) ->
+                updateSlice(source, newValue.doubleValue()));
         }
         
         // If no data, show placeholder
-        if (chart.getData().isEmpty()) {
-            PieChart.Data placeholderSlice = new PieChart.Data("No data yet", 1);
-            chart.getData().add(placeholderSlice);
-        }
+        placeholderSlice = new PieChart.Data("No data yet", 1);
+        chart.getData().add(placeholderSlice);
         
         chart.setTitle("Carbon Footprint Breakdown");
         chart.setLegendVisible(true);
         chart.setPrefSize(480, 480);
         chart.setLabelsVisible(true);
         chart.setStartAngle(90);
+        chart.setAnimated(false);
         
-        chart.setStyle("-fx-background-color: #1e293b; " +
-                      "-fx-background-radius: 15; " +
-                      "-fx-border-color: #334155; " +
-                      "-fx-border-width: 1.5; " +
-                      "-fx-border-radius: 15; " +
-                      "-fx-effect: dropshadow(gaussian, rgba(0,0,0,0.4), 15, 0, 0, 5); " +
-                      "-fx-padding: 25;");
-        
-        // Apply custom colors to each slice
-        chart.applyCss();
-        chart.layout();
-        
-        int colorIndex = 0;
-        String[] colors = {"#ef4444", "#10b981", "#3b82f6", "#8b5cf6", "#f59e0b", "#ec4899"};
-        
-        for (PieChart.Data data : chart.getData()) {
-            if (colorIndex < colors.length) {
-                data.getNode().setStyle("-fx-pie-color: " + colors[colorIndex] + ";");
-                colorIndex++;
-            }
-        }
+        chart.getStyleClass().add("card");
         
         return chart;
     }
     
+    private void updateSlice(EmissionSource source, double value) {
+        PieChart.Data slice = slices.get(source);
+        String name = source.getDisplayName() + "\n" + String.format("%.2f kg", value);
+        
+        if (value > 0 && slice == null) {
+            slice = new PieChart.Data(name, value);
+            slices.put(source, slice);
+            pieChart.getData().add(slicePosition(source), slice);
+            slice.getNode().setStyle("-fx-pie-color: " + source.getColor() + ";");
+        } else if (value > 0) {
+            slice.setName(name);
+            slice.setPieValue(value);
+        } else if (slice != null) {
+            slices.remove(source);
+            pieChart.getData().remove(slice);
+        }
+        
+        boolean empty = slices.isEmpty();
+        if (empty && !pieChart.getData().contains(placeholderSlice)) {
+            pieChart.getData().add(placeholderSlice);
+        } else if (!empty) {
+            pieChart.getData().remove(placeholderSlice);
+        }
+    }
+    
+    /** Keeps slices in the same order regardless of which sources appeared first. */
+    private int slicePosition(EmissionSource source) {
+        int position = 0;
+        for (EmissionSource other : EmissionSource.values()) {
+            if (other == source) {
+                break;
+            }
+            if (slices.containsKey(other)) {
+                position++;
+            }
+        }
+        return position;
+    }
+    
     private VBox createTipsColumn() {
         VBox tipsColumn = new VBox(20);
         tipsColumn.setPrefWidth(450);
@@ -218,118 +269,128 @@ public class DashboardPane {
         
         VBox tipsContent = createPersonalizedTips();
         
-        tipsColumn.getChildren().addAll(columnTitle, tipsContent);
+        tipsColumn.getChildren().addAll(columnTitle, createBudgetCard(), tipsContent);
         return tipsColumn;
     }
     
+    private VBox createBudgetCard() {
+        budgetCard = new VBox(10);
+        budgetCard.setPadding(new Insets(25));
+        budgetCard.getStyleClass().add("card");
+        
+        Label budgetTitle = createHighlightLabel("🎯 Your Budgets");
+        budgetCard.getChildren().add(budgetTitle);
+        for (int i = 0; i < SHOWN_BUDGETS; i++) {
+            Label label = createTipLabel("");
+            budgetLabels.add(label);
+            budgetCard.getChildren().add(label);
+        }
+        alertLabel = createWarningLabel("");
+        budgetCard.getChildren().add(alertLabel);
+        return budgetCard;
+    }
+    
     private VBox createPersonalizedTips() {
         VBox tipsBox = new VBox(15);
         tipsBox.setPadding(new Insets(25));
-        tipsBox.setStyle("-fx-background-color: #1e293b; " +
-                        "-fx-background-radius: 15; " +
-                        "-fx-border-color: #10b981; " +
-                        "-fx-border-width: 2; " +
-                        "-fx-border-radius: 15; " +
-                        "-fx-effect: dropshadow(gaussian, rgba(0,0,0,0.4), 15, 0, 0, 5);");
+        tipsBox.getStyleClass().addAll("card", "highlight");
         
         VBox tipsContent = new VBox(12);
         
+        BooleanBinding noEmissions = totals.totalProperty().isEqualTo(0.0, 0.0);
+        
+        Label welcomeTip = createTipLabel("🌟 Start tracking your emissions to get personalized reduction strategies!");
+        bindShown(welcomeTip, noEmissions);
+        
         // Analyze user's emissions and give personalized tips
-        var transportBreakdown = calculator.getTransportBreakdown();
-        var energyBreakdown = calculator.getEnergyBreakdown();
-        double total = calculator.getTotalEmissions();
+        VBox breakdownContent = new VBox(12);
+        bindShown(breakdownContent, noEmissions.not());
         
-        if (total == 0) {
-            Label welcomeTip = createTipLabel("🌟 Start tracking your emissions to get personalized reduction strategies!");
-            tipsContent.getChildren().add(welcomeTip);
-        } else {
-            // Show impact summary
-            Label impactLabel = createHighlightLabel("📊 Your Emission Breakdown");
-            tipsContent.getChildren().add(impactLabel);
-            
-            // Show transport breakdown
-            if (!transportBreakdown.isEmpty()) {
-                Label transportHeader = createHighlightLabel("🚗 Transport:");
-                tipsContent.getChildren().add(transportHeader);
-                
-                if (transportBreakdown.containsKey("car") && transportBreakdown.get("car") > 0) {
-                    double carPct = (transportBreakdown.get("car")/total)*100;
-                    Label carTip = createTipLabel("  🚗 Car: " + String.format("%.2f kg (%.1f%%)", transportBreakdown.get("car"), carPct));
-                    tipsContent.getChildren().add(carTip);
-                }
-                
-                if (transportBreakdown.containsKey("bus") && transportBreakdown.get("bus") > 0) {
-                    double busPct = (transportBreakdown.get("bus")/total)*100;
-                    Label busTip = createTipLabel("  🚌 Bus: " + String.format("%.2f kg (%.1f%%)", transportBreakdown.get("bus"), busPct));
-                    tipsContent.getChildren().add(busTip);
-                }
-                
-                if (transportBreakdown.containsKey("train") && transportBreakdown.get("train") > 0) {
-                    double trainPct = (transportBreakdown.get("train")/total)*100;
-                    Label trainTip = createTipLabel("  🚆 Train: " + String.format("%.2f kg (%.1f%%)", transportBreakdown.get("train"), trainPct));
-                    tipsContent.getChildren().add(trainTip);
-                }
-                
-                if (transportBreakdown.containsKey("flight") && transportBreakdown.get("flight") > 0) {
-                    double flightPct = (transportBreakdown.get("flight")/total)*100;
-                    Label flightTip = createTipLabel("  ✈️ Flight: " + String.format("%.2f kg (%.1f%%)", transportBreakdown.get("flight"), flightPct));
-                    tipsContent.getChildren().add(flightTip);
-                }
-            }
-            
-            // Show energy breakdown
-            if (!energyBreakdown.isEmpty()) {
-                Label energyHeader = createHighlightLabel("⚡ Energy:");
-                tipsContent.getChildren().add(energyHeader);
-                
-                if (energyBreakdown.containsKey("electricity") && energyBreakdown.get("electricity") > 0) {
-                    double elecPct = (energyBreakdown.get("electricity")/total)*100;
-                    Label elecTip = createTipLabel("  💡 Electricity: " + String.format("%.2f kg (%.1f%%)", energyBreakdown.get("electricity"), elecPct));
-                    tipsContent.getChildren().add(elecTip);
-                }
-                
-                if (energyBreakdown.containsKey("naturalGas") && energyBreakdown.get("naturalGas") > 0) {
-                    double gasPct = (energyBreakdown.get("naturalGas")/total)*100;
-                    Label gasTip = createTipLabel("  🔥 Natural Gas: " + String.format("%.2f kg (%.1f%%)", energyBreakdown.get("naturalGas"), gasPct));
-                    tipsContent.getChildren().add(gasTip);
-                }
-            }
-            
-            // Add separator
-            Separator sep = new Separator();
-            sep.setStyle("-fx-padding: 10 0 10 0;");
-            tipsContent.getChildren().add(sep);
-            
-            // Quick reduction tips
-            Label quickWins = createHighlightLabel("⚡ Quick Reduction Tips:");
-            Label qw1 = createTipLabel("• Replace car trips with bus → Save 58% per km");
-            Label qw2 = createTipLabel("• Use train instead of car → Save 80% per km");
-            Label qw3 = createTipLabel("• Switch to LED bulbs → Save 75% on lighting");
-            Label qw4 = createTipLabel("• Carpool to work → Cut commute emissions by 50%");
-            Label qw5 = createTipLabel("• Bike/walk for trips under 5km → 100% reduction");
-            tipsContent.getChildren().addAll(quickWins, qw1, qw2, qw3, qw4, qw5);
-            
-            // Footprint status
-            if (total > 500) {
-                Label highTip = createWarningLabel("⚠️ Your footprint is high - small changes = big impact!");
-                tipsContent.getChildren().add(highTip);
-            } else if (total > 0 && total <= 100) {
-                Label goodTip = createSuccessLabel("✅ Excellent! You're below average - keep it up!");
-                tipsContent.getChildren().add(goodTip);
-            }
+        // Show impact summary
+        Label impactLabel = createHighlightLabel("📊 Your Emission Breakdown");
+        breakdownContent.getChildren().add(impactLabel);
+        
+        // One breakdown section per category
+        for (EmissionCategory category : EmissionCategory.values()) {
+            addBreakdownTips(breakdownContent, category);
         }
         
+        // Add separator
+        Separator sep = new Separator();
+        sep.getStyleClass().add("tips-separator");
+        breakdownContent.getChildren().add(sep);
+        
+        // Savings projected from the recorded activities; a tip shows once it would save anything
+        Label projected = createHighlightLabel("🔮 What Your Changes Would Save:");
+        breakdownContent.getChildren().add(projected);
+        for (int i = 0; i < scenarios.size(); i++) {
+            Label label = createTipLabel("");
+            setShown(label, false);
+            scenarioLabels.add(label);
+            breakdownContent.getChildren().add(label);
+        }
+        
+        // Quick reduction tips
+        Label quickWins = createHighlightLabel("⚡ Quick Reduction Tips:");
+        Label qw1 = createTipLabel("• Switch to LED bulbs → Save 75% on lighting");
+        Label qw2 = createTipLabel("• Carpool to work → Cut commute emissions by 50%");
+        Label qw3 = createTipLabel("• Bike/walk for trips under 5km → 100% reduction");
+        breakdownContent.getChildren().addAll(quickWins, qw1, qw2, qw3);
+        
+        // Footprint status; budget overruns are shown on the budget card
+        Label goodTip = createSuccessLabel("✅ Excellent! You're below average - keep it up!");
+        bindShown(goodTip, totals.totalProperty().greaterThan(0).and(totals.totalProperty().lessThanOrEqualTo(100)));
+        breakdownContent.getChildren().add(goodTip);
+        
+        tipsContent.getChildren().addAll(welcomeTip, breakdownContent);
+        
         tipsBox.getChildren().addAll(tipsContent);
         return tipsBox;
     }
     
+    /**
+     * Adds a category header and one line per source in that category.
+     * The header shows once the category has any recorded activity, each line
+     * once its source has a positive total.
+     */
+    private void addBreakdownTips(VBox content, EmissionCategory category) {
+        Label headerLabel = createHighlightLabel(category.getDisplayName() + ":");
+        BooleanBinding recorded = null;
+        content.getChildren().add(headerLabel);
+        
+        for (EmissionSource source : EmissionSource.values()) {
+            if (source.getCategory() != category) {
+                continue;
+            }
+            var value = totals.sourceTotalProperty(source);
+            var total = totals.totalProperty();
+            Label tip = createTipLabel("");
+            tip.textProperty().bind(Bindings.createStringBinding(() ->
+                "  " + source.getDisplayName() + ": " + String.format("%.2f kg (%.1f%%)",
+                    value.get(), total.get() == 0 ? 0.0 : (value.get() / total.get()) * 100),
+                value, total));
+            bindShown(tip, value.greaterThan(0));
+            content.getChildren().add(tip);
+            
+            BooleanBinding hasCount = totals.sourceCountProperty(source).greaterThan(0);
+            recorded = recorded == null ? hasCount : recorded.or(hasCount);
+        }
+        bindShown(headerLabel, recorded);
+    }
+    
+    /** Shows the node, and lets it take up layout space, only while the condition holds. */
+    private static void bindShown(Node node, BooleanBinding condition) {
+        node.visibleProperty().bind(condition);
+        node.managedProperty().bind(condition);
+    }
+    
     private Label createTipLabel(String text) {
         Label tip = new Label(text);
         tip.setFont(Font.font("Segoe UI", FontWeight.NORMAL, 14));
         tip.setTextFill(Color.web("#cbd5e1"));
         tip.setWrapText(true);
         tip.setMaxWidth(400);
-        tip.setStyle("-fx-padding: 3 0 3 0;");
+        tip.getStyleClass().add("tip-label");
         return tip;
     }
     
@@ -339,7 +400,7 @@ public class DashboardPane {
         label.setTextFill(Color.web("#10b981"));
         label.setWrapText(true);
         label.setMaxWidth(400);
-        label.setStyle("-fx-padding: 8 0 5 0;");
+        label.getStyleClass().add("highlight-label");
         return label;
     }
     
@@ -349,7 +410,7 @@ public class DashboardPane {
         label.setTextFill(Color.web("#f59e0b"));
         label.setWrapText(true);
         label.setMaxWidth(400);
-        label.setStyle("-fx-padding: 5 0 5 0;");
+        label.getStyleClass().add("status-label");
         return label;
     }
     
@@ -359,12 +420,102 @@ public class DashboardPane {
         label.setTextFill(Color.web("#10b981"));
         label.setWrapText(true);
         label.setMaxWidth(400);
-        label.setStyle("-fx-padding: 5 0 5 0;");
+        label.getStyleClass().add("status-label");
         return label;
     }
     
+    /**
+     * Pushes the calculator's current totals into the bound nodes.
+     */
     public void refresh() {
-        createPane();
+        totals.update(calculator.snapshot());
+        refreshBudgets();
+        refreshStatistics();
+        refreshScenarios();
+    }
+    
+    /**
+     * Starts replaying the scenarios in the background if the calculator
+     * changed since the last replay and none ran during the last interval.
+     * The activities are captured here on the FX thread, which records them,
+     * so the replay only reads entries that no longer change and its results
+     * match the captured version. Activities recorded meanwhile are picked
+     * up by the next replay after the pause.
+     */
+    private void refreshScenarios() {
+        long version = calculator.getVersion();
+        if (simulating || version == simulatedVersion) {
+            return;
+        }
+        simulating = true;
+        Supplier<List<ScenarioSimulator.Result>> replay = new ScenarioSimulator(calculator).capture(scenarios);
+        CompletableFuture.supplyAsync(replay)
+            .whenComplete((results, error) -> Platform.runLater(() -> finishScenarios(version, results, error)));
+    }
+    
+    /**
+     * A failed replay is reported and not retried until the calculator
+     * changes again.
+     */
+    private void finishScenarios(long version, List<ScenarioSimulator.Result> results, Throwable error) {
+        simulatedVersion = version;
+        if (error != null) {
+            Throwable cause = error instanceof CompletionException && error.getCause() != null
+                ? error.getCause() : error;
+            System.err.println("Could not project scenario savings: " + cause);
+        } else {
+            showScenarios(results);
+        }
+        scenarioPause.playFromStart();
+    }
+    
+    private void showScenarios(List<ScenarioSimulator.Result> results) {
+        for (int i = 0; i < results.size(); i++) {
+            ScenarioSimulator.Result result = results.get(i);
+            Label label = scenarioLabels.get(i);
+            setShown(label, result.getSavingsKg() >= 0.01);
+            label.setText(String.format(Locale.ROOT, "• %s → save %.2f kg CO₂ (%.1f%% of your footprint)",
+                result.getScenario().getName(), result.getSavingsKg(), result.getSavingsFraction() * 100));
+        }
+    }
+    
+    private void refreshStatistics() {
+        for (EmissionSource source : EmissionSource.values()) {
+            Label label = statisticsLabels.get(source);
+            EmissionStatistics.Summary summary = statistics.summarize(source, EmissionStatistics.Metric.QUANTITY);
+            setShown(label, summary.getCount() > 0);
+            if (summary.getCount() > 0) {
+                label.setText(String.format(Locale.ROOT, "%s %s: median %.1f %s · p95 %.1f · mean %.1f ± %.1f (%d)",
+                    source.getIcon(), source.getLabel(), summary.getMedian(), source.getUnit(), summary.getP95(),
+                    summary.getMean(), summary.getStandardDeviation(), summary.getCount()));
+            }
+        }
+    }
+    
+    private void refreshBudgets() {
+        List<BudgetAlertEngine.Usage> usages = budgets.mostUsed(SHOWN_BUDGETS, System.currentTimeMillis());
+        setShown(budgetCard, !usages.isEmpty());
+        for (int i = 0; i < budgetLabels.size(); i++) {
+            Label label = budgetLabels.get(i);
+            setShown(label, i < usages.size());
+            if (i < usages.size()) {
+                BudgetAlertEngine.Usage usage = usages.get(i);
+                label.setText(String.format(Locale.ROOT, "%s %s: %.2f / %.2f kg (%.0f%%)",
+                    usage.isExceeded() ? "⚠️" : "•", usage.getBudget().getDescription(),
+                    usage.getUsedKg(), usage.getBudget().getLimitKg(), Math.min(usage.getFraction(), 9.99) * 100));
+                label.setTextFill(Color.web(usage.isExceeded() ? "#f59e0b" : "#cbd5e1"));
+            }
+        }
+        List<BudgetAlertEngine.Alert> alerts = budgets.getRecentAlerts();
+        setShown(alertLabel, !alerts.isEmpty());
+        if (!alerts.isEmpty()) {
+            alertLabel.setText("🔔 " + alerts.get(0));
+        }
+    }
+    
+    private static void setShown(Node node, boolean shown) {
+        node.setVisible(shown);
+        node.setManaged(shown);
     }
     
     public ScrollPane getPane() {
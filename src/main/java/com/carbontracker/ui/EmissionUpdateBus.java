@@ -0,0 +1,113 @@
+package com.carbontracker.ui;
+
+import com.carbontracker.model.BatchingSubscriber;
+import com.carbontracker.model.EmissionCalculator;
+import com.carbontracker.model.EmissionEvent;
+import javafx.animation.AnimationTimer;
+import javafx.application.Platform;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Coalesces emission changes into at most one UI refresh per pulse.
+ * <p>
+ * The bus subscribes to the calculator's event stream with a bounded
+ * {@link BatchingSubscriber}. On every JavaFX pulse it drains whatever
+ * arrived since the last frame and, if anything did (or a refresh was
+ * requested), runs its listeners once. Any number of adds between two
+ * frames, from the FX thread or from background ingest, therefore cost one
+ * refresh, and a burst larger than the buffer is dropped by the publisher
+ * rather than queued, since the listeners read the calculator anyway.
+ * <p>
+ * The pulse timer only runs while there is work: the first event or refresh
+ * request after an idle period starts it, and a pulse that finds nothing to
+ * do stops it again, so an idle app does not keep JavaFX rendering frames.
+ */
+public class EmissionUpdateBus {
+    
+    private static final int BUFFER_CAPACITY = 1024;
+    
+    private final EmissionCalculator calculator;
+    private final BatchingSubscriber<EmissionEvent> events = new BatchingSubscriber<>(BUFFER_CAPACITY) {
+        @Override
+        public void onNext(EmissionEvent event) {
+            super.onNext(event);
+            wake();
+        }
+    };
+    private final List<Runnable> listeners = new ArrayList<>();
+    private final AnimationTimer timer;
+    // Set while the timer runs or a start is queued; cleared by an idle pulse
+    private final AtomicBoolean awake = new AtomicBoolean();
+    private volatile boolean started;
+    // The first pulse shows whatever was loaded before the bus started
+    private volatile boolean refreshRequested = true;
+    
+    public EmissionUpdateBus(EmissionCalculator calculator) {
+        this.calculator = calculator;
+        this.timer = new AnimationTimer() {
+            @Override
+            public void handle(long now) {
+                pulse();
+            }
+        };
+    }
+    
+    /** Adds a listener that runs on the FX thread after emissions change. */
+    public void addListener(Runnable listener) {
+        listeners.add(listener);
+    }
+    
+    /**
+     * Requests a refresh on the next pulse even if the calculator's version
+     * has not changed. Safe to call from any thread.
+     */
+    public void requestRefresh() {
+        refreshRequested = true;
+        wake();
+    }
+    
+    public void start() {
+        started = true;
+        calculator.getEventPublisher().subscribe(events);
+        wake();
+    }
+    
+    public void stop() {
+        started = false;
+        timer.stop();
+        awake.set(false);
+        events.cancel();
+    }
+    
+    /** Starts the pulse timer unless it is already running or about to. */
+    private void wake() {
+        if (started && !awake.get() && awake.compareAndSet(false, true)) {
+            Platform.runLater(() -> {
+                if (started) {
+                    timer.start();
+                }
+            });
+        }
+    }
+    
+    private void pulse() {
+        int changes = events.drain(event -> { });
+        if (changes == 0 && !refreshRequested) {
+            timer.stop();
+            awake.set(false);
+            // An event or request that arrived after the drain saw the timer
+            // still awake and did not start it
+            if (events.hasPending() || refreshRequested) {
+                wake();
+            }
+            return;
+        }
+        refreshRequested = false;
+        for (Runnable listener : listeners) {
+            listener.run();
+        }
+    }
+}
@@ -8,6 +8,7 @@ import javafx.scene.layout.*;
 import javafx.scene.paint.Color;
 import javafx.scene.text.Font;
 import javafx.scene.text.FontWeight;
+import javafx.util.Duration;
 
 /**
  * Energy emissions input pane
@@ -16,11 +17,9 @@ public class EnergyPane {
     
     private ScrollPane scrollPane;
     private EmissionCalculator calculator;
-    private Runnable updateCallback;
     
-    public EnergyPane(EmissionCalculator calculator, Runnable updateCallback) {
+    public EnergyPane(EmissionCalculator calculator) {
         this.calculator = calculator;
-        this.updateCallback = updateCallback;
         createPane();
     }
     
@@ -42,12 +41,7 @@ public class EnergyPane {
         grid.setVgap(20);
         grid.setAlignment(Pos.CENTER);
         grid.setPadding(new Insets(25));
-        grid.setStyle("-fx-background-color: #1e293b; " +
-                     "-fx-background-radius: 15; " +
-                     "-fx-border-color: #334155; " +
-                     "-fx-border-width: 1.5; " +
-                     "-fx-border-radius: 15; " +
-                     "-fx-effect: dropshadow(gaussian, rgba(0,0,0,0.4), 15, 0, 0, 5);");
+        grid.getStyleClass().add("card");
         
         // Electricity
         addInputRow(grid, 0, "💡 Electricity", "kWh", 
@@ -65,8 +59,7 @@ public class EnergyPane {
         // Wrap in ScrollPane
         scrollPane = new ScrollPane(mainContent);
         scrollPane.setFitToWidth(true);
-        scrollPane.setStyle("-fx-background-color: transparent; " +
-                           "-fx-background: transparent;");
+        scrollPane.getStyleClass().add("content-scroll");
         scrollPane.setPannable(true);
     }
     
@@ -79,45 +72,16 @@ public class EnergyPane {
         TextField input = new TextField();
         input.setPromptText("Enter " + unit);
         input.setPrefWidth(180);
-        input.setStyle("-fx-font-size: 15px; " +
-                      "-fx-padding: 10; " +
-                      "-fx-background-radius: 6; " +
-                      "-fx-border-color: #dcdde1; " +
-                      "-fx-border-radius: 6;");
+        input.getStyleClass().add("amount-field");
         
         Label unitLabel = new Label(unit);
         unitLabel.setFont(Font.font("Segoe UI", FontWeight.NORMAL, 15));
         unitLabel.setTextFill(Color.web("#7f8c8d"));
         
         Button addButton = new Button("Add");
-        addButton.setStyle("-fx-background-color: " + color + "; " +
-                          "-fx-text-fill: white; " +
-                          "-fx-font-weight: 600; " +
-                          "-fx-font-family: 'Segoe UI'; " +
-                          "-fx-background-radius: 6; " +
-                          "-fx-cursor: hand; " +
-                          "-fx-padding: 10 25; " +
-                          "-fx-effect: dropshadow(gaussian, rgba(0,0,0,0.15), 5, 0, 0, 2);");
-        
-        addButton.setOnMouseEntered(e ->
-            addButton.setStyle("-fx-background-color: derive(" + color + ", -10%); " +
-                              "-fx-text-fill: white; " +
-                              "-fx-font-weight: 600; " +
-                              "-fx-font-family: 'Segoe UI'; " +
-                              "-fx-background-radius: 6; " +
-                              "-fx-cursor: hand; " +
-                              "-fx-padding: 10 25; " +
-                              "-fx-effect: dropshadow(gaussian, rgba(0,0,0,0.25), 8, 0, 0, 3);"));
-        
-        addButton.setOnMouseExited(e ->
-            addButton.setStyle("-fx-background-color: " + color + "; " +
-                              "-fx-text-fill: white; " +
-                              "-fx-font-weight: 600; " +
-                              "-fx-font-family: 'Segoe UI'; " +
-                              "-fx-background-radius: 6; " +
-                              "-fx-cursor: hand; " +
-                              "-fx-padding: 10 25; " +
-                              "-fx-effect: dropshadow(gaussian, rgba(0,0,0,0.15), 5, 0, 0, 2);"));
+        // Hover is handled by the style class; only the accent colour is per row
+        addButton.getStyleClass().add("add-button");
+        addButton.setStyle("-accent-color: " + color + ";");
         
         Label resultLabel = new Label("");
         resultLabel.setFont(Font.font("Segoe UI", FontWeight.BOLD, 13));
@@ -128,18 +92,10 @@ public class EnergyPane {
                 double value = Double.parseDouble(input.getText());
                 if (value > 0) {
                     consumer.consume(value);
-                    updateCallback.run();
                     resultLabel.setText("✓ Added successfully!");
                     input.clear();
                     
-                    new Thread(() -> {
-                        try {
-                            Thread.sleep(2000);
-                            javafx.application.Platform.runLater(() -> resultLabel.setText(""));
-                        } catch (InterruptedException ex) {
-                            ex.printStackTrace();
-                        }
-                    }).start();
+                    UiTimers.clearTextLater(resultLabel, Duration.seconds(2));
                 } else {
                     showError("Please enter a positive number");
                 }
@@ -158,12 +114,7 @@ public class EnergyPane {
     private VBox createInfoAndTipsBox() {
         VBox infoBox = new VBox(18);
         infoBox.setPadding(new Insets(25));
-        infoBox.setStyle("-fx-background-color: #1e293b; " +
-                        "-fx-background-radius: 15; " +
-                        "-fx-border-color: #10b981; " +
-                        "-fx-border-width: 2; " +
-                        "-fx-border-radius: 15; " +
-                        "-fx-effect: dropshadow(gaussian, rgba(0,0,0,0.4), 15, 0, 0, 5);");
+        infoBox.getStyleClass().addAll("card", "highlight");
         
         Label infoTitle = new Label("📊 Emission Factors & Reduction Tips");
         infoTitle.setFont(Font.font("Segoe UI", FontWeight.BOLD, 18));
@@ -180,12 +131,11 @@ public class EnergyPane {
         factorsBox.getChildren().addAll(info1, info2);
         
         Separator sep = new Separator();
-        sep.setStyle("-fx-background-color: #334155;");
         
         Label tipsTitle = new Label("💡 How to Reduce Energy Emissions:");
         tipsTitle.setFont(Font.font("Segoe UI", FontWeight.BOLD, 16));
         tipsTitle.setTextFill(Color.web("#10b981"));
-        tipsTitle.setStyle("-fx-padding: 10 0 5 0;");
+        tipsTitle.getStyleClass().add("tips-title");
         
         VBox tipsContent = new VBox(8);
         Label tip1 = createTipLabel("🌟 Switch to LED bulbs - they use 75% less energy than incandescent");
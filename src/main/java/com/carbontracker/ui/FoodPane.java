@@ -1,6 +1,8 @@
 package com.carbontracker.ui;
 
 import com.carbontracker.model.EmissionCalculator;
+import com.carbontracker.model.EmissionCategory;
+import com.carbontracker.model.EmissionSource;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
 import javafx.scene.control.*;
@@ -8,107 +10,99 @@ import javafx.scene.layout.*;
 import javafx.scene.paint.Color;
 import javafx.scene.text.Font;
 import javafx.scene.text.FontWeight;
+import javafx.util.Duration;
 
 /**
  * Food emissions input pane
  */
 public class FoodPane {
     
-    private VBox pane;
+    private ScrollPane scrollPane;
     private EmissionCalculator calculator;
-    private Runnable updateCallback;
     
-    public FoodPane(EmissionCalculator calculator, Runnable updateCallback) {
+    public FoodPane(EmissionCalculator calculator) {
         this.calculator = calculator;
-        this.updateCallback = updateCallback;
         createPane();
     }
     
     private void createPane() {
-        pane = new VBox(20);
-        pane.setPadding(new Insets(30));
-        pane.setAlignment(Pos.TOP_CENTER);
+        VBox mainContent = new VBox(25);
+        mainContent.setPadding(new Insets(35));
+        mainContent.setAlignment(Pos.TOP_CENTER);
         
-        Label title = new Label("🍽️ Food Emissions");
-        title.setFont(Font.font("Arial", FontWeight.BOLD, 28));
-        title.setTextFill(Color.web("#e53935"));
+        Label title = new Label(EmissionCategory.FOOD.getIcon() + " Food Emissions");
+        title.setFont(Font.font("Segoe UI", FontWeight.BOLD, 32));
+        title.setTextFill(Color.web(EmissionCategory.FOOD.getColor()));
         
         Label subtitle = new Label("Track the carbon footprint of your diet");
-        subtitle.setFont(Font.font("Arial", FontWeight.NORMAL, 14));
-        subtitle.setTextFill(Color.web("#666666"));
+        subtitle.setFont(Font.font("Segoe UI", FontWeight.NORMAL, 15));
+        subtitle.setTextFill(Color.web("#94a3b8"));
         
         GridPane grid = new GridPane();
-        grid.setHgap(20);
-        grid.setVgap(15);
+        grid.setHgap(25);
+        grid.setVgap(20);
         grid.setAlignment(Pos.CENTER);
-        grid.setPadding(new Insets(20));
-        grid.setStyle("-fx-background-color: white; " +
-                     "-fx-background-radius: 15; " +
-                     "-fx-effect: dropshadow(gaussian, rgba(0,0,0,0.2), 10, 0, 0, 5);");
-        
-        // Beef
-        addInputRow(grid, 0, "🥩 Beef", "kg", 
-            value -> calculator.addBeefEmission(value), "#d32f2f");
-        
-        // Pork
-        addInputRow(grid, 1, "🥓 Pork", "kg", 
-            value -> calculator.addPorkEmission(value), "#e64a19");
-        
-        // Chicken
-        addInputRow(grid, 2, "🍗 Chicken", "kg", 
-            value -> calculator.addChickenEmission(value), "#f57c00");
-        
-        // Vegetarian meals
-        addVegetarianRow(grid, 3);
+        grid.setPadding(new Insets(25));
+        grid.getStyleClass().add("card");
+        
+        // Meat by weight
+        addInputRow(grid, 0, EmissionSource.BEEF, value -> calculator.addBeefEmission(value));
+        addInputRow(grid, 1, EmissionSource.PORK, value -> calculator.addPorkEmission(value));
+        addInputRow(grid, 2, EmissionSource.CHICKEN, value -> calculator.addChickenEmission(value));
+        
+        // Vegetarian meals are counted, not weighed
+        addInputRow(grid, 3, EmissionSource.VEGETARIAN, value -> {
+            if (value != Math.rint(value)) {
+                throw new NumberFormatException();
+            }
+            calculator.addVegetarianMeal((int) value);
+        });
         
         // Info box
         VBox infoBox = createInfoBox();
         
-        pane.getChildren().addAll(title, subtitle, grid, infoBox);
+        mainContent.getChildren().addAll(title, subtitle, grid, infoBox);
+        
+        // Wrap in ScrollPane
+        scrollPane = new ScrollPane(mainContent);
+        scrollPane.setFitToWidth(true);
+        scrollPane.getStyleClass().add("content-scroll");
+        scrollPane.setPannable(true);
     }
     
-    private void addInputRow(GridPane grid, int row, String label, String unit, 
-                            EmissionConsumer consumer, String color) {
-        Label nameLabel = new Label(label);
-        nameLabel.setFont(Font.font("Arial", FontWeight.BOLD, 16));
+    private void addInputRow(GridPane grid, int row, EmissionSource source, EmissionConsumer consumer) {
+        String color = source.getColor();
+        Label nameLabel = new Label(source.getDisplayName());
+        nameLabel.setFont(Font.font("Segoe UI", FontWeight.BOLD, 17));
         nameLabel.setTextFill(Color.web(color));
         
         TextField input = new TextField();
-        input.setPromptText("Enter " + unit);
-        input.setPrefWidth(150);
-        input.setStyle("-fx-font-size: 14px; -fx-padding: 8;");
+        input.setPromptText("Enter " + source.getUnit());
+        input.setPrefWidth(180);
+        input.getStyleClass().add("amount-field");
         
-        Label unitLabel = new Label(unit);
-        unitLabel.setFont(Font.font("Arial", FontWeight.NORMAL, 14));
+        Label unitLabel = new Label(source.getUnit());
+        unitLabel.setFont(Font.font("Segoe UI", FontWeight.NORMAL, 15));
+        unitLabel.setTextFill(Color.web("#7f8c8d"));
         
         Button addButton = new Button("Add");
-        addButton.setStyle("-fx-background-color: " + color + "; " +
-                          "-fx-text-fill: white; " +
-                          "-fx-font-weight: bold; " +
-                          "-fx-background-radius: 8; " +
-                          "-fx-cursor: hand;");
+        // Hover is handled by the style class; only the accent colour is per row
+        addButton.getStyleClass().add("add-button");
+        addButton.setStyle("-accent-color: " + color + ";");
         
         Label resultLabel = new Label("");
-        resultLabel.setFont(Font.font("Arial", FontWeight.BOLD, 12));
-        resultLabel.setTextFill(Color.web("#43a047"));
+        resultLabel.setFont(Font.font("Segoe UI", FontWeight.BOLD, 13));
+        resultLabel.setTextFill(Color.web("#27ae60"));
         
         addButton.setOnAction(e -> {
             try {
                 double value = Double.parseDouble(input.getText());
                 if (value > 0) {
                     consumer.consume(value);
-                    updateCallback.run();
                     resultLabel.setText("✓ Added successfully!");
                     input.clear();
                     
-                    new Thread(() -> {
-                        try {
-                            Thread.sleep(2000);
-                            javafx.application.Platform.runLater(() -> resultLabel.setText(""));
-                        } catch (InterruptedException ex) {
-                            ex.printStackTrace();
-                        }
-                    }).start();
+                    UiTimers.clearTextLater(resultLabel, Duration.seconds(2));
                 } else {
                     showError("Please enter a positive number");
                 }
@@ -124,90 +118,53 @@ public class FoodPane {
         grid.add(resultLabel, 4, row);
     }
     
-    private void addVegetarianRow(GridPane grid, int row) {
-        Label nameLabel = new Label("🥗 Vegetarian Meals");
-        nameLabel.setFont(Font.font("Arial", FontWeight.BOLD, 16));
-        nameLabel.setTextFill(Color.web("#43a047"));
-        
-        TextField input = new TextField();
-        input.setPromptText("Enter number");
-        input.setPrefWidth(150);
-        input.setStyle("-fx-font-size: 14px; -fx-padding: 8;");
+    private VBox createInfoBox() {
+        VBox infoBox = new VBox(18);
+        infoBox.setPadding(new Insets(25));
+        infoBox.getStyleClass().addAll("card", "highlight");
+        
+        Label infoTitle = new Label("📊 Emission Factors & Reduction Tips");
+        infoTitle.setFont(Font.font("Segoe UI", FontWeight.BOLD, 18));
+        infoTitle.setTextFill(Color.web("#10b981"));
+        
+        VBox factorsBox = new VBox(8);
+        Label info1 = new Label("🥩 Beef: 27.0 kg CO₂ per kg (highest impact!)");
+        Label info2 = new Label("🥓 Pork: 12.1 kg CO₂ per kg");
+        Label info3 = new Label("🍗 Chicken: 6.9 kg CO₂ per kg");
+        Label info4 = new Label("🥗 Vegetarian meal: 2.0 kg CO₂ per meal");
+        
+        for (Label info : new Label[]{info1, info2, info3, info4}) {
+            info.setFont(Font.font("Segoe UI", FontWeight.NORMAL, 14));
+            info.setTextFill(Color.web("#cbd5e1"));
+        }
+        factorsBox.getChildren().addAll(info1, info2, info3, info4);
         
-        Label unitLabel = new Label("meals");
-        unitLabel.setFont(Font.font("Arial", FontWeight.NORMAL, 14));
+        Separator sep = new Separator();
         
-        Button addButton = new Button("Add");
-        addButton.setStyle("-fx-background-color: #43a047; " +
-                          "-fx-text-fill: white; " +
-                          "-fx-font-weight: bold; " +
-                          "-fx-background-radius: 8; " +
-                          "-fx-cursor: hand;");
+        Label tipsTitle = new Label("💡 How to Reduce Food Emissions:");
+        tipsTitle.setFont(Font.font("Segoe UI", FontWeight.BOLD, 16));
+        tipsTitle.setTextFill(Color.web("#10b981"));
+        tipsTitle.getStyleClass().add("tips-title");
         
-        Label resultLabel = new Label("");
-        resultLabel.setFont(Font.font("Arial", FontWeight.BOLD, 12));
-        resultLabel.setTextFill(Color.web("#43a047"));
+        VBox tipsContent = new VBox(8);
+        Label tip1 = createTipLabel("🐄 Reducing meat consumption is one of the most effective ways to lower your footprint");
+        Label tip2 = createTipLabel("🍗 Swap beef for chicken - about 75% less CO₂ per kg");
+        Label tip3 = createTipLabel("🥗 Try one or two meat-free days a week");
+        Label tip4 = createTipLabel("🗑️ Plan meals to avoid food waste");
         
-        addButton.setOnAction(e -> {
-            try {
-                int value = Integer.parseInt(input.getText());
-                if (value > 0) {
-                    calculator.addVegetarianMeal(value);
-                    updateCallback.run();
-                    resultLabel.setText("✓ Added successfully!");
-                    input.clear();
-                    
-                    new Thread(() -> {
-                        try {
-                            Thread.sleep(2000);
-                            javafx.application.Platform.runLater(() -> resultLabel.setText(""));
-                        } catch (InterruptedException ex) {
-                            ex.printStackTrace();
-                        }
-                    }).start();
-                } else {
-                    showError("Please enter a positive number");
-                }
-            } catch (NumberFormatException ex) {
-                showError("Please enter a valid number");
-            }
-        });
+        tipsContent.getChildren().addAll(tip1, tip2, tip3, tip4);
         
-        grid.add(nameLabel, 0, row);
-        grid.add(input, 1, row);
-        grid.add(unitLabel, 2, row);
-        grid.add(addButton, 3, row);
-        grid.add(resultLabel, 4, row);
+        infoBox.getChildren().addAll(infoTitle, factorsBox, sep, tipsTitle, tipsContent);
+        return infoBox;
     }
     
-    private VBox createInfoBox() {
-        VBox infoBox = new VBox(10);
-        infoBox.setPadding(new Insets(20));
-        infoBox.setStyle("-fx-background-color: #ffebee; " +
-                        "-fx-background-radius: 15; " +
-                        "-fx-border-color: #e53935; " +
-                        "-fx-border-width: 2; " +
-                        "-fx-border-radius: 15;");
-        
-        Label infoTitle = new Label("ℹ️ Emission Factors");
-        infoTitle.setFont(Font.font("Arial", FontWeight.BOLD, 16));
-        infoTitle.setTextFill(Color.web("#c62828"));
-        
-        Label info1 = new Label("• Beef: 27.0 kg CO₂ per kg (highest impact!)");
-        Label info2 = new Label("• Pork: 12.1 kg CO₂ per kg");
-        Label info3 = new Label("• Chicken: 6.9 kg CO₂ per kg");
-        Label info4 = new Label("• Vegetarian meal: 2.0 kg CO₂ per meal");
-        Label tip = new Label("\n💡 Tip: Reducing meat consumption is one of the most effective ways to lower your carbon footprint!");
-        tip.setStyle("-fx-font-style: italic;");
-        tip.setWrapText(true);
-        
-        for (Label info : new Label[]{info1, info2, info3, info4, tip}) {
-            info.setFont(Font.font("Arial", FontWeight.NORMAL, 13));
-            info.setTextFill(Color.web("#b71c1c"));
-        }
-        
-        infoBox.getChildren().addAll(infoTitle, info1, info2, info3, info4, tip);
-        return infoBox;
+    private Label createTipLabel(String text) {
+        Label label = new Label(text);
+        label.setFont(Font.font("Segoe UI", FontWeight.NORMAL, 14));
+        label.setTextFill(Color.web("#cbd5e1"));
+        label.setWrapText(true);
+        label.setMaxWidth(800);
+        return label;
     }
     
     private void showError(String message) {
@@ -218,8 +175,8 @@ public class FoodPane {
         alert.showAndWait();
     }
     
-    public VBox getPane() {
-        return pane;
+    public ScrollPane getPane() {
+        return scrollPane;
     }
     
     @FunctionalInterface
@@ -0,0 +1,275 @@
+package com.carbontracker.ui;
+
+import com.carbontracker.model.EmissionCalculator;
+import com.carbontracker.model.EmissionRollup;
+import com.carbontracker.model.EmissionSource;
+import com.carbontracker.model.EmissionTrend;
+import javafx.geometry.Insets;
+import javafx.geometry.Pos;
+import javafx.scene.chart.LineChart;
+import javafx.scene.chart.NumberAxis;
+import javafx.scene.chart.XYChart;
+import javafx.scene.control.Button;
+import javafx.scene.control.ComboBox;
+import javafx.scene.control.Label;
+import javafx.scene.input.MouseEvent;
+import javafx.scene.input.ScrollEvent;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.Priority;
+import javafx.scene.layout.VBox;
+import javafx.scene.paint.Color;
+import javafx.scene.text.Font;
+import javafx.scene.text.FontWeight;
+import javafx.util.StringConverter;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * History pane showing emissions over time as a line chart.
+ * Only the visible range is loaded, from the calculator's rollups at the
+ * finest granularity that keeps it under {@value #MAX_BUCKETS} buckets, and
+ * the result is downsampled to about one point per horizontal pixel before it
+ * reaches the chart. The chart therefore holds a bounded number of points no
+ * matter how many years of data exist. Dragging pans and scrolling zooms;
+ * each reloads the new range, which is kept within the recorded data plus a
+ * margin.
+ */
+public class HistoryPane {
+    
+    private static final long HOUR_MILLIS = 3_600_000L;
+    private static final long DAY_MILLIS = 24 * HOUR_MILLIS;
+    private static final long MIN_RANGE = 6 * HOUR_MILLIS;
+    private static final long MIN_MARGIN = 7 * DAY_MILLIS;
+    private static final int MAX_BUCKETS = 5000;
+    private static final int MIN_POINTS = 200;
+    
+    private static final DateTimeFormatter HOUR_FORMAT = DateTimeFormatter.ofPattern("MM-dd HH:mm").withZone(ZoneOffset.UTC);
+    private static final DateTimeFormatter DAY_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd").withZone(ZoneOffset.UTC);
+    private static final DateTimeFormatter MONTH_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM").withZone(ZoneOffset.UTC);
+    
+    private VBox pane;
+    private EmissionCalculator calculator;
+    
+    private NumberAxis timeAxis;
+    private LineChart<Number, Number> chart;
+    private final XYChart.Series<Number, Number> series = new XYChart.Series<>();
+    private ComboBox<String> sourceBox;
+    private Label rangeLabel;
+    
+    private long viewFrom;
+    private long viewTo;
+    private EmissionRollup.Granularity granularity = EmissionRollup.Granularity.DAY;
+    private double dragStartX;
+    private long dragFrom;
+    private long dragTo;
+    
+    public HistoryPane(EmissionCalculator calculator) {
+        this.calculator = calculator;
+        createPane();
+        fitToData();
+    }
+    
+    private void createPane() {
+        pane = new VBox(20);
+        pane.setPadding(new Insets(35));
+        pane.setAlignment(Pos.TOP_CENTER);
+        
+        Label title = new Label("📉 Emission History");
+        title.setFont(Font.font("Segoe UI", FontWeight.BOLD, 32));
+        title.setTextFill(Color.web("#3b82f6"));
+        
+        Label subtitle = new Label("Drag to pan, scroll to zoom");
+        subtitle.setFont(Font.font("Segoe UI", FontWeight.NORMAL, 15));
+        subtitle.setTextFill(Color.web("#94a3b8"));
+        
+        HBox controls = createControls();
+        
+        createChart();
+        VBox.setVgrow(chart, Priority.ALWAYS);
+        
+        pane.getChildren().addAll(title, subtitle, controls, chart);
+    }
+    
+    private HBox createControls() {
+        HBox controls = new HBox(15);
+        controls.setAlignment(Pos.CENTER);
+        
+        sourceBox = new ComboBox<>();
+        sourceBox.getItems().add("All sources");
+        for (EmissionSource source : EmissionSource.values()) {
+            sourceBox.getItems().add(source.getKey());
+        }
+        sourceBox.getSelectionModel().select(0);
+        sourceBox.setOnAction(e -> loadVisibleRange());
+        
+        Button fitButton = new Button("Fit to data");
+        fitButton.getStyleClass().add("action-button");
+        fitButton.setOnAction(e -> fitToData());
+        
+        rangeLabel = new Label();
+        rangeLabel.setFont(Font.font("Segoe UI", FontWeight.NORMAL, 14));
+        rangeLabel.setTextFill(Color.web("#94a3b8"));
+        
+        controls.getChildren().addAll(sourceBox, fitButton, rangeLabel);
+        return controls;
+    }
+    
+    private void createChart() {
+        timeAxis = new NumberAxis();
+        timeAxis.setAutoRanging(false);
+        timeAxis.setMinorTickVisible(false);
+        timeAxis.setTickLabelFormatter(new StringConverter<Number>() {
+            @Override
+            public String toString(Number value) {
+                return timeFormat().format(Instant.ofEpochMilli(value.longValue()));
+            }
+            
+            @Override
+            public Number fromString(String text) {
+                // Tick labels are only displayed, never edited
+                return null;
+            }
+        });
+        
+        NumberAxis valueAxis = new NumberAxis();
+        valueAxis.setLabel("kg CO₂");
+        valueAxis.setForceZeroInRange(true);
+        
+        chart = new LineChart<>(timeAxis, valueAxis);
+        chart.setAnimated(false);
+        chart.setCreateSymbols(false);
+        chart.setLegendVisible(false);
+        chart.setMinHeight(400);
+        chart.getData().add(series);
+        chart.getStyleClass().add("card");
+        
+        chart.addEventHandler(MouseEvent.MOUSE_PRESSED, e -> {
+            dragStartX = e.getX();
+            dragFrom = viewFrom;
+            dragTo = viewTo;
+        });
+        chart.addEventHandler(MouseEvent.MOUSE_DRAGGED, e -> {
+            double width = timeAxis.getWidth();
+            if (width > 0) {
+                long shift = (long) ((e.getX() - dragStartX) / width * (dragTo - dragFrom));
+                setRange(dragFrom - shift, dragTo - shift);
+            }
+        });
+        chart.addEventHandler(ScrollEvent.SCROLL, e -> {
+            if (e.getDeltaY() == 0) {
+                return;
+            }
+            double factor = e.getDeltaY() > 0 ? 0.8 : 1.25;
+            double axisX = timeAxis.sceneToLocal(e.getSceneX(), e.getSceneY()).getX();
+            long anchor = timeAxis.getValueForDisplay(axisX).longValue();
+            anchor = Math.max(viewFrom, Math.min(viewTo, anchor));
+            setRange(anchor - (long) ((anchor - viewFrom) * factor),
+                anchor + (long) ((viewTo - anchor) * factor));
+            e.consume();
+        });
+    }
+    
+    /** Shows everything recorded so far, or the last 30 days if nothing is. */
+    public void fitToData() {
+        long[] extent = dataExtent();
+        setRange(extent[0], extent[1]);
+    }
+    
+    /** Days covered by recorded data, or the last 30 days if there is none. */
+    private long[] dataExtent() {
+        EmissionRollup rollup = calculator.getRollup();
+        EmissionRollup.Granularity day = EmissionRollup.Granularity.DAY;
+        if (rollup.isEmpty()) {
+            long today = day.bucketStart(System.currentTimeMillis());
+            return new long[] {today - 29 * DAY_MILLIS, today + DAY_MILLIS};
+        }
+        return new long[] {rollup.firstBucketStart(day), day.nextBucket(rollup.lastBucketStart(day))};
+    }
+    
+    /**
+     * Sets the visible range, zoomed out no further than the data extent
+     * plus a margin of a tenth of it (at least a week) on each side, and
+     * panned no further out than that either.
+     */
+    private void setRange(long from, long to) {
+        if (to - from < MIN_RANGE) {
+            long middle = from + (to - from) / 2;
+            from = middle - MIN_RANGE / 2;
+            to = middle + MIN_RANGE / 2;
+        }
+        long[] extent = dataExtent();
+        long margin = Math.max(MIN_MARGIN, (extent[1] - extent[0]) / 10);
+        long lowest = extent[0] - margin;
+        long highest = extent[1] + margin;
+        if (to - from >= highest - lowest) {
+            from = lowest;
+            to = highest;
+        } else if (from < lowest) {
+            to += lowest - from;
+            from = lowest;
+        } else if (to > highest) {
+            from -= to - highest;
+            to = highest;
+        }
+        viewFrom = from;
+        viewTo = to;
+        loadVisibleRange();
+    }
+    
+    /**
+     * Reloads the visible range, e.g. after new emissions were recorded.
+     */
+    public void refresh() {
+        loadVisibleRange();
+    }
+    
+    private void loadVisibleRange() {
+        long range = viewTo - viewFrom;
+        if (range / HOUR_MILLIS <= MAX_BUCKETS) {
+            granularity = EmissionRollup.Granularity.HOUR;
+        } else if (range / DAY_MILLIS <= MAX_BUCKETS) {
+            granularity = EmissionRollup.Granularity.DAY;
+        } else {
+            granularity = EmissionRollup.Granularity.MONTH;
+        }
+        
+        int selected = sourceBox.getSelectionModel().getSelectedIndex();
+        EmissionSource source = selected > 0 ? EmissionSource.byOrdinal(selected - 1) : null;
+        EmissionTrend trend = calculator.getTrend(granularity, source, granularity.bucketStart(viewFrom), viewTo);
+        int maxPoints = Math.max(MIN_POINTS, (int) timeAxis.getWidth());
+        EmissionTrend points = trend.downsample(maxPoints);
+        
+        List<XYChart.Data<Number, Number>> data = new ArrayList<>(points.size());
+        for (int i = 0; i < points.size(); i++) {
+            data.add(new XYChart.Data<>(points.getBucketStart(i), points.getTotal(i)));
+        }
+        timeAxis.setLowerBound(viewFrom);
+        timeAxis.setUpperBound(viewTo);
+        timeAxis.setTickUnit(range / 8.0);
+        series.getData().setAll(data);
+        
+        String bucketName = granularity == EmissionRollup.Granularity.HOUR ? "Hourly"
+            : granularity == EmissionRollup.Granularity.DAY ? "Daily" : "Monthly";
+        rangeLabel.setText(String.format("%s totals, %s – %s (%d of %d points)",
+            bucketName, DAY_FORMAT.format(Instant.ofEpochMilli(viewFrom)),
+            DAY_FORMAT.format(Instant.ofEpochMilli(viewTo - 1)), points.size(), trend.size()));
+    }
+    
+    private DateTimeFormatter timeFormat() {
+        switch (granularity) {
+            case HOUR:
+                return HOUR_FORMAT;
+            case DAY:
+                return DAY_FORMAT;
+            default:
+                return MONTH_FORMAT;
+        }
+    }
+    
+    public VBox getPane() {
+        return pane;
+    }
+}
@@ -0,0 +1,60 @@
+package com.carbontracker.ui;
+
+import com.carbontracker.model.EmissionCategory;
+import com.carbontracker.model.EmissionSnapshot;
+import com.carbontracker.model.EmissionSource;
+import javafx.beans.property.ReadOnlyDoubleProperty;
+import javafx.beans.property.ReadOnlyDoubleWrapper;
+import javafx.beans.property.ReadOnlyLongProperty;
+import javafx.beans.property.ReadOnlyLongWrapper;
+
+/**
+ * JavaFX properties mirroring the calculator's totals.
+ * Views bind to these instead of re-reading the calculator; {@link #update}
+ * only fires listeners for values that actually changed, so a refresh only
+ * touches the nodes whose numbers moved. Must be used on the FX thread.
+ */
+public class ObservableEmissionTotals {
+    
+    private final ReadOnlyDoubleWrapper[] sourceTotals = new ReadOnlyDoubleWrapper[EmissionSource.COUNT];
+    private final ReadOnlyLongWrapper[] sourceCounts = new ReadOnlyLongWrapper[EmissionSource.COUNT];
+    private final ReadOnlyDoubleWrapper[] categoryTotals = new ReadOnlyDoubleWrapper[EmissionCategory.COUNT];
+    private final ReadOnlyDoubleWrapper total = new ReadOnlyDoubleWrapper();
+    
+    public ObservableEmissionTotals() {
+        for (int i = 0; i < EmissionSource.COUNT; i++) {
+            sourceTotals[i] = new ReadOnlyDoubleWrapper();
+            sourceCounts[i] = new ReadOnlyLongWrapper();
+        }
+        for (int i = 0; i < EmissionCategory.COUNT; i++) {
+            categoryTotals[i] = new ReadOnlyDoubleWrapper();
+        }
+    }
+    
+    public void update(EmissionSnapshot snapshot) {
+        for (EmissionSource source : EmissionSource.values()) {
+            sourceCounts[source.ordinal()].set(snapshot.getSourceCount(source));
+            sourceTotals[source.ordinal()].set(snapshot.getSourceTotal(source));
+        }
+        for (EmissionCategory category : EmissionCategory.values()) {
+            categoryTotals[category.ordinal()].set(snapshot.getCategoryTotal(category));
+        }
+        total.set(snapshot.getTotal());
+    }
+    
+    public ReadOnlyDoubleProperty sourceTotalProperty(EmissionSource source) {
+        return sourceTotals[source.ordinal()].getReadOnlyProperty();
+    }
+    
+    public ReadOnlyLongProperty sourceCountProperty(EmissionSource source) {
+        return sourceCounts[source.ordinal()].getReadOnlyProperty();
+    }
+    
+    public ReadOnlyDoubleProperty categoryTotalProperty(EmissionCategory category) {
+        return categoryTotals[category.ordinal()].getReadOnlyProperty();
+    }
+    
+    public ReadOnlyDoubleProperty totalProperty() {
+        return total.getReadOnlyProperty();
+    }
+}
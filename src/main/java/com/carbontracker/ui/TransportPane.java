@@ -1,6 +1,8 @@
 package com.carbontracker.ui;
 
 import com.carbontracker.model.EmissionCalculator;
+import com.carbontracker.model.EmissionCategory;
+import com.carbontracker.model.EmissionSource;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
 import javafx.scene.control.*;
@@ -8,6 +10,8 @@ import javafx.scene.layout.*;
 import javafx.scene.paint.Color;
 import javafx.scene.text.Font;
 import javafx.scene.text.FontWeight;
+import javafx.util.Duration;
+import java.util.Locale;
 
 /**
  * Transport emissions input pane
@@ -16,11 +20,9 @@ public class TransportPane {
     
     private ScrollPane scrollPane;
     private EmissionCalculator calculator;
-    private Runnable updateCallback;
     
-    public TransportPane(EmissionCalculator calculator, Runnable updateCallback) {
+    public TransportPane(EmissionCalculator calculator) {
         this.calculator = calculator;
-        this.updateCallback = updateCallback;
         createPane();
     }
     
@@ -42,12 +44,7 @@ public class TransportPane {
         grid.setVgap(20);
         grid.setAlignment(Pos.CENTER);
         grid.setPadding(new Insets(25));
-        grid.setStyle("-fx-background-color: #1e293b; " +
-                     "-fx-background-radius: 15; " +
-                     "-fx-border-color: #334155; " +
-                     "-fx-border-width: 1.5; " +
-                     "-fx-border-radius: 15; " +
-                     "-fx-effect: dropshadow(gaussian, rgba(0,0,0,0.4), 15, 0, 0, 5);");
+        grid.getStyleClass().add("card");
         
         // Car
         addInputRow(grid, 0, "🚗 Car", "kilometers", 
@@ -73,8 +70,7 @@ public class TransportPane {
         // Wrap in ScrollPane
         scrollPane = new ScrollPane(mainContent);
         scrollPane.setFitToWidth(true);
-        scrollPane.setStyle("-fx-background-color: transparent; " +
-                           "-fx-background: transparent;");
+        scrollPane.getStyleClass().add("content-scroll");
         scrollPane.setPannable(true);
     }
     
@@ -87,45 +83,16 @@ public class TransportPane {
         TextField input = new TextField();
         input.setPromptText("Enter " + unit);
         input.setPrefWidth(180);
-        input.setStyle("-fx-font-size: 15px; " +
-                      "-fx-padding: 10; " +
-                      "-fx-background-radius: 6; " +
-                      "-fx-border-color: #dcdde1; " +
-                      "-fx-border-radius: 6;");
+        input.getStyleClass().add("amount-field");
         
         Label unitLabel = new Label(unit);
         unitLabel.setFont(Font.font("Segoe UI", FontWeight.NORMAL, 15));
         unitLabel.setTextFill(Color.web("#7f8c8d"));
         
         Button addButton = new Button("Add");
-        addButton.setStyle("-fx-background-color: " + color + "; " +
-                          "-fx-text-fill: white; " +
-                          "-fx-font-weight: 600; " +
-                          "-fx-font-family: 'Segoe UI'; " +
-                          "-fx-background-radius: 6; " +
-                          "-fx-cursor: hand; " +
-                          "-fx-padding: 10 25; " +
-                          "-fx-effect: dropshadow(gaussian, rgba(0,0,0,0.15), 5, 0, 0, 2);");
-        
-        addButton.setOnMouseEntered(e ->
-            addButton.setStyle("-fx-background-color: derive(" + color + ", -10%); " +
-                              "-fx-text-fill: white; " +
-                              "-fx-font-weight: 600; " +
-                              "-fx-font-family: 'Segoe UI'; " +
-                              "-fx-background-radius: 6; " +
-                              "-fx-cursor: hand; " +
-                              "-fx-padding: 10 25; " +
-                              "-fx-effect: dropshadow(gaussian, rgba(0,0,0,0.25), 8, 0, 0, 3);"));
-        
-        addButton.setOnMouseExited(e ->
-            addButton.setStyle("-fx-background-color: " + color + "; " +
-                              "-fx-text-fill: white; " +
-                              "-fx-font-weight: 600; " +
-                              "-fx-font-family: 'Segoe UI'; " +
-                              "-fx-background-radius: 6; " +
-                              "-fx-cursor: hand; " +
-                              "-fx-padding: 10 25; " +
-                              "-fx-effect: dropshadow(gaussian, rgba(0,0,0,0.15), 5, 0, 0, 2);"));
+        // Hover is handled by the style class; only the accent colour is per row
+        addButton.getStyleClass().add("add-button");
+        addButton.setStyle("-accent-color: " + color + ";");
         
         Label resultLabel = new Label("");
         resultLabel.setFont(Font.font("Segoe UI", FontWeight.BOLD, 13));
@@ -136,19 +103,11 @@ public class TransportPane {
                 double value = Double.parseDouble(input.getText());
                 if (value > 0) {
                     consumer.consume(value);
-                    updateCallback.run();
                     resultLabel.setText("✓ Added successfully!");
                     input.clear();
                     
                     // Clear success message after 2 seconds
-                    new Thread(() -> {
-                        try {
-                            Thread.sleep(2000);
-                            javafx.application.Platform.runLater(() -> resultLabel.setText(""));
-                        } catch (InterruptedException ex) {
-                            ex.printStackTrace();
-                        }
-                    }).start();
+                    UiTimers.clearTextLater(resultLabel, Duration.seconds(2));
                 } else {
                     showError("Please enter a positive number");
                 }
@@ -167,42 +126,44 @@ public class TransportPane {
     private VBox createInfoAndTipsBox() {
         VBox infoBox = new VBox(18);
         infoBox.setPadding(new Insets(25));
-        infoBox.setStyle("-fx-background-color: #1e293b; " +
-                        "-fx-background-radius: 15; " +
-                        "-fx-border-color: #10b981; " +
-                        "-fx-border-width: 2; " +
-                        "-fx-border-radius: 15; " +
-                        "-fx-effect: dropshadow(gaussian, rgba(0,0,0,0.4), 15, 0, 0, 5);");
+        infoBox.getStyleClass().addAll("card", "highlight");
         
         Label infoTitle = new Label("📊 Emission Factors & Greener Alternatives");
         infoTitle.setFont(Font.font("Segoe UI", FontWeight.BOLD, 18));
         infoTitle.setTextFill(Color.web("#10b981"));
         
+        // Factors currently in effect, compared with the car
         VBox factorsBox = new VBox(8);
-        Label info1 = new Label("🚗 Car: 0.21 kg CO₂/km (highest individual impact)");
-        Label info2 = new Label("🚌 Bus: 0.089 kg CO₂/km (57% less than car)");
-        Label info3 = new Label("🚆 Train: 0.041 kg CO₂/km (80% less than car)");
-        Label info4 = new Label("✈️ Flight: 0.255 kg CO₂/km (consider for long distances only)");
-        
-        for (Label info : new Label[]{info1, info2, info3, info4}) {
+        double carFactor = currentFactor(EmissionSource.CAR);
+        for (EmissionSource source : EmissionSource.values()) {
+            if (source.getCategory() != EmissionCategory.TRANSPORT) {
+                continue;
+            }
+            double factor = currentFactor(source);
+            String comparison = source == EmissionSource.CAR || carFactor <= 0 ? ""
+                : String.format(Locale.ROOT, " (%.0f%% %s than car)",
+                    Math.abs(1 - factor / carFactor) * 100, factor <= carFactor ? "less" : "more");
+            Label info = new Label(String.format(Locale.ROOT, "%s %s: %.3f kg CO₂/km%s",
+                source.getIcon(), source.getLabel(), factor, comparison));
             info.setFont(Font.font("Segoe UI", FontWeight.NORMAL, 14));
             info.setTextFill(Color.web("#cbd5e1"));
+            factorsBox.getChildren().add(info);
         }
-        factorsBox.getChildren().addAll(info1, info2, info3, info4);
         
         Separator sep = new Separator();
-        sep.setStyle("-fx-background-color: #334155;");
         
         Label tipsTitle = new Label("💡 Smart Ways to Reduce Transport Emissions:");
         tipsTitle.setFont(Font.font("Segoe UI", FontWeight.BOLD, 16));
         tipsTitle.setTextFill(Color.web("#10b981"));
-        tipsTitle.setStyle("-fx-padding: 10 0 5 0;");
+        tipsTitle.getStyleClass().add("tips-title");
         
         VBox tipsContent = new VBox(8);
         Label tip1 = createTipLabel("🚴 Walk or bike for trips under 5 km - zero emissions + health benefits!");
         Label tip2 = createTipLabel("🚌 Take public transit - one bus can remove 40 cars from the road");
         Label tip3 = createTipLabel("🚗 Carpool with colleagues - cut your commute emissions in half");
-        Label tip4 = createTipLabel("🚆 Choose trains over planes for distances under 1000 km - 90% less emissions");
+        Label tip4 = createTipLabel(String.format(Locale.ROOT,
+            "🚆 Choose trains over planes for distances under 1000 km - %.0f%% less emissions per km",
+            (1 - currentFactor(EmissionSource.TRAIN) / currentFactor(EmissionSource.FLIGHT)) * 100));
         Label tip5 = createTipLabel("🔋 Consider electric vehicles - 60-70% lower lifecycle emissions");
         Label tip6 = createTipLabel("🏠 Work from home when possible - eliminates commute entirely");
         Label tip7 = createTipLabel("📱 Combine errands into one trip - reduces total distance traveled");
@@ -213,6 +174,10 @@ public class TransportPane {
         return infoBox;
     }
     
+    private double currentFactor(EmissionSource source) {
+        return calculator.getFactorRegistry().getFactor(calculator.getRegion(), source, System.currentTimeMillis());
+    }
+    
     private Label createTipLabel(String text) {
         Label label = new Label(text);
         label.setFont(Font.font("Segoe UI", FontWeight.NORMAL, 14));
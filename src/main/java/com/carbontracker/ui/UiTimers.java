@@ -0,0 +1,34 @@
+package com.carbontracker.ui;
+
+import javafx.animation.PauseTransition;
+import javafx.scene.control.Labeled;
+import javafx.util.Duration;
+
+/**
+ * Shared timeouts for transient UI messages.
+ * Timeouts run on the JavaFX pulse via {@link PauseTransition}, so no threads
+ * are created, and each label reuses a single transition that is restarted
+ * on every new message.
+ */
+public final class UiTimers {
+    
+    private static final Object CLEAR_TRANSITION_KEY = new Object();
+    
+    private UiTimers() {
+    }
+    
+    /**
+     * Clears the label's text after {@code delay}. Calling this again before
+     * the delay elapses restarts the countdown. Must be called on the FX thread.
+     */
+    public static void clearTextLater(Labeled label, Duration delay) {
+        PauseTransition transition = (PauseTransition) label.getProperties().get(CLEAR_TRANSITION_KEY);
+        if (transition == null) {
+            transition = new PauseTransition();
+            transition.setOnFinished(e -> label.setText(""));
+            label.getProperties().put(CLEAR_TRANSITION_KEY, transition);
+        }
+        transition.setDuration(delay);
+        transition.playFromStart();
+    }
+}
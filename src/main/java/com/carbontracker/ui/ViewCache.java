@@ -0,0 +1,89 @@
+package com.carbontracker.ui;
+
+import javafx.application.Platform;
+import javafx.scene.Node;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Builds each view once and hands out the same node on every later request.
+ * <p>
+ * Views are registered with a factory and built on first use, or ahead of
+ * time by {@link #prewarm(Runnable)}, which builds the remaining views one per FX
+ * event after the first frame so navigation never waits for a pane to be
+ * constructed. Views keep their data bindings, so they survive a reset of
+ * the calculator and are never rebuilt. With {@code -Dcarbontracker.timing=true}
+ * the build time of each view is printed.
+ * <p>
+ * All methods must be called on the FX thread.
+ */
+public class ViewCache<K> {
+    
+    private static final boolean TIMING = Boolean.getBoolean("carbontracker.timing");
+    
+    private final Map<K, Supplier<? extends Node>> factories = new LinkedHashMap<>();
+    private final Map<K, Node> views = new HashMap<>();
+    
+    /** Registers how to build a view; nothing is built yet. */
+    public void register(K key, Supplier<? extends Node> factory) {
+        factories.put(key, factory);
+    }
+    
+    /** Returns the view for {@code key}, building it if this is the first request. */
+    public Node get(K key) {
+        Node view = views.get(key);
+        if (view == null) {
+            Supplier<? extends Node> factory = factories.get(key);
+            if (factory == null) {
+                throw new IllegalArgumentException("No view registered for " + key);
+            }
+            long start = System.nanoTime();
+            view = factory.get();
+            views.put(key, view);
+            if (TIMING) {
+                System.out.printf("View %s built in %.1f ms%n", key, (System.nanoTime() - start) / 1e6);
+            }
+        }
+        return view;
+    }
+    
+    public boolean isBuilt(K key) {
+        return views.containsKey(key);
+    }
+    
+    /**
+     * Builds every view that has not been built yet, in registration order.
+     * Each view is built in its own {@link Platform#runLater} call, scheduled
+     * only after the previous one finished, so rendering and input events
+     * are handled in between.
+     *
+     * @param whenDone run on the FX thread after the last view is built, or null
+     */
+    public void prewarm(Runnable whenDone) {
+        Deque<K> pending = new ArrayDeque<>();
+        for (K key : factories.keySet()) {
+            if (!views.containsKey(key)) {
+                pending.add(key);
+            }
+        }
+        buildNext(pending, whenDone);
+    }
+    
+    private void buildNext(Deque<K> pending, Runnable whenDone) {
+        Platform.runLater(() -> {
+            if (pending.isEmpty()) {
+                if (whenDone != null) {
+                    whenDone.run();
+                }
+                return;
+            }
+            get(pending.poll());
+            buildNext(pending, whenDone);
+        });
+    }
+}
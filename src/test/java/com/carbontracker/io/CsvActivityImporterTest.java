@@ -0,0 +1,36 @@
+package com.carbontracker.io;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class CsvActivityImporterTest {
+    
+    private static long parse(String text) {
+        byte[] bytes = text.getBytes(StandardCharsets.US_ASCII);
+        return CsvActivityImporter.parseTimestamp(bytes, 0, bytes.length);
+    }
+    
+    @Test
+    void parsesDatesAndTimes() {
+        assertEquals(Instant.parse("2025-03-01T00:00:00Z").toEpochMilli(), parse("2025-03-01"));
+        assertEquals(Instant.parse("2024-02-29T00:00:00Z").toEpochMilli(), parse("2024-02-29"));
+        assertEquals(Instant.parse("2000-02-29T00:00:00Z").toEpochMilli(), parse("2000-02-29"));
+        assertEquals(Instant.parse("2025-12-31T10:15:30Z").toEpochMilli(), parse("2025-12-31T10:15:30Z"));
+        assertEquals(1_700_000_000_000L, parse("1700000000000"));
+    }
+    
+    @Test
+    void rejectsDaysPastTheEndOfTheMonth() {
+        assertEquals(Long.MIN_VALUE, parse("2025-02-31"));
+        assertEquals(Long.MIN_VALUE, parse("2025-02-29"));
+        assertEquals(Long.MIN_VALUE, parse("1900-02-29"));
+        assertEquals(Long.MIN_VALUE, parse("2025-04-31"));
+        assertEquals(Long.MIN_VALUE, parse("2025-11-31T08:00"));
+        assertEquals(Long.MIN_VALUE, parse("2025-13-01"));
+        assertEquals(Long.MIN_VALUE, parse("2025-01-00"));
+    }
+}
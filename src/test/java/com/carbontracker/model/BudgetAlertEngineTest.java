@@ -0,0 +1,71 @@
+package com.carbontracker.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class BudgetAlertEngineTest {
+    
+    private static final long TIMESTAMP = 1_700_000_000_000L;
+    
+    @Test
+    void mostUsedMatchesSortingEveryBudget() {
+        EmissionCalculator calculator = new EmissionCalculator();
+        BudgetAlertEngine engine = BudgetAlertEngine.attach(calculator);
+        EmissionSource[] sources = EmissionSource.values();
+        EmissionRollup.Granularity[] granularities = EmissionRollup.Granularity.values();
+        Random random = new Random(7);
+        for (int i = 0; i < 20_000; i++) {
+            calculator.addEmission(sources[random.nextInt(sources.length)], random.nextDouble() * 50,
+                TIMESTAMP + i * 60_000L);
+        }
+        long now = TIMESTAMP + 19_999 * 60_000L;
+        
+        List<EmissionBudget> budgets = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            EmissionRollup.Granularity window = random.nextInt(4) == 0 ? null : granularities[random.nextInt(3)];
+            double limit = random.nextInt(10) == 0 ? 0 : random.nextDouble() * 5000;
+            String id = "budget-" + i;
+            switch (random.nextInt(3)) {
+                case 0:
+                    budgets.add(EmissionBudget.forSource(id, sources[random.nextInt(sources.length)], window, limit));
+                    break;
+                case 1:
+                    budgets.add(EmissionBudget.forCategory(id,
+                        EmissionCategory.byOrdinal(random.nextInt(EmissionCategory.COUNT)), window, limit));
+                    break;
+                default:
+                    budgets.add(EmissionBudget.forTotal(id, window, limit));
+            }
+        }
+        engine.addBudgets(budgets);
+        
+        List<Double> expected = new ArrayList<>();
+        for (EmissionBudget budget : budgets) {
+            long from = budget.getWindow() != null ? budget.getWindow().bucketStart(now) : Long.MIN_VALUE;
+            long to = budget.getWindow() != null ? budget.getWindow().nextBucket(from) : Long.MAX_VALUE;
+            double used = 0;
+            for (EmissionSource source : sources) {
+                if (budget.covers(source)) {
+                    used += budget.getWindow() != null ? calculator.getSourceTotal(source, from, to)
+                        : calculator.getSourceTotal(source);
+                }
+            }
+            double limit = budget.getLimitKg();
+            expected.add(limit > 0 ? used / limit : used > 0 ? Double.POSITIVE_INFINITY : 0);
+        }
+        expected.sort(Comparator.reverseOrder());
+        
+        List<BudgetAlertEngine.Usage> top = engine.mostUsed(10, now);
+        assertEquals(10, top.size());
+        for (int i = 0; i < top.size(); i++) {
+            assertEquals(expected.get(i), top.get(i).getFraction(), 1e-9);
+        }
+        assertEquals(budgets.size(), engine.mostUsed(Integer.MAX_VALUE, now).size());
+    }
+}
@@ -0,0 +1,153 @@
+package com.carbontracker.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ConcurrentEmissionCalculatorTest {
+    
+    private static final int THREADS = 8;
+    private static final int ADDS_PER_THREAD = 200_000;
+    private static final EmissionSource[] SOURCES = EmissionSource.values();
+    
+    /** Starts all threads at once, each adding one unit per source in turn. */
+    private static void addConcurrently(ConcurrentEmissionCalculator calculator) throws Exception {
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        List<Throwable> failures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                    for (int i = 0; i < ADDS_PER_THREAD; i++) {
+                        calculator.addEmission(SOURCES[i % SOURCES.length], 1.0, i);
+                    }
+                } catch (Throwable e) {
+                    synchronized (failures) {
+                        failures.add(e);
+                    }
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(List.of(), failures);
+    }
+    
+    /**
+     * Counts must match exactly. A single lost add would move a source total
+     * by about 1/{@code count} of its value, far above the rounding
+     * tolerance used here.
+     */
+    private static void assertNoLostUpdates(ConcurrentEmissionCalculator calculator) {
+        EmissionSnapshot snapshot = calculator.snapshot();
+        long expectedTotalCount = 0;
+        for (EmissionSource source : SOURCES) {
+            long perThread = 0;
+            for (int i = 0; i < ADDS_PER_THREAD; i++) {
+                if (i % SOURCES.length == source.ordinal()) {
+                    perThread++;
+                }
+            }
+            long expectedCount = perThread * THREADS;
+            double factor = calculator.getFactorRegistry().getFactor(calculator.getRegion(), source, 0L);
+            assertEquals(expectedCount, snapshot.getSourceCount(source), source.getKey() + " count");
+            assertEquals(expectedCount, calculator.getSourceCount(source), source.getKey() + " count");
+            assertEquals(expectedCount * factor, snapshot.getSourceTotal(source), expectedCount * factor * 1e-9,
+                source.getKey() + " total");
+            expectedTotalCount += expectedCount;
+        }
+        assertEquals((long) THREADS * ADDS_PER_THREAD, expectedTotalCount);
+    }
+    
+    @Test
+    void concurrentAddsAreNotLost() throws Exception {
+        ConcurrentEmissionCalculator calculator = new ConcurrentEmissionCalculator();
+        addConcurrently(calculator);
+        assertNoLostUpdates(calculator);
+    }
+    
+    @Test
+    void concurrentAddsWithHistoryAreNotLost() throws Exception {
+        ConcurrentEmissionCalculator calculator = new ConcurrentEmissionCalculator(true);
+        addConcurrently(calculator);
+        assertNoLostUpdates(calculator);
+        assertEquals((long) THREADS * ADDS_PER_THREAD, calculator.getLedger().size());
+        for (EmissionSource source : SOURCES) {
+            assertEquals(calculator.getSourceCount(source), calculator.getLedger().count(source));
+            assertEquals(calculator.getSourceTotal(source),
+                calculator.getSourceTotal(source, Long.MIN_VALUE, Long.MAX_VALUE),
+                calculator.getSourceTotal(source) * 1e-9);
+        }
+    }
+    
+    /**
+     * Every update adds 1 kg and one activity to a source, so in a snapshot
+     * taken at one point in time each source's total equals its count.
+     */
+    @Test
+    void snapshotsDuringConcurrentAddsAreConsistent() throws Exception {
+        ConcurrentEmissionCalculator calculator = new ConcurrentEmissionCalculator();
+        AtomicBoolean done = new AtomicBoolean();
+        List<Thread> writers = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            Thread writer = new Thread(() -> {
+                for (int i = 0; !done.get(); i++) {
+                    calculator.restoreTotals(SOURCES[i % SOURCES.length], 1.0, 1);
+                }
+            });
+            writer.start();
+            writers.add(writer);
+        }
+        try {
+            for (int i = 0; i < 20_000; i++) {
+                EmissionSnapshot snapshot = calculator.snapshot();
+                for (EmissionSource source : SOURCES) {
+                    assertEquals((double) snapshot.getSourceCount(source), snapshot.getSourceTotal(source),
+                        source.getKey() + " in snapshot " + i);
+                }
+                assertEquals((double) snapshot.getCount(), snapshot.getTotal());
+            }
+        } finally {
+            done.set(true);
+            for (Thread writer : writers) {
+                writer.join();
+            }
+        }
+    }
+    
+    @Test
+    void historyQueriesWithoutHistoryAreRejected() {
+        ConcurrentEmissionCalculator calculator = new ConcurrentEmissionCalculator();
+        calculator.addEmission(EmissionSource.CAR, 10, 0L);
+        assertThrows(IllegalStateException.class, () -> calculator.getTotalEmissions(0, 1));
+        assertThrows(IllegalStateException.class, () -> calculator.getSourceTotal(EmissionSource.CAR, 0, 1));
+        assertThrows(IllegalStateException.class,
+            () -> calculator.getTrend(EmissionRollup.Granularity.DAY, null, 0, 1));
+    }
+    
+    @Test
+    void discardedHistoryKeepsTotals() {
+        ConcurrentEmissionCalculator calculator = new ConcurrentEmissionCalculator(true);
+        calculator.addEmission(EmissionSource.CAR, 10, 0L);
+        double total = calculator.getTotalEmissions();
+        
+        calculator.discardHistory();
+        calculator.addEmission(EmissionSource.CAR, 10, 1L);
+        assertTrue(calculator.getLedger().isEmpty());
+        assertEquals(2, calculator.getSourceCount(EmissionSource.CAR));
+        assertEquals(2 * total, calculator.getTotalEmissions(), 1e-9);
+        assertThrows(IllegalStateException.class, () -> calculator.getTotalEmissions(0, 2));
+    }
+}
@@ -0,0 +1,68 @@
+package com.carbontracker.model;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class EmissionCalculatorTest {
+    
+    private static final long TIMESTAMP = 1_700_000_000_000L;
+    
+    @TempDir
+    Path directory;
+    
+    private void loadCarFactor(EmissionCalculator calculator, double factor) throws Exception {
+        Path file = directory.resolve("factors.csv");
+        Files.writeString(file, "region,source,effectiveFrom,factor\ndefault,car,*," + factor + "\n");
+        calculator.getFactorRegistry().load(file);
+    }
+    
+    @Test
+    void recomputeRewritesLedgerTotalsAndRollups() throws Exception {
+        EmissionCalculator calculator = new EmissionCalculator();
+        calculator.addEmission(EmissionSource.CAR, 10, TIMESTAMP);
+        calculator.addEmission(EmissionSource.ELECTRICITY, 10, TIMESTAMP);
+        double electricity = calculator.getSourceTotal(EmissionSource.ELECTRICITY);
+        long version = calculator.getVersion();
+        
+        loadCarFactor(calculator, 1.0);
+        calculator.recomputeEmissions();
+        
+        assertEquals(10.0, calculator.getSourceTotal(EmissionSource.CAR), 1e-9);
+        assertEquals(1, calculator.getSourceCount(EmissionSource.CAR));
+        assertEquals(electricity, calculator.getSourceTotal(EmissionSource.ELECTRICITY));
+        assertEquals(10.0, calculator.getLedger().getEmissions(0), 1e-9);
+        assertEquals(10.0, calculator.getRollup().sum(EmissionRollup.Granularity.DAY, EmissionSource.CAR,
+            Long.MIN_VALUE, Long.MAX_VALUE), 1e-9);
+        assertNotEquals(version, calculator.getVersion());
+    }
+    
+    @Test
+    void recomputeKeepsRestoredTotals() throws Exception {
+        EmissionCalculator calculator = new EmissionCalculator();
+        calculator.restoreTotals(EmissionSource.CAR, 100, 10);
+        calculator.addEmission(EmissionSource.CAR, 10, TIMESTAMP);
+        
+        loadCarFactor(calculator, 1.0);
+        calculator.recomputeEmissions();
+        
+        assertEquals(110.0, calculator.getSourceTotal(EmissionSource.CAR), 1e-9);
+        assertEquals(11, calculator.getSourceCount(EmissionSource.CAR));
+    }
+    
+    @Test
+    void recomputeWithoutHistoryIsRejected() {
+        ConcurrentEmissionCalculator calculator = new ConcurrentEmissionCalculator();
+        calculator.addEmission(EmissionSource.CAR, 10, TIMESTAMP);
+        double total = calculator.getSourceTotal(EmissionSource.CAR);
+        
+        assertThrows(IllegalStateException.class, calculator::recomputeEmissions);
+        assertEquals(total, calculator.getSourceTotal(EmissionSource.CAR));
+    }
+}
@@ -0,0 +1,111 @@
+package com.carbontracker.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ProfileRegistryTest {
+    
+    private static final long TIMESTAMP = 1_700_000_000_000L;
+    
+    /** Keeps every recorded activity per profile and replays it on load. */
+    private static final class MemoryStore implements ProfileRegistry.ProfileSink, ProfileRegistry.HistoryLoader {
+        final Map<String, List<double[]>> activities = new HashMap<>();
+        
+        @Override
+        public synchronized void record(String profileId, long timestamp, EmissionSource source,
+                                        double quantity, double factor, double kgCO2) {
+            activities.computeIfAbsent(profileId, id -> new ArrayList<>())
+                .add(new double[] {timestamp, source.ordinal(), quantity, factor, kgCO2});
+        }
+        
+        @Override
+        public synchronized void reset(String profileId) {
+            activities.remove(profileId);
+        }
+        
+        synchronized int count(String profileId) {
+            return activities.getOrDefault(profileId, List.of()).size();
+        }
+        
+        @Override
+        public void load(String profileId, EmissionCalculator calculator) {
+            List<double[]> history;
+            synchronized (this) {
+                history = new ArrayList<>(activities.getOrDefault(profileId, List.of()));
+            }
+            for (double[] a : history) {
+                calculator.replay((long) a[0], EmissionSource.byOrdinal((int) a[1]), a[2], a[3], a[4]);
+            }
+        }
+    }
+    
+    @Test
+    void reopenedProfileRestoresActivitiesRecordedThroughRegistry() throws Exception {
+        MemoryStore store = new MemoryStore();
+        ProfileRegistry registry = new ProfileRegistry(new EmissionFactorRegistry(), 1, store, store);
+        
+        registry.getCalculator("a");
+        registry.addEmission("a", EmissionSource.CAR, 10, TIMESTAMP);
+        registry.addEmission("a", EmissionSource.BUS, 5, TIMESTAMP + 1);
+        assertEquals(2, store.count("a"));
+        
+        // Opening another profile evicts "a"
+        registry.getCalculator("b");
+        EmissionCalculator reopened = registry.getCalculator("a");
+        
+        assertEquals(2, reopened.getLedger().size());
+        assertEquals(registry.getTotal(registry.indexOf("a")), reopened.getTotalEmissions(), 1e-9);
+    }
+    
+    @Test
+    void historyLoadsWithoutHoldingRegistryLock() throws Exception {
+        MemoryStore store = new MemoryStore();
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ProfileRegistry.HistoryLoader slowLoader = (profileId, calculator) -> {
+            loading.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            store.load(profileId, calculator);
+        };
+        ProfileRegistry registry = new ProfileRegistry(new EmissionFactorRegistry(), 4, slowLoader, store);
+        registry.addEmission("a", EmissionSource.CAR, 10, TIMESTAMP);
+        
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<EmissionCalculator> first = executor.submit(() -> registry.getCalculator("a"));
+            assertTrue(loading.await(10, TimeUnit.SECONDS));
+            Future<EmissionCalculator> second = executor.submit(() -> registry.getCalculator("a"));
+            
+            // Both the registry and the loading profile accept activities meanwhile
+            registry.addEmission("b", EmissionSource.CAR, 1, TIMESTAMP);
+            registry.addEmission("a", EmissionSource.BUS, 5, TIMESTAMP + 1);
+            assertEquals(1, store.count("a"));
+            
+            release.countDown();
+            EmissionCalculator calculator = first.get(10, TimeUnit.SECONDS);
+            assertSame(calculator, second.get(10, TimeUnit.SECONDS));
+            assertEquals(2, calculator.getLedger().size());
+            assertEquals(2, store.count("a"));
+            assertEquals(registry.getTotal(registry.indexOf("a")), calculator.getTotalEmissions(), 1e-9);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.carbontracker.model;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ScenarioSimulatorTest {
+    
+    private static final long TIMESTAMP = 1_700_000_000_000L;
+    
+    @TempDir
+    Path directory;
+    
+    private static void addRandom(EmissionCalculator calculator, Random random, int count) {
+        EmissionSource[] sources = EmissionSource.values();
+        for (int i = 0; i < count; i++) {
+            calculator.addEmission(sources[random.nextInt(sources.length)], random.nextDouble() * 50,
+                TIMESTAMP + i * 60_000L);
+        }
+    }
+    
+    /** Spans several ledger chunks, then changes, recomputes and clears the ledger before replaying. */
+    @Test
+    void capturedReplayIgnoresLaterChanges() throws Exception {
+        EmissionCalculator calculator = new EmissionCalculator();
+        Random random = new Random(11);
+        addRandom(calculator, random, 40_000);
+        List<Scenario> scenarios = Scenario.suggestions();
+        List<ScenarioSimulator.Result> expected = new ScenarioSimulator(calculator).simulate(scenarios);
+        
+        Supplier<List<ScenarioSimulator.Result>> replay = new ScenarioSimulator(calculator).capture(scenarios);
+        addRandom(calculator, random, 10_000);
+        Path file = directory.resolve("factors.csv");
+        Files.writeString(file, "region,source,effectiveFrom,factor\ndefault,car,*,1.0\n");
+        calculator.getFactorRegistry().load(file);
+        calculator.recomputeEmissions();
+        List<ScenarioSimulator.Result> afterRecompute = replay.get();
+        calculator.reset();
+        List<ScenarioSimulator.Result> afterReset = replay.get();
+        
+        for (int i = 0; i < scenarios.size(); i++) {
+            assertEquals(expected.get(i).getBaselineKg(), afterRecompute.get(i).getBaselineKg());
+            assertEquals(expected.get(i).getProjectedKg(), afterRecompute.get(i).getProjectedKg());
+            assertEquals(expected.get(i).getBaselineKg(), afterReset.get(i).getBaselineKg());
+            assertEquals(expected.get(i).getProjectedKg(), afterReset.get(i).getProjectedKg());
+        }
+    }
+}
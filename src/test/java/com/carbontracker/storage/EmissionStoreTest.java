@@ -0,0 +1,90 @@
+package com.carbontracker.storage;
+
+import com.carbontracker.model.EmissionSource;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class EmissionStoreTest {
+    
+    private static final long TIMESTAMP = 1_700_000_000_000L;
+    private static final int RECORD_SIZE = 48;
+    
+    @TempDir
+    Path directory;
+    
+    private static double total(EmissionStore store) {
+        double[] total = new double[1];
+        store.forEach((timestamp, source, quantity, factor, kgCO2) -> total[0] += kgCO2);
+        return total[0];
+    }
+    
+    @Test
+    void corruptSlotEndsRecoveredHistory() throws Exception {
+        Path path = directory.resolve("emissions.dat");
+        try (EmissionStore store = EmissionStore.open(path)) {
+            for (int i = 1; i <= 5; i++) {
+                store.record(TIMESTAMP + i, EmissionSource.CAR, i, 1.0, i);
+            }
+        }
+        
+        // Flip a byte of the fourth record's kg CO2 so its checksum no longer matches
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long position = 4L * RECORD_SIZE + 32;
+            ByteBuffer b = ByteBuffer.allocate(1);
+            channel.read(b, position);
+            b.put(0, (byte) (b.get(0) ^ 0x40)).rewind();
+            channel.write(b, position);
+        }
+        
+        try (EmissionStore store = EmissionStore.open(path)) {
+            assertEquals(3, store.size());
+            assertEquals(1 + 2 + 3, total(store), 1e-9);
+            // New appends overwrite the corrupt slot
+            store.record(TIMESTAMP + 10, EmissionSource.BUS, 10, 1.0, 10);
+        }
+        try (EmissionStore store = EmissionStore.open(path)) {
+            assertEquals(4, store.size());
+            assertEquals(1 + 2 + 3 + 10, total(store), 1e-9);
+        }
+    }
+    
+    @Test
+    void reopenAfterResetOnlyRecoversNewEpoch() throws Exception {
+        Path path = directory.resolve("emissions.dat");
+        try (EmissionStore store = EmissionStore.open(path)) {
+            for (int i = 1; i <= 4; i++) {
+                store.record(TIMESTAMP + i, EmissionSource.CAR, i, 1.0, i);
+            }
+            store.reset();
+            assertEquals(0, store.size());
+            store.record(TIMESTAMP + 10, EmissionSource.ELECTRICITY, 10, 0.5, 5);
+            store.record(TIMESTAMP + 11, EmissionSource.ELECTRICITY, 20, 0.5, 10);
+        }
+        
+        // Slots 3 and 4 still hold records of the old epoch and must not come back
+        try (EmissionStore store = EmissionStore.open(path)) {
+            assertEquals(2, store.size());
+            assertEquals(15, total(store), 1e-9);
+        }
+    }
+    
+    @Test
+    void reopenAfterResetWithoutNewRecordsIsEmpty() throws Exception {
+        Path path = directory.resolve("emissions.dat");
+        try (EmissionStore store = EmissionStore.open(path)) {
+            store.record(TIMESTAMP, EmissionSource.CAR, 1, 1.0, 1);
+            store.reset();
+        }
+        try (EmissionStore store = EmissionStore.open(path)) {
+            assertEquals(0, store.size());
+            assertEquals(0, total(store));
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.carbontracker.storage;
+
+import com.carbontracker.model.EmissionSink;
+import com.carbontracker.model.EmissionSource;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class WriteAheadLogTest {
+    
+    private static final long TIMESTAMP = 1_700_000_000_000L;
+    private static final int RECORD_SIZE = 48;
+    
+    @TempDir
+    Path directory;
+    
+    /** Collects replayed kg CO2 values, with NaN standing for a reset. */
+    private static final class Collector implements EmissionSink {
+        final List<Double> events = new ArrayList<>();
+        
+        @Override
+        public void record(long timestamp, EmissionSource source, double quantity, double factor, double kgCO2) {
+            events.add(kgCO2);
+        }
+        
+        @Override
+        public void reset() {
+            events.add(Double.NaN);
+        }
+    }
+    
+    private void writeEvents(int count) throws Exception {
+        try (WriteAheadLog log = WriteAheadLog.open(directory, 0)) {
+            for (int i = 1; i <= count; i++) {
+                log.record(TIMESTAMP + i, EmissionSource.CAR, i, 1.0, i);
+            }
+            log.sync();
+        }
+    }
+    
+    private Path onlySegment() throws Exception {
+        try (Stream<Path> files = Files.list(directory)) {
+            List<Path> segments = files.filter(f -> f.getFileName().toString().startsWith("wal-")).toList();
+            assertEquals(1, segments.size());
+            return segments.get(0);
+        }
+    }
+    
+    @Test
+    void replaysEventsInOrderIncludingResets() throws Exception {
+        try (WriteAheadLog log = WriteAheadLog.open(directory, 0)) {
+            log.record(TIMESTAMP, EmissionSource.CAR, 1, 1.0, 1);
+            log.reset();
+            log.record(TIMESTAMP + 1, EmissionSource.BUS, 2, 1.0, 2);
+        }
+        Collector collector = new Collector();
+        assertEquals(3, WriteAheadLog.replay(directory, 0, collector));
+        assertEquals(List.of(1.0, Double.NaN, 2.0), collector.events);
+        
+        Collector tail = new Collector();
+        assertEquals(3, WriteAheadLog.replay(directory, 2, tail));
+        assertEquals(List.of(2.0), tail.events);
+    }
+    
+    @Test
+    void tornFinalRecordIsCutOff() throws Exception {
+        writeEvents(5);
+        Path segment = onlySegment();
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - RECORD_SIZE / 2);
+        }
+        
+        Collector collector = new Collector();
+        assertEquals(4, WriteAheadLog.replay(directory, 0, collector));
+        assertEquals(List.of(1.0, 2.0, 3.0, 4.0), collector.events);
+        
+        // Appending after the crash starts a new segment numbered after the cut
+        try (WriteAheadLog log = WriteAheadLog.open(directory, 4)) {
+            log.record(TIMESTAMP + 10, EmissionSource.BUS, 10, 1.0, 10);
+        }
+        Collector reopened = new Collector();
+        assertEquals(5, WriteAheadLog.replay(directory, 0, reopened));
+        assertEquals(List.of(1.0, 2.0, 3.0, 4.0, 10.0), reopened.events);
+    }
+    
+    @Test
+    void corruptFinalRecordIsCutOff() throws Exception {
+        writeEvents(5);
+        Path segment = onlySegment();
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long position = channel.size() - RECORD_SIZE + 32;
+            ByteBuffer b = ByteBuffer.allocate(1);
+            channel.read(b, position);
+            b.put(0, (byte) (b.get(0) ^ 0x40)).rewind();
+            channel.write(b, position);
+        }
+        
+        Collector collector = new Collector();
+        assertEquals(4, WriteAheadLog.replay(directory, 0, collector));
+        assertEquals(List.of(1.0, 2.0, 3.0, 4.0), collector.events);
+    }
+    
+    @Test
+    void missingOrEmptyLogReplaysNothing() throws Exception {
+        Collector collector = new Collector();
+        assertEquals(7, WriteAheadLog.replay(directory.resolve("missing"), 7, collector));
+        assertEquals(0, WriteAheadLog.replay(directory, 0, collector));
+        
+        // A segment with only its header, and one cut off inside the header
+        WriteAheadLog.open(directory, 0).close();
+        Files.write(directory.resolve(String.format("wal-%020d.log", 2L)), new byte[5],
+            StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+        assertEquals(0, WriteAheadLog.replay(directory, 0, collector));
+        assertEquals(List.of(), collector.events);
+    }
+}
@@ -0,0 +1,92 @@
+package com.carbontracker.ui;
+
+import javafx.application.Platform;
+import javafx.scene.control.Label;
+import javafx.util.Duration;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class UiTimersTest {
+    
+    private static final int LABELS = 100;
+    private static final int CALLS_PER_LABEL = 100;
+    
+    @BeforeAll
+    static void startToolkit() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        try {
+            Platform.startup(started::countDown);
+        } catch (IllegalStateException e) {
+            // Already started by another test
+            started.countDown();
+        }
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+    }
+    
+    private static <T> T onFxThread(Callable<T> task) throws Exception {
+        FutureTask<T> future = new FutureTask<>(task);
+        Platform.runLater(future);
+        return future.get(10, TimeUnit.SECONDS);
+    }
+    
+    @Test
+    void burstOfClearsCreatesNoThreads() throws Exception {
+        List<Label> labels = onFxThread(() -> {
+            List<Label> created = new ArrayList<>();
+            for (int i = 0; i < LABELS; i++) {
+                created.add(new Label());
+            }
+            return created;
+        });
+        // Let the toolkit settle so its own threads are counted in the baseline
+        Thread.sleep(200);
+        int threadsBefore = Thread.activeCount();
+        
+        onFxThread(() -> {
+            for (int call = 0; call < CALLS_PER_LABEL; call++) {
+                for (Label label : labels) {
+                    label.setText("✓ Added successfully!");
+                    UiTimers.clearTextLater(label, Duration.millis(100));
+                }
+            }
+            return null;
+        });
+        assertEquals(threadsBefore, Thread.activeCount());
+        
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        int remaining;
+        do {
+            Thread.sleep(50);
+            remaining = onFxThread(() -> (int) labels.stream().filter(label -> !label.getText().isEmpty()).count());
+        } while (remaining > 0 && System.nanoTime() < deadline);
+        assertEquals(0, remaining, "labels still showing a message");
+        assertEquals(threadsBefore, Thread.activeCount());
+    }
+    
+    @Test
+    void laterCallRestartsTheCountdown() throws Exception {
+        Label label = onFxThread(() -> {
+            Label created = new Label("first");
+            UiTimers.clearTextLater(created, Duration.millis(100));
+            return created;
+        });
+        Thread.sleep(50);
+        onFxThread(() -> {
+            label.setText("second");
+            UiTimers.clearTextLater(label, Duration.seconds(2));
+            return null;
+        });
+        Thread.sleep(300);
+        assertEquals("second", onFxThread(label::getText));
+    }
+}